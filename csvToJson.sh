@@ -1,3 +1,12 @@
 #!/bin/bash -e
 
-java -jar dist/csvToJson-1.0-SNAPSHOT.jar $1 $2 $3 $4 $5 $6
+JAR=dist/csvToJson-1.0-SNAPSHOT.jar
+CDS_ARCHIVE=dist/csvToJson.jsa
+
+# class data sharing archive from the gradle build, the jvm ignores it if it does not match the jar or jvm
+JAVA_OPTS=""
+if [ -f "$CDS_ARCHIVE" ]; then
+    JAVA_OPTS="-Xshare:auto -XX:SharedArchiveFile=$CDS_ARCHIVE"
+fi
+
+java $JAVA_OPTS -jar $JAR "$@"
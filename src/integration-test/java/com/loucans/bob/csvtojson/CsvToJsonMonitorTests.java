@@ -0,0 +1,156 @@
+package com.loucans.bob.csvtojson;
+
+import com.loucans.bob.csvtojson.durability.Durability;
+import com.loucans.bob.csvtojson.durability.FileSyncer;
+import com.loucans.bob.csvtojson.processor.CsvProcessor;
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CsvToJsonMonitorTests {
+    private static final String HEADER = "INTERNAL_ID,FIRST_NAME,MIDDLE_NAME,LAST_NAME,PHONE_NUM\r\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path stagingDir;
+    private Path inputDir;
+    private Path outputDir;
+    private Path errorDir;
+    private CsvToJsonMonitor monitor;
+    private Thread monitorThread;
+
+    @Before
+    public void setup() throws Exception {
+        stagingDir = folder.newFolder("staging").toPath();
+        inputDir = folder.newFolder("input").toPath();
+        outputDir = folder.newFolder("output").toPath();
+        errorDir = folder.newFolder("error").toPath();
+    }
+
+    @After
+    public void teardown() throws Exception {
+        monitor.stop();
+        monitorThread.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    /**
+     * use case - a file is dropped again under the same name while its first copy converts
+     * - verify - the json is the latest copy's, the input is gone, nothing is left in flight
+     */
+    @Test
+    public void redroppedFile_shouldEndWithLatestCopy() throws Exception {
+        startMonitor(new CsvProcessor());
+        drop("orders.csv", csv(200_000));
+        awaitTrue(() -> Files.exists(outputDir.resolve("orders.json")));
+
+        drop("orders.csv", csv(2));
+
+        awaitTrue(() -> converted("orders.csv"));
+        assertEquals(2, new JSONArray(Files.readString(outputDir.resolve("orders.json"))).length());
+        assertFalse(Files.exists(errorDir.resolve("orders.csv")));
+        // no third conversion replaces it later
+        Thread.sleep(500);
+        assertEquals(2, new JSONArray(Files.readString(outputDir.resolve("orders.json"))).length());
+    }
+
+    /**
+     * use case - a file is dropped again under the same name after its first copy converted, just before that copy is deleted
+     * - verify - the first job deletes only its own copy and the latest copy is converted
+     */
+    @Test
+    public void fileRedroppedBeforeDelete_shouldNotBeLost() throws Exception {
+        AtomicBoolean redropped = new AtomicBoolean(false);
+        // outputs are synced right before the input is deleted
+        FileSyncer redroppingSyncer = new FileSyncer(Durability.NONE) {
+            @Override
+            public void sync(Path... files) {
+                if (!redropped.get()) {
+                    try {
+                        drop("orders.csv", csv(2));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    redropped.set(true);
+                }
+            }
+        };
+        startMonitor(CsvProcessor.builder().fileSyncer(redroppingSyncer).build());
+
+        drop("orders.csv", csv(3));
+
+        awaitTrue(redropped::get);
+        awaitTrue(() -> converted("orders.csv"));
+        assertEquals(2, new JSONArray(Files.readString(outputDir.resolve("orders.json"))).length());
+        assertFalse(Files.exists(errorDir.resolve("orders.csv")));
+    }
+
+    /**
+     * use case - the monitor stopped while a file was in flight
+     * - verify - the file is put back and converted once the monitor starts again
+     */
+    @Test
+    public void fileLeftInFlight_shouldBeConvertedOnStart() throws Exception {
+        Path inFlightDir = Files.createDirectories(inputDir.resolve(CsvToJsonMonitor.IN_FLIGHT_DIR));
+        Files.writeString(inFlightDir.resolve("orders.csv"), csv(2));
+
+        startMonitor(new CsvProcessor());
+
+        awaitTrue(() -> converted("orders.csv"));
+        assertEquals(2, new JSONArray(Files.readString(outputDir.resolve("orders.json"))).length());
+    }
+
+    // - the input is deleted once its outputs are written, neither dropped nor in flight
+    private boolean converted(String name) {
+        return Files.notExists(inputDir.resolve(name))
+                && Files.notExists(inputDir.resolve(CsvToJsonMonitor.IN_FLIGHT_DIR).resolve(name));
+    }
+
+    private void startMonitor(CsvProcessor processor) throws InterruptedException {
+        monitor = CsvToJsonMonitor.builder().processor(processor).build();
+        monitorThread = new Thread(() -> monitor.start(
+                inputDir.toString(), outputDir.toString(), errorDir.toString()));
+        monitorThread.start();
+        // the monitor only sees files created after it registered the directory
+        Thread.sleep(500);
+    }
+
+    private void drop(String name, String csv) throws IOException {
+        // renamed in whole, over the earlier copy if it is still there
+        Files.move(Files.writeString(stagingDir.resolve(name), csv), inputDir.resolve(name), ATOMIC_MOVE);
+    }
+
+    private static String csv(int rows) {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int row = 0; row < rows; row++) {
+            csv.append(10_000_000 + row).append(",first_name,,last_name,555-555-5555\r\n");
+        }
+        return csv.toString();
+    }
+
+    private static void awaitTrue(Condition condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (!condition.holds()) {
+            assertTrue("timed out waiting", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private interface Condition {
+        boolean holds() throws Exception;
+    }
+}
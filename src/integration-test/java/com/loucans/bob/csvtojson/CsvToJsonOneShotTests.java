@@ -0,0 +1,142 @@
+package com.loucans.bob.csvtojson;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// - --------------------------------------------------
+// - launches the one shot mode in a fresh jvm the way cron would
+// - startup-to-first-output is from process start until the json file appears
+// - the bound is generous for slow build machines, override with -DcsvToJson.maxStartupMillis
+// - --------------------------------------------------
+public class CsvToJsonOneShotTests {
+    private static final long MAX_STARTUP_MILLIS = Long.getLong("csvToJson.maxStartupMillis", 10_000);
+    private static final Path DIST_JAR = Paths.get("dist/csvToJson-1.0-SNAPSHOT.jar");
+    private static final Path CDS_ARCHIVE = Paths.get("dist/csvToJson.jsa");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File outputDir;
+    private File errorDir;
+
+    @Before
+    public void setup() throws IOException {
+        outputDir = folder.newFolder("output");
+        errorDir = folder.newFolder("error");
+    }
+
+    /**
+     * use case - one valid file converted from the command line
+     * - verify - json written, exit code 0, input left in place
+     * - verify - startup-to-first-output within bound
+     */
+    @Test
+    public void oneShot_shouldConvertAndExit() throws Exception {
+        Path csvFile = csvFile("/happy_path.csv");
+
+        long startupMillis = timeToFirstOutput(
+                List.of("-cp", System.getProperty("java.class.path")), csvFile, 0);
+
+        System.out.println(format("one shot startup-to-first-output: %d ms", startupMillis));
+        assertTrue(format("startup-to-first-output %d ms over %d ms", startupMillis, MAX_STARTUP_MILLIS),
+                startupMillis < MAX_STARTUP_MILLIS);
+        assertTrue(Files.exists(csvFile));
+        assertEquals(2, Files.readString(Paths.get(outputDir.getAbsolutePath(), "happy_path.json"))
+                .lines().filter(line -> line.startsWith("{")).count());
+    }
+
+    /**
+     * use case - file with rejected rows
+     * - verify - exit code 2 and an error file
+     */
+    @Test
+    public void oneShot_shouldExitWithTwo_whenRowsRejected() throws Exception {
+        Path csvFile = csvFile("/invalid_values.csv");
+
+        timeToFirstOutput(List.of("-cp", System.getProperty("java.class.path")), csvFile, 2);
+
+        assertTrue(Files.exists(Paths.get(errorDir.getAbsolutePath(), "invalid_values.csv")));
+    }
+
+    /**
+     * use case - the built jar with and without its class data sharing archive
+     * - only runs after the gradle cdsArchive task produced both
+     */
+    @Test
+    public void oneShot_withCdsArchive() throws Exception {
+        if (!Files.exists(DIST_JAR) || !Files.exists(CDS_ARCHIVE)) {
+            System.out.println("no cds archive in dist, skipping");
+            return;
+        }
+        Path csvFile = csvFile("/happy_path.csv");
+
+        long withoutArchive = timeToFirstOutput(
+                List.of("-Xshare:off", "-jar", DIST_JAR.toString()), csvFile, 0);
+        Files.delete(Paths.get(outputDir.getAbsolutePath(), "happy_path.json"));
+        long withArchive = timeToFirstOutput(
+                List.of("-Xshare:auto", "-XX:SharedArchiveFile=" + CDS_ARCHIVE, "-jar", DIST_JAR.toString()), csvFile, 0);
+
+        System.out.println(format("one shot startup-to-first-output: %d ms without cds archive, %d ms with",
+                withoutArchive, withArchive));
+        assertTrue(format("startup-to-first-output %d ms over %d ms", withArchive, MAX_STARTUP_MILLIS),
+                withArchive < MAX_STARTUP_MILLIS);
+    }
+
+    private long timeToFirstOutput(List<String> jvmArgs, Path csvFile, int expectedExitCode) throws Exception {
+        String baseName = csvFile.getFileName().toString().replace(".csv", "");
+        Path jsonFile = Paths.get(outputDir.getAbsolutePath(), baseName + ".json");
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        if (!jvmArgs.contains("-jar")) {
+            command.add(CsvToJson.class.getName());
+        }
+        command.addAll(List.of(
+                "-f", csvFile.toString(),
+                "-o", outputDir.getAbsolutePath(),
+                "-e", errorDir.getAbsolutePath()));
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(folder.newFile())
+                .start();
+
+        // the json file is created with the first record, or at close for files without any
+        while (!Files.exists(jsonFile) && process.isAlive()) {
+            Thread.sleep(1);
+        }
+        long firstOutput = System.nanoTime();
+
+        assertTrue("one shot did not exit", process.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(expectedExitCode, process.exitValue());
+        assertTrue(Files.exists(jsonFile));
+        return TimeUnit.NANOSECONDS.toMillis(firstOutput - started);
+    }
+
+    // - copy of the resource so the run cannot touch test resources
+    private Path csvFile(String name) throws IOException {
+        URL resource = Objects.requireNonNull(getClass().getResource("/com/loucans/bob/csvtojson/csvs" + name));
+        Path copy = Paths.get(folder.newFolder().getAbsolutePath(), name.substring(1));
+        Files.copy(Paths.get(resource.getPath()), copy);
+        return copy;
+    }
+}
@@ -0,0 +1,247 @@
+package com.loucans.bob.csvtojson;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+// - --------------------------------------------------
+// - soak test of the monitor - files are dropped into its input directory at a steady
+//   rate and each one's latency is taken from the rename into the input directory
+//   until the monitor deletes its in-flight copy, which it does once the json and error
+//   file are written - throughput counts the files and bytes finished, not dropped
+// - reports p50/p99/p999 latency, files never finished and throughput, and fails when a
+//   gate is exceeded, so a long run on release hardware can gate a release
+// - the gates depend on the hardware, so it only runs when asked for with soakSeconds:
+//     -DcsvToJson.soakSeconds          how long files are dropped, e.g. 10
+//     -DcsvToJson.soakFilesPerSecond   drop rate, default 50
+//     -DcsvToJson.soakSizeMix          rows per file and weight, default 10:80,1000:18,100000:2
+//     -DcsvToJson.soakDrainSeconds     wait for the last files after dropping stops, default 30
+//     -DcsvToJson.soakMaxP99Millis     default 5000
+//     -DcsvToJson.soakMaxP999Millis    default 10000
+//     -DcsvToJson.soakMaxMissed        files allowed to be unfinished after the drain, default 0
+// - --------------------------------------------------
+public class CsvToJsonSoakTests {
+    private static final Long SOAK_SECONDS = Long.getLong("csvToJson.soakSeconds");
+    private static final int FILES_PER_SECOND = Integer.getInteger("csvToJson.soakFilesPerSecond", 50);
+    private static final String SIZE_MIX = System.getProperty("csvToJson.soakSizeMix", "10:80,1000:18,100000:2");
+    private static final long DRAIN_SECONDS = Long.getLong("csvToJson.soakDrainSeconds", 30);
+    private static final long MAX_P99_MILLIS = Long.getLong("csvToJson.soakMaxP99Millis", 5_000);
+    private static final long MAX_P999_MILLIS = Long.getLong("csvToJson.soakMaxP999Millis", 10_000);
+    private static final int MAX_MISSED = Integer.getInteger("csvToJson.soakMaxMissed", 0);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // dropped and not yet deleted by the monitor, by file name
+    private final Map<String, Drop> inFlight = new ConcurrentHashMap<>();
+    private final List<Long> latencies = new ArrayList<>();
+    private final AtomicLong bytesDone = new AtomicLong();
+
+    /**
+     * use case - steady stream of files of mixed sizes into a running monitor
+     * - verify - every file finished, latency percentiles within their gates
+     */
+    @Test
+    public void monitor_shouldKeepUp_underSustainedLoad() throws Exception {
+        assumeTrue("soak runs with -DcsvToJson.soakSeconds", SOAK_SECONDS != null);
+        Path stagingDir = folder.newFolder("staging").toPath();
+        Path inputDir = folder.newFolder("input").toPath();
+        Path outputDir = folder.newFolder("output").toPath();
+        Path errorDir = folder.newFolder("error").toPath();
+        SizeMix sizeMix = new SizeMix(SIZE_MIX);
+
+        CsvToJsonMonitor monitor = CsvToJsonMonitor.builder().build();
+        Thread monitorThread = new Thread(() -> monitor.start(
+                inputDir.toString(), outputDir.toString(), errorDir.toString()), "soak-monitor");
+        monitorThread.start();
+        // the monitor only sees files created after it registered the directory
+        Thread.sleep(500);
+
+        // files are converted from their in-flight copy, its deletion is the end of the job
+        Path inFlightDir = Files.createDirectories(inputDir.resolve(CsvToJsonMonitor.IN_FLIGHT_DIR));
+        WatchService deletions = FileSystems.getDefault().newWatchService();
+        inFlightDir.register(deletions, ENTRY_DELETE);
+        Thread completionThread = new Thread(
+                () -> recordCompletions(deletions, stagingDir, inputDir, inFlightDir), "soak-completions");
+        completionThread.start();
+
+        AtomicInteger dropped = new AtomicInteger();
+        ScheduledExecutorService producer = Executors.newSingleThreadScheduledExecutor();
+        long started = System.nanoTime();
+        producer.scheduleAtFixedRate(() -> {
+            String name = "soak-" + dropped.getAndIncrement() + ".csv";
+            byte[] csv = sizeMix.next();
+            try {
+                Path staged = Files.write(stagingDir.resolve(name), csv);
+                inFlight.put(name, new Drop(System.nanoTime(), csv.length));
+                // the monitor must never see a partly written file
+                Files.move(staged, inputDir.resolve(name), ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, 0, TimeUnit.SECONDS.toNanos(1) / FILES_PER_SECOND, TimeUnit.NANOSECONDS);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(SOAK_SECONDS));
+        producer.shutdown();
+        producer.awaitTermination(10, TimeUnit.SECONDS);
+        long dropEnded = System.nanoTime();
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECONDS);
+        while (!inFlight.isEmpty() && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        long finished = System.nanoTime();
+
+        deletions.close();
+        completionThread.join();
+        monitor.stop();
+        monitorThread.join(TimeUnit.SECONDS.toMillis(DRAIN_SECONDS));
+
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+        int missed = inFlight.size();
+        double seconds = (finished - started) / 1e9;
+        long p99 = percentileMillis(sorted, 0.99);
+        long p999 = percentileMillis(sorted, 0.999);
+        System.out.println(format("soak: %d files dropped in %.1f s at %d/s, size mix %s%n"
+                        + "  latency p50 %d ms, p99 %d ms, p999 %d ms, max %d ms%n"
+                        + "  missed %d, throughput %.1f files/s, %.1f MB/s, last file %.1f s after dropping stopped",
+                dropped.get(), (dropEnded - started) / 1e9, FILES_PER_SECOND, SIZE_MIX,
+                percentileMillis(sorted, 0.5), p99, p999, percentileMillis(sorted, 1),
+                missed, sorted.length / seconds, bytesDone.get() / seconds / (1024 * 1024),
+                (finished - dropEnded) / 1e9));
+
+        assertTrue(format("%d files missed, at most %d allowed: %s", missed, MAX_MISSED, inFlight.keySet()),
+                missed <= MAX_MISSED);
+        assertTrue(format("p99 %d ms over %d ms", p99, MAX_P99_MILLIS), p99 <= MAX_P99_MILLIS);
+        assertTrue(format("p999 %d ms over %d ms", p999, MAX_P999_MILLIS), p999 <= MAX_P999_MILLIS);
+    }
+
+    // - the monitor deletes an input once its outputs are written, that is when it is done
+    // - deletions lost to an overflow are found by looking for every file still in flight,
+    //   in the order a file moves through the directories so one moving on is not missed
+    private void recordCompletions(WatchService deletions, Path stagingDir, Path inputDir, Path inFlightDir) {
+        try {
+            for (; ;) {
+                WatchKey key = deletions.take();
+                long now = System.nanoTime();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        for (String name : inFlight.keySet()) {
+                            if (Files.notExists(stagingDir.resolve(name))
+                                    && Files.notExists(inputDir.resolve(name))
+                                    && Files.notExists(inFlightDir.resolve(name))) {
+                                recordCompletion(name, now);
+                            }
+                        }
+                    } else {
+                        recordCompletion(String.valueOf(event.context()), now);
+                    }
+                }
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // soak over
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void recordCompletion(String name, long now) {
+        Drop drop = inFlight.remove(name);
+        if (drop != null) {
+            bytesDone.addAndGet(drop.bytes);
+            synchronized (latencies) {
+                latencies.add(now - drop.droppedNanos);
+            }
+        }
+    }
+
+    // - nearest rank
+    private static long percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile * sorted.length);
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(rank, 1) - 1]);
+    }
+
+    // - ---------------------------------------
+    // - a file dropped into the input directory
+    // - ---------------------------------------
+    private static class Drop {
+        private final long droppedNanos;
+        private final long bytes;
+
+        private Drop(long droppedNanos, long bytes) {
+            this.droppedNanos = droppedNanos;
+            this.bytes = bytes;
+        }
+    }
+
+    // - ---------------------------------------
+    // - csv contents per size class, picked at random by weight
+    // - ---------------------------------------
+    private static class SizeMix {
+        private final Random random = new Random(11);
+        private final byte[][] csvs;
+        private final int[] cumulativeWeights;
+
+        private SizeMix(String mix) {
+            String[] classes = mix.split(",");
+            csvs = new byte[classes.length][];
+            cumulativeWeights = new int[classes.length];
+            int total = 0;
+            for (int i = 0; i < classes.length; i++) {
+                String[] rowsAndWeight = classes[i].trim().split(":");
+                csvs[i] = csv(Integer.parseInt(rowsAndWeight[0]));
+                total += Integer.parseInt(rowsAndWeight[1]);
+                cumulativeWeights[i] = total;
+            }
+        }
+
+        private byte[] next() {
+            int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            int i = Arrays.binarySearch(cumulativeWeights, pick + 1);
+            return csvs[i >= 0 ? i : -i - 1];
+        }
+
+        private static byte[] csv(int rows) {
+            StringBuilder csv = new StringBuilder("INTERNAL_ID,FIRST_NAME,MIDDLE_NAME,LAST_NAME,PHONE_NUM\r\n");
+            for (int row = 0; row < rows; row++) {
+                csv.append(10_000_000 + row % 90_000_000).append(",first_name,middle_name,last_name,555-555-5555\r\n");
+            }
+            return csv.toString().getBytes(UTF_8);
+        }
+    }
+}
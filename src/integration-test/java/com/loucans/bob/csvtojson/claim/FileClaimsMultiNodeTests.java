@@ -0,0 +1,150 @@
+package com.loucans.bob.csvtojson.claim;
+
+import com.loucans.bob.csvtojson.CsvToJson;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// - --------------------------------------------------
+// - several monitor processes on one input directory, the way separate hosts would share a volume
+// - --------------------------------------------------
+public class FileClaimsMultiNodeTests {
+    private static final int NODES = 3;
+    private static final int FILES = 60;
+    private static final Pattern CLAIMED = Pattern.compile(" - claimed csv file, node: \\[(.+?)], filename: \\[(.+?)]");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File inputDir;
+    private File outputDir;
+    private File errorDir;
+    private final List<Process> nodes = new ArrayList<>();
+    private final List<File> nodeLogs = new ArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        inputDir = folder.newFolder("input");
+        outputDir = folder.newFolder("output");
+        errorDir = folder.newFolder("error");
+    }
+
+    @After
+    public void teardown() throws InterruptedException {
+        for (Process node : nodes) {
+            node.destroyForcibly().waitFor();
+        }
+    }
+
+    /**
+     * use case - files dropped into a directory watched by several nodes, one node died holding a file
+     * - verify - every file is claimed and converted by exactly one node
+     * - verify - the dead node's file is recovered once its lease expires
+     */
+    @Test
+    public void nodes_shouldSplitFilesWithoutDuplicates_andRecoverStaleClaims() throws Exception {
+        Path deadNodeDir = Files.createDirectories(inputDir.toPath().resolve(FileClaims.CLAIMED_DIR).resolve("dead"));
+        writeCsv(deadNodeDir.resolve("orphan.csv"));
+        Path deadHeartbeat = Files.writeString(deadNodeDir.resolve(FileClaims.HEARTBEAT_FILE), "0");
+        Files.setLastModifiedTime(deadHeartbeat, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+        Files.setLastModifiedTime(deadNodeDir, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+
+        for (int i = 0; i < NODES; i++) {
+            startNode("node" + i);
+        }
+        for (int i = 0; i < NODES; i++) {
+            awaitFile(inputDir.toPath().resolve(FileClaims.CLAIMED_DIR).resolve("node" + i).resolve(FileClaims.HEARTBEAT_FILE));
+        }
+
+        Path staging = folder.newFolder("staging").toPath();
+        for (int i = 0; i < FILES; i++) {
+            // written elsewhere and renamed in, nodes only ever see complete files
+            Path csvFile = writeCsv(staging.resolve(String.format("file_%02d.csv", i)));
+            Files.move(csvFile, inputDir.toPath().resolve(csvFile.getFileName()), ATOMIC_MOVE);
+        }
+
+        for (int i = 0; i < FILES; i++) {
+            awaitFile(outputDir.toPath().resolve(String.format("file_%02d.json", i)));
+        }
+        awaitFile(outputDir.toPath().resolve("orphan.json"));
+        awaitNoCsvLeft();
+
+        Map<String, List<String>> claimsByFile = new HashMap<>();
+        for (File nodeLog : nodeLogs) {
+            Matcher matcher = CLAIMED.matcher(Files.readString(nodeLog.toPath(), UTF_8));
+            while (matcher.find()) {
+                claimsByFile.computeIfAbsent(matcher.group(2), file -> new ArrayList<>()).add(matcher.group(1));
+            }
+        }
+        assertEquals(claimsByFile.keySet().toString(), FILES + 1, claimsByFile.size());
+        claimsByFile.forEach((file, claimedBy) ->
+                assertEquals(file + " claimed by " + claimedBy, 1, claimedBy.size()));
+        assertTrue(Files.notExists(deadNodeDir.resolve("orphan.csv")));
+    }
+
+    private void startNode(String node) throws IOException {
+        File nodeLog = folder.newFile(node + ".log");
+        nodeLogs.add(nodeLog);
+        nodes.add(new ProcessBuilder(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                CsvToJson.class.getName(),
+                "-i", inputDir.getAbsolutePath(),
+                "-o", outputDir.getAbsolutePath(),
+                "-e", errorDir.getAbsolutePath(),
+                "--node", node,
+                "--leaseSeconds", "2")
+                .redirectErrorStream(true)
+                .redirectOutput(nodeLog)
+                .start());
+    }
+
+    private Path writeCsv(Path csvFile) throws IOException {
+        return Files.writeString(csvFile,
+                "INTERNAL_ID,FIRST_NAME,MIDDLE_NAME,LAST_NAME,PHONE_NUM\r\n" +
+                "12345670,first_name_0,middle_name_0,last_name_0,555-555-5550\r\n", UTF_8);
+    }
+
+    private void awaitFile(Path file) throws InterruptedException {
+        for (int i = 0; i < 600 && Files.notExists(file); i++) {
+            Thread.sleep(50);
+        }
+        if (Files.notExists(file)) {
+            fail("timed out waiting for " + file);
+        }
+    }
+
+    private void awaitNoCsvLeft() throws Exception {
+        for (int i = 0; i < 600; i++) {
+            try (Stream<Path> files = Files.walk(inputDir.toPath())) {
+                if (files.noneMatch(file -> file.toString().endsWith(".csv"))) {
+                    return;
+                }
+            }
+            Thread.sleep(50);
+        }
+        fail("csv files left in the input directory");
+    }
+}
@@ -0,0 +1,106 @@
+package com.loucans.bob.csvtojson.http;
+
+import com.loucans.bob.csvtojson.processor.CsvProcessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CsvToJsonHttpServerTests {
+
+    private CsvToJsonHttpServer server;
+    private HttpClient client;
+
+    @Before
+    public void setup() {
+        server = new CsvToJsonHttpServer(new CsvProcessor(), 0, 2);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @After
+    public void teardown() {
+        server.stop();
+    }
+
+    /**
+     * use case - csv body posted to the endpoint
+     * - verify json records are streamed as the first part
+     * - verify no error part is sent
+     */
+    @Test
+    public void happyPath() throws IOException, InterruptedException {
+        HttpResponse<String> response = post(csvFile("happy_path"));
+
+        assertEquals(200, response.statusCode());
+        String boundary = boundary(response);
+        assertEquals(
+                "--" + boundary + "\r\n" +
+                "Content-Type: application/json; charset=utf-8\r\n\r\n" +
+                "[\n" +
+                "{\"phone\":\"555-555-5550\",\"name\":{\"middle\":\"middle_name_0\",\"last\":\"last_name_0\",\"first\":\"first_name_0\"},\"id\":12345670},\n" +
+                "{\"phone\":\"555-555-5551\",\"name\":{\"middle\":\"middle_name_1\",\"last\":\"last_name_1\",\"first\":\"first_name_1\"},\"id\":12345671}\n" +
+                "]\r\n" +
+                "--" + boundary + "--\r\n",
+                response.body());
+    }
+
+    /**
+     * use case - csv body with invalid rows
+     * - verify valid rows are returned as json
+     * - verify the error csv is returned as a second part
+     */
+    @Test
+    public void emptyValuesInRows() throws IOException, InterruptedException {
+        HttpResponse<String> response = post(csvFile("empty_values"));
+
+        assertEquals(200, response.statusCode());
+        String boundary = boundary(response);
+        assertTrue(response.body().contains(
+                "--" + boundary + "\r\n" +
+                "Content-Type: text/csv; charset=utf-8\r\n" +
+                "Content-Disposition: attachment; filename=\"errors.csv\"\r\n\r\n" +
+                "\"LINE_NUM\",\"ERROR_MSG\"\r\n" +
+                "\"2\",\"invalid INTERNAL_ID [required, length <= 8, digits only]\"\r\n" +
+                "\"3\",\"invalid FIRST_NAME [required, length <= 15]\"\r\n" +
+                "\"5\",\"invalid LAST_NAME [required, length <= 15]\"\r\n" +
+                "\"6\",\"invalid PHONE_NUM [required, length = 12, format: ###-###-####]\"\r\n" +
+                "\r\n" +
+                "--" + boundary + "--\r\n"));
+    }
+
+    private HttpResponse<String> post(Path csvFile) throws IOException, InterruptedException {
+        URI uri = URI.create(format("http://localhost:%d/convert", server.getAddress().getPort()));
+        return client.send(
+                HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.ofFile(csvFile)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String boundary(HttpResponse<String> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElseThrow();
+        return contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+    }
+
+    private Path csvFile(String testFileName) {
+        URL resource = getClass().getClassLoader().getResource(
+                format("com/loucans/bob/csvtojson/csvs/%s.csv", testFileName));
+        if (Objects.isNull(resource)) {
+            throw new RuntimeException();
+        }
+
+        return Paths.get(resource.getFile());
+    }
+}
@@ -0,0 +1,114 @@
+package com.loucans.bob.csvtojson.processor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CsvProcessorBatchTests {
+    private static final String CSVS = "/com/loucans/bob/csvtojson/csvs";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File singleDir;
+    private File batchDir;
+
+    @Before
+    public void setup() throws IOException {
+        singleDir = folder.newFolder("single");
+        batchDir = folder.newFolder("batch");
+    }
+
+    /**
+     * use case - every test extract, good and bad, converted one by one and as one batch
+     * - verify - the batch writes byte for byte the same json and error files
+     * - verify - every input deleted, a failing file does not stop the rest of the batch
+     */
+    @Test
+    public void processCsvFiles_shouldWriteSameFilesAsOneByOne() throws Exception {
+        List<String> csvFileNames = copyCsvs(singleDir);
+        copyCsvs(batchDir);
+        CsvProcessor processor = new CsvProcessor();
+
+        for (String csvFileName : csvFileNames) {
+            try {
+                processor.processCsvFile(csvFileName, dir(singleDir, "input"), dir(singleDir, "output"), dir(singleDir, "error"));
+            } catch (RuntimeException e) {
+                // invalid headers end the file, as they would end its batch job
+            }
+        }
+        processor.processCsvFiles(csvFileNames, dir(batchDir, "input"), dir(batchDir, "output"), dir(batchDir, "error"));
+
+        assertEquals(0, listFiles(batchDir, "input").size());
+        for (String subDir : List.of("output", "error")) {
+            List<String> expected = listFiles(singleDir, subDir);
+            assertEquals(expected, listFiles(batchDir, subDir));
+            for (String name : expected) {
+                assertArrayEquals(name,
+                        Files.readAllBytes(Paths.get(dir(singleDir, subDir), name)),
+                        Files.readAllBytes(Paths.get(dir(batchDir, subDir), name)));
+            }
+        }
+    }
+
+    /**
+     * use case - a file was converted before and arrives again in a later batch
+     * - verify - old json and error files replaced, not appended to
+     */
+    @Test
+    public void processCsvFiles_shouldReplaceEarlierOutput() throws Exception {
+        copyCsvs(batchDir);
+        Files.writeString(Paths.get(dir(batchDir, "output"), "happy_path.json"), "stale");
+        Files.writeString(Paths.get(dir(batchDir, "error"), "happy_path.csv"), "stale");
+
+        new CsvProcessor().processCsvFiles(
+                List.of("happy_path.csv", "invalid_values.csv"),
+                dir(batchDir, "input"), dir(batchDir, "output"), dir(batchDir, "error"));
+
+        assertEquals('[', Files.readString(Paths.get(dir(batchDir, "output"), "happy_path.json")).charAt(0));
+        assertFalse(Files.exists(Paths.get(dir(batchDir, "error"), "happy_path.csv")));
+        assertEquals('"', Files.readString(Paths.get(dir(batchDir, "error"), "invalid_values.csv")).charAt(0));
+    }
+
+    private List<String> copyCsvs(File root) throws IOException {
+        for (String subDir : List.of("input", "output", "error")) {
+            Files.createDirectories(Paths.get(root.getAbsolutePath(), subDir));
+        }
+        URL resources = Objects.requireNonNull(getClass().getResource(CSVS));
+        List<String> names = new ArrayList<>();
+        try (Stream<Path> csvs = Files.list(Paths.get(resources.getPath()))) {
+            for (Path csv : csvs.sorted().collect(toList())) {
+                Files.copy(csv, Paths.get(dir(root, "input"), csv.getFileName().toString()));
+                names.add(csv.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    private static String dir(File root, String subDir) {
+        return Paths.get(root.getAbsolutePath(), subDir).toString();
+    }
+
+    private static List<String> listFiles(File root, String subDir) throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(dir(root, subDir)))) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(toList());
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.loucans.bob.csvtojson.processor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CsvProcessorCacheTests {
+    private static final String CSVS = "/com/loucans/bob/csvtojson/csvs";
+    private static final String HEADER = "INTERNAL_ID,FIRST_NAME,MIDDLE_NAME,LAST_NAME,PHONE_NUM\r\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path inputDir;
+    private Path outputDir;
+    private Path errorDir;
+    private Path expectedDir;
+    private Path cacheDir;
+
+    @Before
+    public void setup() throws IOException {
+        inputDir = folder.newFolder("input").toPath();
+        outputDir = folder.newFolder("output").toPath();
+        errorDir = folder.newFolder("error").toPath();
+        expectedDir = folder.newFolder("expected").toPath();
+        cacheDir = folder.getRoot().toPath().resolve("cache");
+    }
+
+    /**
+     * use case - every test extract converted, then sent again under another name, one by one and in a batch
+     * - verify - the resent files are restored, not converted, to the same json and error files
+     * - verify - inputs deleted as after a conversion
+     */
+    @Test
+    public void processCsvFile_shouldRestoreResentFiles() throws Exception {
+        ContentCache cache = new ContentCache(cacheDir, 1024 * 1024);
+        CsvProcessor processor = CsvProcessor.builder().contentCache(cache).build();
+        List<String> csvFileNames = copyCsvs("");
+        int converted = 0;
+        for (String csvFileName : csvFileNames) {
+            try {
+                processor.processCsvFile(csvFileName, inputDir.toString(), expectedDir.toString(), expectedDir.toString());
+                converted++;
+            } catch (RuntimeException e) {
+                // invalid headers end the file, nothing to cache
+            }
+        }
+        assertEquals(0, cache.getHits());
+
+        List<String> resent = copyCsvs("resent_");
+        List<String> batched = copyCsvs("batched_");
+        for (String csvFileName : resent) {
+            try {
+                processor.processCsvFile(csvFileName, inputDir.toString(), outputDir.toString(), errorDir.toString());
+            } catch (RuntimeException e) {
+                // as above
+            }
+        }
+        processor.processCsvFiles(batched, inputDir.toString(), outputDir.toString(), errorDir.toString());
+
+        assertEquals(2 * converted, cache.getHits());
+        for (String csvFileName : csvFileNames) {
+            String jsonFileName = csvFileName.replace(".csv", ".json");
+            for (String prefix : List.of("resent_", "batched_")) {
+                assertSameFile(expectedDir.resolve(jsonFileName), outputDir.resolve(prefix + jsonFileName));
+                assertSameFile(expectedDir.resolve(csvFileName), errorDir.resolve(prefix + csvFileName));
+            }
+        }
+        assertEquals(List.of(), listFiles(inputDir));
+    }
+
+    /**
+     * use case - large files, hashed as they are parsed, sent again, and one that differs only in its last row
+     * - verify - the resent file is restored with both parsers, the changed one converted
+     */
+    @Test
+    public void processCsvFile_shouldHashLargeFilesWhileParsing() throws Exception {
+        ContentCache cache = new ContentCache(cacheDir, 64 * 1024 * 1024);
+        String rows = rows(10_000, 10_000_000);
+        Files.writeString(inputDir.resolve("large.csv"), HEADER + rows + "10009999,first,,last,555-555-5555\r\n");
+
+        for (boolean structuralParser : List.of(false, true)) {
+            CsvProcessor processor = CsvProcessor.builder()
+                    .contentCache(cache).structuralParser(structuralParser).pipelineWorkers(2).build();
+            Files.copy(inputDir.resolve("large.csv"), inputDir.resolve("resent.csv"));
+            processor.processCsvFile("resent.csv", inputDir.toString(), outputDir.toString(), errorDir.toString());
+        }
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getEntries());
+
+        // same size and first block, so the same prekey, but another hash
+        Files.writeString(inputDir.resolve("changed.csv"), HEADER + rows + "10009999,first,,last,555-555-555x\r\n");
+        CsvProcessor processor = CsvProcessor.builder().contentCache(cache).build();
+        processor.processCsvFile("changed.csv", inputDir.toString(), outputDir.toString(), errorDir.toString());
+        processor.processCsvFile("large.csv", inputDir.toString(), expectedDir.toString(), expectedDir.toString());
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getEntries());
+        assertTrue(Files.exists(errorDir.resolve("changed.csv")));
+        assertSameFile(outputDir.resolve("resent.json"), expectedDir.resolve("large.json"));
+    }
+
+    /**
+     * use case - the same file converted by processors with different settings
+     * - verify - each converts it once, neither restores the other's outputs
+     */
+    @Test
+    public void processCsvFile_shouldKeySettings() throws Exception {
+        ContentCache cache = new ContentCache(cacheDir, 1024 * 1024);
+        CsvProcessor processor = CsvProcessor.builder().contentCache(cache).build();
+        CsvProcessor limited = CsvProcessor.builder().contentCache(cache).maxErrorLines(1).build();
+
+        for (CsvProcessor each : List.of(processor, limited, processor, limited)) {
+            copyCsv("invalid_values.csv");
+            each.processCsvFile("invalid_values.csv", inputDir.toString(), outputDir.toString(), errorDir.toString());
+        }
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getEntries());
+        assertEquals(3, Files.readAllLines(errorDir.resolve("invalid_values.csv")).size());
+    }
+
+    /**
+     * use case - a file quarantined for its error rate, sent again
+     * - verify - converted and quarantined again, never cached
+     */
+    @Test
+    public void processCsvFile_shouldNotCacheQuarantinedFiles() throws Exception {
+        ContentCache cache = new ContentCache(cacheDir, 1024 * 1024);
+        CsvProcessor processor = CsvProcessor.builder()
+                .contentCache(cache).abortErrorRate(0.5).abortMinRows(2).build();
+
+        for (int i = 0; i < 2; i++) {
+            copyCsv("invalid_values.csv");
+            processor.processCsvFile("invalid_values.csv", inputDir.toString(), outputDir.toString(), errorDir.toString());
+        }
+
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getEntries());
+        assertTrue(Files.exists(errorDir.resolve(CsvProcessor.QUARANTINE_DIR).resolve("invalid_values.csv")));
+    }
+
+    /**
+     * use case - more distinct files than the cache holds, one of the first restored meanwhile, then a restart
+     * - verify - the least recently used entries evicted, the cache within its size
+     * - verify - a new instance on the directory finds what was left, in the same order
+     */
+    @Test
+    public void contentCache_shouldEvictLeastRecentlyUsed() throws Exception {
+        Files.writeString(inputDir.resolve("sized.csv"), HEADER + rows(100, 10_000_000));
+        CsvProcessor.builder().build().convertCsvFile(inputDir.resolve("sized.csv"), outputDir.toString(), errorDir.toString());
+        long entryBytes = Files.size(outputDir.resolve("sized.json"));
+        ContentCache cache = new ContentCache(cacheDir, entryBytes * 3);
+        CsvProcessor processor = CsvProcessor.builder().contentCache(cache).build();
+
+        for (int file = 0; file < 3; file++) {
+            convertFile(processor, file);
+        }
+        // the first file used again, the second is now the least recently used
+        convertFile(processor, 0);
+        convertFile(processor, 3);
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getEntries());
+        assertTrue(cache.getBytes() <= entryBytes * 3);
+
+        ContentCache reloaded = new ContentCache(cacheDir, entryBytes * 3);
+        assertEquals(3, reloaded.getEntries());
+        CsvProcessor restarted = CsvProcessor.builder().contentCache(reloaded).build();
+        // 1 was evicted, converting it again evicts 2, the least recently used before the restart
+        for (int file : List.of(1, 0, 3)) {
+            convertFile(restarted, file);
+        }
+        assertEquals(2, reloaded.getHits());
+        assertEquals(3, reloaded.getEntries());
+    }
+
+    // - file n has 100 rows, same length as every other
+    private void convertFile(CsvProcessor processor, int file) throws Exception {
+        // use is ordered by modified time
+        Thread.sleep(10);
+        String csvFileName = format("file_%d.csv", file);
+        Files.writeString(inputDir.resolve(csvFileName), HEADER + rows(100, 10_000_000 + file * 100));
+        processor.processCsvFile(csvFileName, inputDir.toString(), outputDir.toString(), errorDir.toString());
+    }
+
+    private static String rows(int rows, int firstId) {
+        StringBuilder csv = new StringBuilder();
+        for (int row = 0; row < rows; row++) {
+            csv.append(firstId + row).append(",first_name,middle_name,last_name,555-555-5555\r\n");
+        }
+        return csv.toString();
+    }
+
+    private static void assertSameFile(Path expected, Path actual) throws IOException {
+        assertEquals(actual.toString(), Files.exists(expected), Files.exists(actual));
+        if (Files.exists(expected)) {
+            assertArrayEquals(actual.toString(), Files.readAllBytes(expected), Files.readAllBytes(actual));
+        }
+    }
+
+    private void copyCsv(String csvFileName) throws IOException {
+        URL resource = Objects.requireNonNull(getClass().getResource(CSVS + "/" + csvFileName));
+        Files.copy(Paths.get(resource.getPath()), inputDir.resolve(csvFileName));
+    }
+
+    private List<String> copyCsvs(String prefix) throws IOException {
+        URL resources = Objects.requireNonNull(getClass().getResource(CSVS));
+        List<String> names = new ArrayList<>();
+        try (Stream<Path> csvs = Files.list(Paths.get(resources.getPath()))) {
+            for (Path csv : csvs.sorted().collect(toList())) {
+                Files.copy(csv, inputDir.resolve(prefix + csv.getFileName()));
+                names.add(prefix + csv.getFileName());
+            }
+        }
+        return names;
+    }
+
+    private static List<String> listFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(toList());
+        }
+    }
+}
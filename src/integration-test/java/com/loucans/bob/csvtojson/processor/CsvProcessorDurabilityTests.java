@@ -0,0 +1,106 @@
+package com.loucans.bob.csvtojson.processor;
+
+import com.loucans.bob.csvtojson.durability.Durability;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertEquals;
+
+// - --------------------------------------------------
+// - throughput of each durability level, small files converted by concurrent workers
+//   as the monitor would - the numbers are printed, only correctness is asserted
+// - fsync cost depends on the disk, run on the target hardware to compare, with more
+//   files via -DcsvToJson.durabilityFiles and workers via -DcsvToJson.durabilityWorkers
+// - --------------------------------------------------
+public class CsvProcessorDurabilityTests {
+    private static final int FILES = Integer.getInteger("csvToJson.durabilityFiles", 200);
+    private static final int WORKERS = Integer.getInteger("csvToJson.durabilityWorkers", 8);
+    private static final int ROWS_PER_FILE = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * use case - the same files converted with each durability level
+     * - verify - every file converted and deleted at every level
+     * - prints files per second for each level
+     */
+    @Test
+    public void durabilityLevels_throughput() throws Exception {
+        // warm up, the first level measured would otherwise pay for jit compilation
+        convertAll(Durability.NONE, "warmup");
+
+        StringBuilder report = new StringBuilder("durability throughput, " + FILES + " files, " + WORKERS + " workers:");
+        for (Durability durability : Durability.values()) {
+            double filesPerSecond = convertAll(durability, durability.toString());
+            report.append(format("%n  %-12s %8.0f files/s", durability, filesPerSecond));
+        }
+        System.out.println(report);
+    }
+
+    private double convertAll(Durability durability, String run) throws Exception {
+        File inputDir = folder.newFolder(run + "-input");
+        File outputDir = folder.newFolder(run + "-output");
+        File errorDir = folder.newFolder(run + "-error");
+        for (int i = 0; i < FILES; i++) {
+            writeCsv(inputDir.toPath().resolve(i + ".csv"));
+        }
+        CsvProcessor processor = CsvProcessor.builder().durability(durability).build();
+
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+        long started = System.nanoTime();
+        try {
+            List<Future<?>> jobs = new ArrayList<>();
+            for (int i = 0; i < FILES; i++) {
+                String csvFileName = i + ".csv";
+                jobs.add(workers.submit(() -> processor.processCsvFile(
+                        csvFileName,
+                        inputDir.getAbsolutePath(),
+                        outputDir.getAbsolutePath(),
+                        errorDir.getAbsolutePath())));
+            }
+            for (Future<?> job : jobs) {
+                job.get();
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - started;
+
+        assertEquals(0, count(inputDir));
+        assertEquals(FILES, count(outputDir));
+        // one rejected row per file
+        assertEquals(FILES, count(errorDir));
+        return FILES / (elapsedNanos / 1e9);
+    }
+
+    private static void writeCsv(Path csvFile) throws IOException {
+        StringBuilder csv = new StringBuilder("INTERNAL_ID,FIRST_NAME,MIDDLE_NAME,LAST_NAME,PHONE_NUM\r\n");
+        for (int row = 0; row < ROWS_PER_FILE; row++) {
+            csv.append(format("%d,first_name,,last_name,555-555-5555\r\n", 10_000_000 + row));
+        }
+        csv.append("not_an_id,first_name,,last_name,555-555-5555\r\n");
+        Files.writeString(csvFile, csv);
+    }
+
+    private static long count(File dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir.toPath())) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.loucans.bob.csvtojson.processor;
+
+import org.json.JSONArray;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CsvProcessorPreflightTests {
+    private static final String HEADER = "INTERNAL_ID,FIRST_NAME,MIDDLE_NAME,LAST_NAME,PHONE_NUM\r\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File inputDir;
+    private File outputDir;
+    private File errorDir;
+
+    @Before
+    public void setup() throws IOException {
+        inputDir = folder.newFolder("input");
+        outputDir = folder.newFolder("output");
+        errorDir = folder.newFolder("error");
+    }
+
+    /**
+     * use case - extract where most rows are bad
+     * - verify - file is moved to quarantine with a one line summary and no json
+     */
+    @Test
+    public void processCsvFile_shouldQuarantine_whenSampleErrorRateIsOverThreshold() throws IOException {
+        writeCsv("bad.csv", 1_000, i -> i % 5 != 0);
+        CsvProcessor processor = CsvProcessor.builder().preflightSampleRows(50).build();
+
+        process(processor, "bad.csv");
+
+        assertFalse(Files.exists(inputDir.toPath().resolve("bad.csv")));
+        assertTrue(Files.exists(errorDir.toPath().resolve("quarantine/bad.csv")));
+        assertFalse(Files.exists(outputDir.toPath().resolve("bad.json")));
+        List<String> errors = errorLines("bad.csv");
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(1), errors.get(1).startsWith("\"0\",\"quarantined: 40 of 50 sampled rows failed"));
+    }
+
+    /**
+     * use case - extract with a few bad rows
+     * - verify - sample passes and the file is converted as usual
+     */
+    @Test
+    public void processCsvFile_shouldConvert_whenSampleErrorRateIsUnderThreshold() throws IOException {
+        writeCsv("mostly_good.csv", 1_000, i -> i % 100 == 0);
+        CsvProcessor processor = CsvProcessor.builder().preflightSampleRows(50).build();
+
+        process(processor, "mostly_good.csv");
+
+        assertFalse(Files.exists(errorDir.toPath().resolve("quarantine/mostly_good.csv")));
+        assertEquals(990, new JSONArray(Files.readString(outputDir.toPath().resolve("mostly_good.json"))).length());
+        assertEquals(11, errorLines("mostly_good.csv").size());
+    }
+
+    /**
+     * use case - large extract that only goes bad half way through
+     * - verify - strided sample sees the bad half a head sample would miss
+     */
+    @Test
+    public void processCsvFile_shouldQuarantine_whenStridedSampleFindsBadTail() throws IOException {
+        int rows = 200_000;
+        writeCsv("bad_tail.csv", rows, i -> i > rows / 4);
+        assertTrue(Files.size(inputDir.toPath().resolve("bad_tail.csv")) >= PreflightSampler.STRIDE_FROM_BYTES);
+        CsvProcessor processor = CsvProcessor.builder().preflightSampleRows(20).build();
+
+        process(processor, "bad_tail.csv");
+
+        assertTrue(Files.exists(errorDir.toPath().resolve("quarantine/bad_tail.csv")));
+        assertTrue(errorLines("bad_tail.csv").get(1).contains("near byte"));
+    }
+
+    /**
+     * use case - extract that passes the sample but then goes bad
+     * - verify - conversion is abandoned once the running error rate passes the ceiling
+     * - verify - error file lists the first errors and summarizes the rest
+     */
+    @Test
+    public void processCsvFile_shouldAbort_whenRunningErrorRateCrossesCeiling() throws IOException {
+        writeCsv("goes_bad.csv", 10_000, i -> i > 100);
+        CsvProcessor processor = CsvProcessor.builder()
+                .abortErrorRate(0.5)
+                .abortMinRows(50)
+                .maxErrorLines(5)
+                .build();
+
+        process(processor, "goes_bad.csv");
+
+        assertTrue(Files.exists(errorDir.toPath().resolve("quarantine/goes_bad.csv")));
+        assertFalse(Files.exists(outputDir.toPath().resolve("goes_bad.json")));
+        List<String> errors = errorLines("goes_bad.csv");
+        assertEquals(1 + 5 + 2, errors.size());
+        assertEquals("\"0\",\"96 more errors not listed, 101 in total\"", errors.get(6));
+        assertTrue(errors.get(7), errors.get(7).startsWith("\"0\",\"aborted at row 202: 101 of 201 rows failed"));
+    }
+
+    /**
+     * use case - many bad rows, no abort configured
+     * - verify - error file is capped with a summary line
+     */
+    @Test
+    public void processCsvFile_shouldSummarizeErrors_whenOverMaxErrorLines() throws IOException {
+        writeCsv("noisy.csv", 1_000, i -> i % 2 == 0);
+        CsvProcessor processor = CsvProcessor.builder().maxErrorLines(10).pipelineWorkers(2).build();
+
+        process(processor, "noisy.csv");
+
+        List<String> errors = errorLines("noisy.csv");
+        assertEquals(12, errors.size());
+        assertEquals("\"0\",\"490 more errors not listed, 500 in total\"", errors.get(11));
+        assertEquals(500, new JSONArray(Files.readString(outputDir.toPath().resolve("noisy.json"))).length());
+    }
+
+    private void process(CsvProcessor processor, String csvFileName) {
+        processor.processCsvFile(
+                csvFileName,
+                inputDir.getAbsolutePath(),
+                outputDir.getAbsolutePath(),
+                errorDir.getAbsolutePath());
+    }
+
+    // - data rows 1..rows, a bad row has a non numeric id
+    private void writeCsv(String csvFileName, int rows, IntPredicate bad) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(inputDir.toPath().resolve(csvFileName), UTF_8)) {
+            writer.write(HEADER);
+            for (int i = 1; i <= rows; i++) {
+                writer.write(String.format("%s,first_name_%d,middle_name_%d,last_name_%d,555-555-5555\r\n",
+                        bad.test(i) ? "not_an_id" : Integer.toString(10_000_000 + i), i, i, i));
+            }
+        }
+    }
+
+    private List<String> errorLines(String csvFileName) throws IOException {
+        Path errorFile = errorDir.toPath().resolve(csvFileName);
+        return Files.readAllLines(errorFile, UTF_8);
+    }
+}
@@ -0,0 +1,68 @@
+package com.loucans.bob.csvtojson.processor;
+
+import org.json.JSONArray;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CsvProcessorSortTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File inputDir;
+    private File outputDir;
+    private File errorDir;
+
+    @Before
+    public void setup() throws IOException {
+        inputDir = folder.newFolder("input");
+        outputDir = folder.newFolder("output");
+        errorDir = folder.newFolder("error");
+    }
+
+    /**
+     * use case - unordered extract, sorted output requested, runs far smaller than the file
+     * - verify - json ordered by id, nothing lost, no run files left behind
+     */
+    @Test
+    public void processCsvFile_shouldWriteJsonOrderedById_whenSortById() throws IOException {
+        int rows = 20_000;
+        Random random = new Random(7);
+        try (BufferedWriter writer = Files.newBufferedWriter(inputDir.toPath().resolve("unordered.csv"), UTF_8)) {
+            writer.write("INTERNAL_ID,FIRST_NAME,MIDDLE_NAME,LAST_NAME,PHONE_NUM\r\n");
+            for (int i = 0; i < rows; i++) {
+                writer.write(String.format("%d,first,,last,555-555-5555\r\n", 10_000_000 + random.nextInt(90_000_000)));
+            }
+        }
+        CsvProcessor processor = CsvProcessor.builder()
+                .pipelineWorkers(2)
+                .sortById(true)
+                .sortRunBytes(64 * 1024)
+                .build();
+
+        processor.processCsvFile(
+                "unordered.csv",
+                inputDir.getAbsolutePath(),
+                outputDir.getAbsolutePath(),
+                errorDir.getAbsolutePath());
+
+        JSONArray json = new JSONArray(Files.readString(outputDir.toPath().resolve("unordered.json")));
+        assertEquals(rows, json.length());
+        for (int i = 1; i < json.length(); i++) {
+            assertTrue(json.getJSONObject(i - 1).getLong("id") <= json.getJSONObject(i).getLong("id"));
+        }
+        assertEquals(1, outputDir.list().length);
+    }
+}
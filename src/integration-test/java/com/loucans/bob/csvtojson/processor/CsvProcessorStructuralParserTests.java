@@ -0,0 +1,163 @@
+package com.loucans.bob.csvtojson.processor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CsvProcessorStructuralParserTests {
+    private static final String CSVS = "/com/loucans/bob/csvtojson/csvs";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File commonsDir;
+    private File structuralDir;
+
+    @Before
+    public void setup() throws IOException {
+        commonsDir = folder.newFolder("commons");
+        structuralDir = folder.newFolder("structural");
+    }
+
+    /**
+     * use case - every test extract, good and bad, converted with each parser
+     * - verify - the structural parser writes byte for byte the same json and error files
+     */
+    @Test
+    public void structuralParser_shouldWriteSameFilesAsCommons() throws Exception {
+        List<String> csvFileNames = copyCsvs(commonsDir);
+        copyCsvs(structuralDir);
+
+        convertOneByOne(CsvProcessor.builder().build(), commonsDir, csvFileNames);
+        convertOneByOne(CsvProcessor.builder().structuralParser(true).build(), structuralDir, csvFileNames);
+
+        assertSameOutputs();
+    }
+
+    /**
+     * use case - test extracts converted as one batch, through the shared batch buffers
+     * - verify - same json and error files as commons-csv one by one
+     */
+    @Test
+    public void structuralParser_shouldWriteSameFilesAsCommons_inBatch() throws Exception {
+        List<String> csvFileNames = copyCsvs(commonsDir);
+        copyCsvs(structuralDir);
+
+        convertOneByOne(CsvProcessor.builder().build(), commonsDir, csvFileNames);
+        CsvProcessor.builder().structuralParser(true).build().processCsvFiles(csvFileNames,
+                dir(structuralDir, "input"), dir(structuralDir, "output"), dir(structuralDir, "error"));
+
+        assertSameOutputs();
+    }
+
+    /**
+     * use case - file of many blocks, quoted values with delimiters, quotes and line breaks,
+     *   invalid rows and multi byte characters, ending in a malformed quoted value
+     * - verify - same json and error files as commons-csv, with the pipeline workers
+     */
+    @Test
+    public void structuralParser_shouldWriteSameFilesAsCommons_forLargeFile() throws Exception {
+        String csv = largeCsv(60_000);
+        for (File root : List.of(commonsDir, structuralDir)) {
+            createDirs(root);
+            Files.writeString(Paths.get(dir(root, "input"), "large.csv"), csv);
+        }
+
+        convertOneByOne(CsvProcessor.builder().pipelineWorkers(2).build(), commonsDir, List.of("large.csv"));
+        convertOneByOne(CsvProcessor.builder().pipelineWorkers(2).structuralParser(true).build(),
+                structuralDir, List.of("large.csv"));
+
+        assertEquals(List.of("large.json"), listFiles(structuralDir, "output"));
+        assertSameOutputs();
+    }
+
+    private static void convertOneByOne(CsvProcessor processor, File root, List<String> csvFileNames) {
+        for (String csvFileName : csvFileNames) {
+            try {
+                processor.processCsvFile(csvFileName, dir(root, "input"), dir(root, "output"), dir(root, "error"));
+            } catch (RuntimeException e) {
+                // invalid headers end the file
+            }
+        }
+    }
+
+    private void assertSameOutputs() throws IOException {
+        for (String subDir : List.of("output", "error")) {
+            List<String> expected = listFiles(commonsDir, subDir);
+            assertEquals(expected, listFiles(structuralDir, subDir));
+            for (String name : expected) {
+                assertArrayEquals(name,
+                        Files.readAllBytes(Paths.get(dir(commonsDir, subDir), name)),
+                        Files.readAllBytes(Paths.get(dir(structuralDir, subDir), name)));
+            }
+        }
+    }
+
+    private static String largeCsv(int rows) {
+        StringBuilder csv = new StringBuilder("INTERNAL_ID,FIRST_NAME,MIDDLE_NAME,LAST_NAME,PHONE_NUM\r\n");
+        for (int row = 0; row < rows; row++) {
+            switch (row % 7) {
+                case 0:
+                    csv.append(10_000_000 + row).append(",\"first, \"\"quoted\"\"\",,last_name,555-555-5555\r\n");
+                    break;
+                case 1:
+                    csv.append(10_000_000 + row).append(",first_name,\"middle\r\nname\",last_name,555-555-5555\n");
+                    break;
+                case 2:
+                    csv.append(10_000_000 + row).append(",Fran\u00e7ois,,Andr\u00e9,555-555-5555\r\n");
+                    break;
+                case 3:
+                    csv.append("not_an_id,first_name,,last_name,555-555-5555\r\n");
+                    break;
+                default:
+                    csv.append(10_000_000 + row).append(",first_name,middle_name,last_name,555-555-5555\r\n");
+            }
+        }
+        return csv.append(90_000_000).append(",\"first\"x,,last_name,555-555-5555\r\n").toString();
+    }
+
+    private List<String> copyCsvs(File root) throws IOException {
+        createDirs(root);
+        URL resources = Objects.requireNonNull(getClass().getResource(CSVS));
+        List<String> names = new ArrayList<>();
+        try (Stream<Path> csvs = Files.list(Paths.get(resources.getPath()))) {
+            for (Path csv : csvs.sorted().collect(toList())) {
+                Files.copy(csv, Paths.get(dir(root, "input"), csv.getFileName().toString()));
+                names.add(csv.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    private static void createDirs(File root) throws IOException {
+        for (String subDir : List.of("input", "output", "error")) {
+            Files.createDirectories(Paths.get(root.getAbsolutePath(), subDir));
+        }
+    }
+
+    private static String dir(File root, String subDir) {
+        return Paths.get(root.getAbsolutePath(), subDir).toString();
+    }
+
+    private static List<String> listFiles(File root, String subDir) throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(dir(root, subDir)))) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(toList());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.loucans.bob.csvtojson.processor;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CsvProcessorValidationTests {
+    private static final String CSVS = "/com/loucans/bob/csvtojson/csvs";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path inputDir;
+    private Path outputDir;
+    private Path errorDir;
+
+    @Before
+    public void setup() throws IOException {
+        inputDir = folder.newFolder("input").toPath();
+        outputDir = folder.newFolder("output").toPath();
+        errorDir = folder.newFolder("error").toPath();
+    }
+
+    /**
+     * use case - file with failing rows for every rule, validated only
+     * - verify - per rule counts and the first offending rows, in a report next to the errors
+     * - verify - no json or error file, the input is left in place
+     */
+    @Test
+    public void validateOnly_shouldReportErrorsPerRule_andLeaveInput() throws Exception {
+        copyCsvs();
+        CsvProcessor processor = CsvProcessor.builder().validateOnly(true).validationSampleRows(2).build();
+
+        processor.processCsvFile("invalid_values.csv", inputDir.toString(), outputDir.toString(), errorDir.toString());
+
+        assertTrue(Files.exists(inputDir.resolve("invalid_values.csv")));
+        assertEquals(List.of(), listFiles(outputDir));
+        assertEquals(List.of("invalid_values.validation.json"), listFiles(errorDir));
+
+        JSONObject report = new JSONObject(Files.readString(errorDir.resolve("invalid_values.validation.json")));
+        assertEquals(16, report.getInt("rows"));
+        assertEquals(16, report.getInt("failedRows"));
+        JSONObject id = report.getJSONArray("errors").getJSONObject(0);
+        assertEquals("invalid INTERNAL_ID [required, length <= 8, digits only]", id.getString("rule"));
+        assertEquals(4, id.getInt("count"));
+        assertEquals(2, id.getJSONArray("samples").length());
+        assertEquals(2, id.getJSONArray("samples").getJSONObject(0).getInt("row"));
+        assertEquals("123456770", id.getJSONArray("samples").getJSONObject(0).getString("value"));
+        assertEquals("1234567A", id.getJSONArray("samples").getJSONObject(1).getJSONArray("fields").getString(0));
+    }
+
+    /**
+     * use case - every test extract, validated and converted
+     * - verify - the report fails the rows the conversion rejected, one rule per row
+     */
+    @Test
+    public void validateCsvFile_shouldFailSameRowsAsConversion() throws Exception {
+        for (String csvFileName : copyCsvs()) {
+            Path csvFile = inputDir.resolve(csvFileName);
+            ValidationReport report =
+                    CsvProcessor.builder().validationSampleRows(100).build().validateCsvFile(csvFile);
+            ValidationReport structuralReport =
+                    CsvProcessor.builder().structuralParser(true).build().validateCsvFile(csvFile);
+
+            try {
+                CsvProcessor.builder().build().convertCsvFile(csvFile, outputDir.toString(), errorDir.toString());
+            } catch (RuntimeException e) {
+                // invalid headers end the file
+            }
+            Map<Integer, String> rejected = rejectedRows(errorDir.resolve(csvFileName));
+            Map<Integer, String> failed = new TreeMap<>();
+            report.getErrorCounts().keySet().forEach(rule ->
+                    report.getSamples(rule).forEach(sample -> failed.put(sample.getRowNum(), rule)));
+            // row 0 is a file level line, i.e. empty file
+            failed.remove(0);
+
+            assertEquals(csvFileName, rejected, failed);
+            assertEquals(csvFileName, report.getErrorCounts(), structuralReport.getErrorCounts());
+            assertEquals(csvFileName, Files.exists(errorDir.resolve(csvFileName)), report.hasErrors());
+        }
+    }
+
+    /**
+     * use case - validating a file with no rows at all, and one with a malformed record
+     * - verify - the empty file and the parse error are reported, without fields
+     */
+    @Test
+    public void validateCsvFile_shouldReportEmptyFileAndParseErrors() throws Exception {
+        copyCsvs();
+        CsvProcessor processor = CsvProcessor.builder().build();
+
+        ValidationReport empty = processor.validateCsvFile(inputDir.resolve("empty_file.csv"));
+        assertEquals(Map.of("empty file", 1), empty.getErrorCounts());
+
+        ValidationReport malformed = processor.validateCsvFile(inputDir.resolve("malformed_quoted_value_1.csv"));
+        assertEquals(1, malformed.getFailedRows());
+        String rule = malformed.getErrorCounts().keySet().iterator().next();
+        assertNull(malformed.getSamples(rule).get(0).getFields());
+    }
+
+    /**
+     * use case - large file validated only with each parser, timed against converting it
+     * - verify - every failing row counted, the same with both parsers
+     */
+    @Test
+    public void validateCsvFile_shouldCountLargeFile() throws Exception {
+        int rows = 500_000;
+        StringBuilder csv = new StringBuilder("INTERNAL_ID,FIRST_NAME,MIDDLE_NAME,LAST_NAME,PHONE_NUM\r\n");
+        for (int row = 0; row < rows; row++) {
+            csv.append(row % 100 == 0 ? "x" : String.valueOf(10_000_000 + row))
+                    .append(",first_name,middle_name,last_name,555-555-5555\r\n");
+        }
+        Path csvFile = Files.writeString(inputDir.resolve("large.csv"), csv);
+        String idRule = "invalid INTERNAL_ID [required, length <= 8, digits only]";
+
+        long started = System.nanoTime();
+        CsvProcessor.builder().build().convertCsvFile(csvFile, outputDir.toString(), errorDir.toString());
+        long converted = System.nanoTime();
+        ValidationReport report = CsvProcessor.builder().build().validateCsvFile(csvFile);
+        long validated = System.nanoTime();
+        ValidationReport structuralReport = CsvProcessor.builder().structuralParser(true).build().validateCsvFile(csvFile);
+        long validatedStructural = System.nanoTime();
+        System.out.println(format("validation: %d rows converted in %d ms, validated in %d ms, %d ms with the structural parser",
+                rows, (converted - started) / 1_000_000, (validated - converted) / 1_000_000,
+                (validatedStructural - validated) / 1_000_000));
+
+        for (ValidationReport r : List.of(report, structuralReport)) {
+            assertEquals(rows, r.getRows());
+            assertEquals(Map.of(idRule, rows / 100), r.getErrorCounts());
+            assertArrayEquals(new int[]{2, 102, 202, 302, 402},
+                    r.getSamples(idRule).stream().mapToInt(ValidationReport.Sample::getRowNum).toArray());
+        }
+        assertFalse(Files.exists(errorDir.resolve("large.validation.json")));
+    }
+
+    // - error file lines by row, "<row>","<message>"
+    private static Map<Integer, String> rejectedRows(Path errorFile) throws IOException {
+        Map<Integer, String> rejected = new TreeMap<>();
+        if (!Files.exists(errorFile)) {
+            return rejected;
+        }
+        List<String> lines = Files.readAllLines(errorFile);
+        for (String line : lines.subList(1, lines.size())) {
+            int separator = line.indexOf("\",\"");
+            int rowNum = Integer.parseInt(line.substring(1, separator));
+            if (rowNum > 0) {
+                rejected.put(rowNum, line.substring(separator + 3, line.length() - 1));
+            }
+        }
+        return rejected;
+    }
+
+    private List<String> copyCsvs() throws IOException {
+        URL resources = Objects.requireNonNull(getClass().getResource(CSVS));
+        List<String> names = new ArrayList<>();
+        try (Stream<Path> csvs = Files.list(Paths.get(resources.getPath()))) {
+            for (Path csv : csvs.sorted().collect(toList())) {
+                Files.copy(csv, inputDir.resolve(csv.getFileName()));
+                names.add(csv.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    private static List<String> listFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(toList());
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.loucans.bob.csvtojson.processor;
+
+import com.loucans.bob.csvtojson.durability.Durability;
+import com.loucans.bob.csvtojson.durability.FileSyncer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TailingCsvProcessorTests {
+    private static final String HEADER = "INTERNAL_ID,FIRST_NAME,MIDDLE_NAME,LAST_NAME,PHONE_NUM\r\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File inputDir;
+    private File outputDir;
+    private File errorDir;
+    private Path csvFile;
+
+    @Before
+    public void setup() throws IOException {
+        inputDir = folder.newFolder("input");
+        outputDir = folder.newFolder("output");
+        errorDir = folder.newFolder("error");
+        csvFile = inputDir.toPath().resolve("daily.csv");
+    }
+
+    /**
+     * use case - producer appends to one csv file all day
+     * - verify - only complete records are converted, each exactly once, as json lines
+     * - verify - offsets survive a restart
+     * - verify - file is kept until sealed, then deleted with its marker
+     */
+    @Test
+    public void processAppended_shouldConvertOnlyNewCompleteRecords() throws IOException {
+        append(HEADER + row(0) + "12345671,first_name_1,\"middle");
+        process(new TailingCsvProcessor());
+
+        assertEquals(List.of(json(0)), ndjson());
+
+        append("_name_1\",last_name_1,555-555-5551\r\n");
+        process(new TailingCsvProcessor());
+        assertEquals(List.of(json(0), json(1)), ndjson());
+
+        // restart, a new processor reads the saved offsets
+        TailingCsvProcessor restarted = new TailingCsvProcessor();
+        process(restarted);
+        assertEquals(List.of(json(0), json(1)), ndjson());
+        assertTrue(Files.exists(csvFile));
+
+        // no line break after the last record, only the seal makes it complete
+        append(row(2).trim());
+        process(restarted);
+        assertEquals(2, ndjson().size());
+
+        Files.createFile(inputDir.toPath().resolve("daily.csv.sealed"));
+        process(restarted);
+
+        assertEquals(List.of(json(0), json(1), json(2)), ndjson());
+        assertFalse(Files.exists(csvFile));
+        assertFalse(Files.exists(inputDir.toPath().resolve("daily.csv.sealed")));
+        assertFalse(Files.exists(errorDir.toPath().resolve("daily.csv")));
+    }
+
+    /**
+     * use case - producer ends lines with a bare carriage return
+     * - verify - a record ending in \r is converted once the byte after it is there
+     * - verify - a \r\n split across passes ends one record, not two
+     */
+    @Test
+    public void processAppended_shouldEndRecordsAtCarriageReturns() throws IOException {
+        TailingCsvProcessor processor = new TailingCsvProcessor();
+        append(cr(HEADER) + cr(row(0)) + cr(row(1)));
+        process(processor);
+        assertEquals(List.of(json(0)), ndjson());
+
+        append("\n" + cr(row(2)) + cr(row(3)));
+        process(processor);
+        assertEquals(List.of(json(0), json(1), json(2)), ndjson());
+
+        Files.createFile(inputDir.toPath().resolve("daily.csv.sealed"));
+        process(processor);
+
+        assertEquals(List.of(json(0), json(1), json(2), json(3)), ndjson());
+        assertFalse(Files.exists(errorDir.toPath().resolve("daily.csv")));
+    }
+
+    /**
+     * use case - invalid rows arrive in different passes
+     * - verify - error file is appended to with line numbers of the whole file
+     */
+    @Test
+    public void processAppended_shouldAppendErrorsWithFileLineNumbers() throws IOException {
+        append(HEADER + row(0) + "not_an_id,first_name_1,,last_name_1,555-555-5551\r\n");
+        process(new TailingCsvProcessor());
+        append(row(2) + "12345673,first_name_3,,last_name_3,not_a_phone\r\n");
+        process(new TailingCsvProcessor());
+
+        List<String> errors = Files.readAllLines(errorDir.toPath().resolve("daily.csv"), UTF_8);
+        assertEquals(3, errors.size());
+        assertEquals("\"LINE_NUM\",\"ERROR_MSG\"", errors.get(0));
+        assertTrue(errors.get(1).startsWith("\"3\","));
+        assertTrue(errors.get(2).startsWith("\"5\","));
+        assertEquals(List.of(json(0), json(2)), ndjson());
+    }
+
+    /**
+     * use case - invalid header row
+     * - verify - later appends are skipped, file is still deleted once sealed
+     */
+    @Test
+    public void processAppended_shouldSkipFile_whenHeaderIsInvalid() throws IOException {
+        append("a,b,c,d,e\r\n" + row(0));
+        process(new TailingCsvProcessor());
+        append(row(1));
+        process(new TailingCsvProcessor());
+
+        assertFalse(Files.exists(outputDir.toPath().resolve("daily.ndjson")));
+        assertEquals(2, Files.readAllLines(errorDir.toPath().resolve("daily.csv"), UTF_8).size());
+
+        Files.createFile(inputDir.toPath().resolve("daily.csv.sealed"));
+        process(new TailingCsvProcessor());
+        assertFalse(Files.exists(csvFile));
+    }
+
+    /**
+     * use case - the producer rewrites the file shorter, or reuses a sealed name the next day
+     * - verify - the outputs hold the new file's records and errors only, not the old ones as well
+     */
+    @Test
+    public void processAppended_shouldReplaceOutputs_whenConvertingFromTheStart() throws IOException {
+        TailingCsvProcessor processor = new TailingCsvProcessor();
+        append(HEADER + row(0) + "not_an_id,first_name_1,,last_name_1,555-555-5551\r\n" + row(2));
+        process(processor);
+        assertEquals(List.of(json(0), json(2)), ndjson());
+
+        // shrank
+        Files.writeString(csvFile, HEADER + row(3), UTF_8);
+        process(processor);
+        assertEquals(List.of(json(3)), ndjson());
+        assertFalse(Files.exists(errorDir.toPath().resolve("daily.csv")));
+
+        Files.createFile(inputDir.toPath().resolve("daily.csv.sealed"));
+        process(processor);
+        assertFalse(Files.exists(csvFile));
+
+        // the name again, the next day
+        append(HEADER + "12345674,first_name_4,,last_name_4,not_a_phone\r\n" + row(5));
+        process(processor);
+        assertEquals(List.of(json(5)), ndjson());
+        assertEquals(2, Files.readAllLines(errorDir.toPath().resolve("daily.csv"), UTF_8).size());
+    }
+
+    /**
+     * use case - tail mode with durability file
+     * - verify - the json lines are fsynced before the offset moves past them and before the sealed input is deleted
+     */
+    @Test
+    public void processAppended_shouldSyncOutputs_beforeSavingOffsetAndDeleting() throws IOException {
+        Path ndjsonFile = outputDir.toPath().resolve("daily.ndjson");
+        List<String> synced = new ArrayList<>();
+        FileSyncer fileSyncer = new FileSyncer(Durability.FILE) {
+            @Override
+            public void sync(Path... files) {
+                super.sync(files);
+                for (Path file : files) {
+                    if (file.equals(ndjsonFile)) {
+                        synced.add(Files.exists(csvFile) ? "ndjson" : "ndjson after delete");
+                    } else if (file.getFileName().toString().startsWith(TailOffsets.FILE_NAME)) {
+                        synced.add("offsets");
+                    }
+                }
+            }
+        };
+        TailingCsvProcessor processor = new TailingCsvProcessor(CsvProcessor.DEFAULT_MAX_FIELD_LENGTH, fileSyncer);
+
+        append(HEADER + row(0));
+        process(processor);
+        Files.createFile(inputDir.toPath().resolve("daily.csv.sealed"));
+        process(processor);
+
+        assertEquals(List.of("ndjson", "offsets", "offsets", "ndjson", "offsets", "offsets"), synced);
+        assertFalse(Files.exists(csvFile));
+    }
+
+    private void process(TailingCsvProcessor processor) {
+        processor.processAppended(
+                "daily.csv",
+                inputDir.getAbsolutePath(),
+                outputDir.getAbsolutePath(),
+                errorDir.getAbsolutePath());
+    }
+
+    private void append(String csv) throws IOException {
+        Files.writeString(csvFile, csv, UTF_8, CREATE, APPEND);
+    }
+
+    private List<String> ndjson() throws IOException {
+        return Files.readAllLines(outputDir.toPath().resolve("daily.ndjson"), UTF_8);
+    }
+
+    private static String row(int i) {
+        return String.format("1234567%d,first_name_%d,middle_name_%d,last_name_%d,555-555-555%d\r\n", i, i, i, i, i);
+    }
+
+    private static String cr(String line) {
+        return line.replace("\r\n", "\r");
+    }
+
+    private static String json(int i) {
+        return String.format(
+                "{\"phone\":\"555-555-555%d\",\"name\":{\"middle\":\"middle_name_%d\",\"last\":\"last_name_%d\",\"first\":\"first_name_%d\"},\"id\":1234567%d}",
+                i, i, i, i, i);
+    }
+}
@@ -1,9 +1,28 @@
 package com.loucans.bob.csvtojson;
 
+import com.loucans.bob.csvtojson.claim.FileClaims;
+import com.loucans.bob.csvtojson.config.FeedConfig;
+import com.loucans.bob.csvtojson.config.FeedConfigLoader;
+import com.loucans.bob.csvtojson.durability.Durability;
+import com.loucans.bob.csvtojson.http.CsvToJsonHttpServer;
+import com.loucans.bob.csvtojson.processor.ContentCache;
+import com.loucans.bob.csvtojson.processor.ConversionStats;
+import com.loucans.bob.csvtojson.processor.CsvProcessor;
+import com.loucans.bob.csvtojson.processor.SortingOutputWriter;
+import com.loucans.bob.csvtojson.processor.TailingCsvProcessor;
+import com.loucans.bob.csvtojson.scheduler.MemoryBudget;
+import com.loucans.bob.csvtojson.scheduler.WeightedLaneQueue;
 import org.apache.commons.cli.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+import static org.apache.commons.lang3.StringUtils.isAnyBlank;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
 public class CsvToJson {
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvToJson.class);
 
@@ -17,6 +36,74 @@ public class CsvToJson {
         options.addOption(newOption("e", "errorPath", "output directory for error files"));
         options.addOption(newOption("i", "inputPath", "input directory to monitor for csv files"));
         options.addOption(newOption("o", "outputPath", "output directory for json files"));
+        options.addOption(newOption("f", "file",
+                "convert this one csv file into outputPath and errorPath and exit, the file is left in place"));
+        options.addOption(newOption("c", "config",
+                "feed config file for watching several input directories, replaces -i, -o and -e"));
+        options.addOption(newOption("w", "pipelineWorkers",
+                "validate/serialize worker threads per file, 0 (default) processes a file on one thread"));
+        options.addOption(newOption("p", "httpPort",
+                "serve POST /convert on this loopback port in addition to monitoring inputPath"));
+        options.addOption(newOption("m", "httpMaxConcurrent",
+                "concurrent http conversions before requests are rejected with 503, default 4"));
+        options.addOption(newOption(null, "node",
+                "share the input directories with other processes, claiming files under .claimed/<node>, unique per process"));
+        options.addOption(newOption(null, "leaseSeconds",
+                "seconds without heartbeat before another node's claimed files are recovered, default 60"));
+        options.addOption(Option.builder().longOpt("tail")
+                .desc("convert csv files as they are appended to, into .ndjson, a file is deleted once <name>.csv.sealed exists")
+                .build());
+        options.addOption(Option.builder().longOpt("sortById")
+                .desc("write json records ordered by INTERNAL_ID, sorting on disk for files larger than memory")
+                .build());
+        options.addOption(Option.builder().longOpt("structuralParser")
+                .desc("parse files with the structural index parser, same results as the default parser, faster on large files")
+                .build());
+        options.addOption(Option.builder().longOpt("validateOnly")
+                .desc("only validate files, writing <name>.validation.json to errorPath - no json, inputs are not deleted")
+                .build());
+        options.addOption(newOption(null, "validationSampleRows",
+                "offending rows listed per failed rule in a validation report, default 5"));
+        options.addOption(newOption(null, "sortRunBytes",
+                "records held in memory per sorted run before spilling to disk, default 67108864"));
+        options.addOption(newOption(null, "maxFieldLength",
+                "fields longer than this many characters are rejected with their row, 0 for no limit, default 65536"));
+        options.addOption(newOption(null, "preflightRows",
+                "validate this many rows, strided for large files, before converting, default 0 (off)"));
+        options.addOption(newOption(null, "preflightMaxErrorRate",
+                "quarantine a file when more than this share of sampled rows fail, default 0.5"));
+        options.addOption(newOption(null, "abortErrorRate",
+                "abandon and quarantine a file once more than this share of its rows failed, default 1 (never)"));
+        options.addOption(newOption(null, "abortMinRows",
+                "rows converted before abortErrorRate applies, default 1000"));
+        options.addOption(newOption(null, "maxErrorLines",
+                "error lines written per file, further errors are only counted in a summary line, default 0 (all)"));
+        options.addOption(newOption(null, "durability",
+                "none (default), file - fsync each file's output before deleting its input, or group-commit - directory fsyncs shared by files finishing together"));
+        options.addOption(newOption(null, "cacheDir",
+                "keep outputs by input content here, a file sent again is restored instead of converted, default off"));
+        options.addOption(newOption(null, "cacheMaxBytes",
+                "disk the cache may use, least recently used outputs are evicted, default 1073741824"));
+        options.addOption(newOption(null, "memoryBudgetBytes",
+                "heap concurrent files may reserve, further files wait, default half the max heap"));
+        options.addOption(newOption(null, "expressThresholdBytes",
+                "files up to this size skip ahead of large files and may use the express workers, default 8388608"));
+        options.addOption(newOption(null, "minWorkers",
+                "conversion workers, and the fewest the pool shrinks to with maxWorkers, default 5"));
+        options.addOption(newOption(null, "maxWorkers",
+                "above minWorkers the pool grows and shrinks with the cpu and i/o wait of its tasks, default minWorkers"));
+        options.addOption(newOption(null, "adaptIntervalMillis",
+                "how often the adaptive pool samples its workers, default 1000"));
+        options.addOption(newOption(null, "expressWorkers",
+                "workers kept free of large files, default 1"));
+        options.addOption(newOption(null, "agingBytesPerSecond",
+                "file size forgiven per second of queue wait when ordering files, default 67108864"));
+        options.addOption(newOption(null, "microBatchMaxBytes",
+                "files up to this size arriving together are converted as one job per batch, default 0 (off)"));
+        options.addOption(newOption(null, "microBatchWindowMillis",
+                "how long a batch waits for more small files after its first, default 20"));
+        options.addOption(newOption(null, "microBatchMaxFiles",
+                "files per batch, a full batch is converted without waiting, default 64"));
 
         CommandLineParser parser = new DefaultParser();
         CommandLine cmd = null;
@@ -27,16 +114,171 @@ public class CsvToJson {
             System.exit(1);
         }
 
-        new CsvToJsonMonitor().start(
-                cmd.getOptionValue("inputPath"),
-                cmd.getOptionValue("outputPath"),
-                cmd.getOptionValue("errorPath"));
+        CsvProcessor processor = null;
+        CsvToJsonMonitor monitor = null;
+        List<FeedConfig> feeds = null;
+        try {
+            if (cmd.hasOption("validateOnly") && (cmd.hasOption("tail") || cmd.hasOption("node") || cmd.hasOption("httpPort"))) {
+                throw new ParseException("validateOnly cannot be combined with tail, node or httpPort");
+            }
+            processor = CsvProcessor.builder()
+                    .pipelineWorkers(intOptionValue(cmd, "pipelineWorkers", 0))
+                    .maxFieldLength(intOptionValue(cmd, "maxFieldLength", CsvProcessor.DEFAULT_MAX_FIELD_LENGTH))
+                    .memoryBudget(new MemoryBudget(
+                            longOptionValue(cmd, "memoryBudgetBytes", Runtime.getRuntime().maxMemory() / 2)))
+                    .preflightSampleRows(intOptionValue(cmd, "preflightRows", 0))
+                    .preflightMaxErrorRate(doubleOptionValue(cmd, "preflightMaxErrorRate", 0.5))
+                    .abortErrorRate(doubleOptionValue(cmd, "abortErrorRate", 1))
+                    .abortMinRows(intOptionValue(cmd, "abortMinRows", 1000))
+                    .maxErrorLines(intOptionValue(cmd, "maxErrorLines", 0))
+                    .sortById(cmd.hasOption("sortById"))
+                    .sortRunBytes(longOptionValue(cmd, "sortRunBytes", SortingOutputWriter.DEFAULT_RUN_BYTES))
+                    .durability(Durability.fromOption(cmd.getOptionValue("durability", "none")))
+                    .structuralParser(cmd.hasOption("structuralParser"))
+                    .validateOnly(cmd.hasOption("validateOnly"))
+                    .validationSampleRows(intOptionValue(cmd, "validationSampleRows", 5))
+                    .contentCache(cmd.hasOption("cacheDir")
+                            ? new ContentCache(Paths.get(cmd.getOptionValue("cacheDir")),
+                                    longOptionValue(cmd, "cacheMaxBytes", 1024L * 1024 * 1024))
+                            : null)
+                    .build();
+
+            if (cmd.hasOption("file")) {
+                // one shot - nothing else is started, so only the classes a conversion needs are loaded
+                System.exit(convertFile(cmd, processor));
+            }
+
+            feeds = feeds(cmd);
+
+            if (cmd.hasOption("httpPort")) {
+                new CsvToJsonHttpServer(
+                        processor,
+                        intOptionValue(cmd, "httpPort", 0),
+                        intOptionValue(cmd, "httpMaxConcurrent", 4)).start();
+            }
+
+            monitor = CsvToJsonMonitor.builder()
+                    .processor(processor)
+                    .expressThresholdBytes(longOptionValue(cmd, "expressThresholdBytes", 8L * 1024 * 1024))
+                    .expressWorkers(intOptionValue(cmd, "expressWorkers", 1))
+                    .minWorkers(intOptionValue(cmd, "minWorkers", CsvToJsonMonitor.DEFAULT_WORKERS))
+                    .maxWorkers(intOptionValue(cmd, "maxWorkers",
+                            intOptionValue(cmd, "minWorkers", CsvToJsonMonitor.DEFAULT_WORKERS)))
+                    .adaptIntervalMillis(longOptionValue(cmd, "adaptIntervalMillis", 1000))
+                    .agingBytesPerSecond(longOptionValue(cmd, "agingBytesPerSecond", 64L * 1024 * 1024))
+                    .microBatchMaxBytes(longOptionValue(cmd, "microBatchMaxBytes", 0))
+                    .microBatchWindowMillis(longOptionValue(cmd, "microBatchWindowMillis", 20))
+                    .microBatchMaxFiles(intOptionValue(cmd, "microBatchMaxFiles", 64))
+                    .tailingProcessor(cmd.hasOption("tail")
+                            ? new TailingCsvProcessor(processor.getMaxFieldLength(), processor.getFileSyncer())
+                            : null)
+                    .fileClaims(cmd.hasOption("node")
+                            ? new FileClaims(cmd.getOptionValue("node"),
+                                    Duration.ofSeconds(longOptionValue(cmd, "leaseSeconds", 60)))
+                            : null)
+                    .build();
+        } catch (ParseException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            new HelpFormatter().printHelp("csvToJsonMonitor", options);
+            System.exit(1);
+        }
+
+        monitor.start(feeds);
     }
 
+    // - 0 converted, 2 converted with rejected rows (see the error file), 1 failed
+    // - with validateOnly 0 valid, 2 invalid rows or header (see the validation report), 1 failed
+    private static int convertFile(CommandLine cmd, CsvProcessor processor) throws ParseException {
+        String outputPath = cmd.getOptionValue("outputPath");
+        String errorPath = cmd.getOptionValue("errorPath");
+        if (isAnyBlank(errorPath) || (isAnyBlank(outputPath) && !cmd.hasOption("validateOnly"))) {
+            throw new ParseException("outputPath and errorPath are required with file");
+        }
+        if (cmd.hasOption("inputPath") || cmd.hasOption("config") || cmd.hasOption("httpPort")) {
+            throw new ParseException("file cannot be combined with inputPath, config or httpPort");
+        }
+
+        if (cmd.hasOption("validateOnly")) {
+            try {
+                return processor.validateCsvFile(Paths.get(cmd.getOptionValue("file")), errorPath).hasErrors() ? 2 : 0;
+            } catch (RuntimeException e) {
+                LOGGER.error("validation failed, file: [{}]", cmd.getOptionValue("file"), e);
+                return 1;
+            }
+        }
+
+        try {
+            ConversionStats stats = processor.convertCsvFile(Paths.get(cmd.getOptionValue("file")), outputPath, errorPath);
+            LOGGER.info("converted file: [{}], rows: [{}], errors: [{}]",
+                    cmd.getOptionValue("file"), stats.getRowsWritten(), stats.getErrors());
+            return stats.getErrors() == 0 ? 0 : 2;
+        } catch (RuntimeException e) {
+            LOGGER.error("conversion failed, file: [{}]", cmd.getOptionValue("file"), e);
+            return 1;
+        }
+    }
+
+    // - opt may be null for long only options
     private static Option newOption(String opt, String longOpt, String description) {
-        Option option = new Option(opt, longOpt, true, description);
-        option.setRequired(true);
-        return option;
+        return Option.builder(opt).longOpt(longOpt).hasArg().desc(description).build();
+    }
+
+    private static long longOptionValue(CommandLine cmd, String longOpt, long defaultValue) throws ParseException {
+        String value = cmd.getOptionValue(longOpt);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ParseException("invalid number for " + longOpt + ": " + value);
+        }
+    }
+
+    private static double doubleOptionValue(CommandLine cmd, String longOpt, double defaultValue) throws ParseException {
+        String value = cmd.getOptionValue(longOpt);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new ParseException("invalid number for " + longOpt + ": " + value);
+        }
+    }
+
+    private static List<FeedConfig> feeds(CommandLine cmd) throws ParseException {
+        String inputPath = cmd.getOptionValue("inputPath");
+        String outputPath = cmd.getOptionValue("outputPath");
+        String errorPath = cmd.getOptionValue("errorPath");
+
+        if (cmd.hasOption("config")) {
+            if (isNotBlank(inputPath) || isNotBlank(outputPath) || isNotBlank(errorPath)) {
+                throw new ParseException("use either config or inputPath, outputPath and errorPath");
+            }
+            try {
+                return new FeedConfigLoader().load(cmd.getOptionValue("config"));
+            } catch (IllegalArgumentException e) {
+                throw new ParseException(e.getMessage());
+            }
+        }
+
+        if (isAnyBlank(inputPath, outputPath, errorPath)) {
+            throw new ParseException("inputPath, outputPath and errorPath are required without a config file");
+        }
+        return List.of(new FeedConfig(WeightedLaneQueue.DEFAULT_LANE, inputPath, outputPath, errorPath, 1));
+    }
+
+    private static int intOptionValue(CommandLine cmd, String longOpt, int defaultValue) throws ParseException {
+        String value = cmd.getOptionValue(longOpt);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ParseException("invalid number for " + longOpt + ": " + value);
+        }
     }
 }
 
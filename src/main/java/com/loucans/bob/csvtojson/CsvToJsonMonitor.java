@@ -1,24 +1,125 @@
 package com.loucans.bob.csvtojson;
 
+import com.loucans.bob.csvtojson.claim.FileClaims;
+import com.loucans.bob.csvtojson.config.FeedConfig;
+import com.loucans.bob.csvtojson.events.FileDetectedEvent;
+import com.loucans.bob.csvtojson.events.FileQueuedEvent;
 import com.loucans.bob.csvtojson.processor.CsvProcessor;
+import com.loucans.bob.csvtojson.processor.TailingCsvProcessor;
+import com.loucans.bob.csvtojson.scheduler.AdaptivePoolSizer;
+import com.loucans.bob.csvtojson.scheduler.InFlightTable;
+import com.loucans.bob.csvtojson.scheduler.LaneTask;
+import com.loucans.bob.csvtojson.scheduler.MicroBatcher;
+import com.loucans.bob.csvtojson.scheduler.WeightedLaneQueue;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static java.util.Objects.nonNull;
+import static java.util.stream.Collectors.toList;
 
 public class CsvToJsonMonitor {
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvToJsonMonitor.class);
 
-    private final ExecutorService executorService =
-            new ThreadPoolExecutor(5, 10, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    public static final int DEFAULT_WORKERS = 5;
+
+    // - a file being converted is renamed in here first, under the input directory, so a
+    //   copy dropped again under its name meanwhile is another file and is never deleted
+    //   in its place - claimed files are renamed into FileClaims.CLAIMED_DIR instead
+    public static final String IN_FLIGHT_DIR = ".inflight";
+
+    // one lane per feed so a noisy feed only gets its weighted share of the pool,
+    // size aware within a lane so small files are not stuck behind huge ones
+    private final WeightedLaneQueue laneQueue;
+
+    private final ThreadPoolExecutor executorService;
+    // null when the pool has a fixed size
+    private final AdaptivePoolSizer poolSizer;
+
+    private final CsvProcessor processor;
+
+    // null converts each file once on creation and deletes it
+    private final TailingCsvProcessor tailingProcessor;
+    // null when this is the only process consuming the input directories
+    private final FileClaims fileClaims;
+    // files with a tail pass waiting in the queue, that pass also covers later appends
+    private final Set<Path> tailsQueued = ConcurrentHashMap.newKeySet();
+    // csv files queued or being converted, by input path, with their pending rerun
+    private final InFlightTable<Path> inFlight = new InFlightTable<>();
+    // files up to this size are coalesced per feed into one job, 0 queues every file on its own
+    private final long microBatchMaxBytes;
+    // null when micro batching is off
+    private final MicroBatcher<FeedConfig, QueuedFile> microBatcher;
+
+    // set once start has opened it, closing it ends the event loop
+    private volatile WatchService watchService;
+    private volatile boolean stopped = false;
+
+    public CsvToJsonMonitor() {
+        this(builder());
+    }
+
+    public CsvToJsonMonitor(CsvProcessor processor) {
+        this(builder().processor(processor));
+    }
+
+    private CsvToJsonMonitor(Builder builder) {
+        this.processor = builder.processor;
+        this.tailingProcessor = builder.tailingProcessor;
+        this.fileClaims = builder.fileClaims;
+        this.microBatchMaxBytes = builder.microBatchMaxBytes;
+        this.microBatcher = microBatchMaxBytes > 0
+                ? new MicroBatcher<>(builder.microBatchWindowMillis, builder.microBatchMaxFiles, this::submitBatch)
+                : null;
+        this.laneQueue = new WeightedLaneQueue(builder.expressThresholdBytes, builder.agingBytesPerSecond);
+        this.laneQueue.setLargeTaskLimit(builder.minWorkers - builder.expressWorkers);
+        // the queue is unbounded, the pool never grows past its core size on its own
+        this.executorService =
+                new ThreadPoolExecutor(builder.minWorkers, builder.minWorkers, 0L, TimeUnit.MILLISECONDS, laneQueue) {
+                    @Override
+                    protected void beforeExecute(Thread thread, Runnable task) {
+                        if (nonNull(poolSizer)) {
+                            poolSizer.taskStarted();
+                        }
+                    }
+
+                    @Override
+                    protected void afterExecute(Runnable task, Throwable error) {
+                        if (nonNull(poolSizer)) {
+                            poolSizer.taskFinished();
+                        }
+                    }
+                };
+        int expressWorkers = builder.expressWorkers;
+        this.poolSizer = builder.maxWorkers > builder.minWorkers
+                ? new AdaptivePoolSizer(executorService, builder.minWorkers, builder.maxWorkers,
+                        builder.adaptIntervalMillis, builder.adaptStableTicks,
+                        workers -> laneQueue.setLargeTaskLimit(workers - expressWorkers))
+                : null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
 
     // - ---------------------------------------
     // - Starts the directory monitoring process
@@ -26,53 +127,475 @@ public class CsvToJsonMonitor {
     public void start(String inputPath,
                        String outputPath,
                        String errorPath) {
+        start(List.of(new FeedConfig(WeightedLaneQueue.DEFAULT_LANE, inputPath, outputPath, errorPath, 1)));
+    }
+
+    // - ---------------------------------------
+    // - Starts monitoring every feed's input directory from one watch service
+    // - ---------------------------------------
+    public void start(List<FeedConfig> feeds) {
+        // every task has to pass through the lane queue, a core thread started on
+        // demand would take its first task directly and skip the scheduling
+        executorService.prestartAllCoreThreads();
+        registerSchedulerStats();
+        if (nonNull(poolSizer)) {
+            poolSizer.start();
+        }
+
         try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
-            LOGGER.debug("registering inputPath file monitor, inputPath: [{}]", inputPath);
-            Path dir = Paths.get(inputPath);
-            dir.register(watchService, ENTRY_CREATE);
+            this.watchService = watchService;
+            if (stopped) {
+                return;
+            }
+            Map<WatchKey, FeedConfig> feedsByKey = new HashMap<>();
+            for (FeedConfig feed : feeds) {
+                LOGGER.debug("registering inputPath file monitor, feed: [{}], inputPath: [{}], weight: [{}]",
+                        feed.getName(), feed.getInputPath(), feed.getWeight());
+                laneQueue.addLane(feed.getName(), feed.getWeight());
+                Path dir = Paths.get(feed.getInputPath());
+                feedsByKey.put(isTailing()
+                        ? dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY)
+                        : dir.register(watchService, ENTRY_CREATE), feed);
+            }
+            if (isTailing()) {
+                // appended or sealed while not running, offsets say where to resume
+                feeds.forEach(this::submitAllTails);
+            }
+            if (!isTailing() && fileClaims == null) {
+                // files this process was converting when it last stopped
+                feeds.forEach(this::resumeInFlight);
+            }
+            if (nonNull(fileClaims)) {
+                fileClaims.start(feeds.stream().map(feed -> Paths.get(feed.getInputPath())).collect(toList()));
+                // files that arrived while no node was running, or were recovered before the watch started
+                feeds.forEach(this::submitAll);
+            }
 
             for (; ;) {
                 LOGGER.debug("polling inputPath for events");
                 WatchKey key = watchService.take();
+                FeedConfig feed = feedsByKey.get(key);
                 List<WatchEvent<?>> watchEvents = key.pollEvents();
 
                 // FLUP - need to filter events - i.e. directory create events...
                 // FLUP - for large files,  need to wait until the copy or write is done
                 watchEvents.forEach((event) -> {
-                    LOGGER.debug("processing event, context: [{}]", event.context());
+                    LOGGER.debug("processing event, feed: [{}], context: [{}]", feed.getName(), event.context());
                     Path created = (Path) event.context();
-                    if (StringUtils.endsWith(created.toString(), ".csv")) {
-
-                        // FLUP - consider a way to signal to thread to stop processing
-                        executorService.execute(() -> {
-                            LOGGER.debug(
-                                    "processing new csv file on thread, filename: [{}], thread: [{}]",
-                                    created.toString(), Thread.currentThread().getName());
-
-                            // FLUP - need a way to capture thread errors and log
-                            // FLUP - consider initializing processor using a builder
-                            new CsvProcessor()
-                                    .processCsvFile(
-                                            created.toString(),
-                                            inputPath,
-                                            outputPath,
-                                            errorPath);
-
-                            LOGGER.debug(
-                                    "processing complete, filename: [{}], thread: [{}]",
-                                    created.toString(), Thread.currentThread().getName());
-
-                        });
+                    if (isTailing()) {
+                        if (event.kind() == OVERFLOW) {
+                            submitAllTails(feed);
+                        } else if (StringUtils.endsWith(created.toString(), ".csv")) {
+                            submitTail(feed, created);
+                        } else if (StringUtils.endsWith(created.toString(), ".csv" + TailingCsvProcessor.SEALED_SUFFIX)) {
+                            submitTail(feed, Paths.get(StringUtils.removeEnd(
+                                    created.toString(), TailingCsvProcessor.SEALED_SUFFIX)));
+                        }
+                    } else if (event.kind() == OVERFLOW && nonNull(fileClaims)) {
+                        submitAll(feed);
+                    } else if (StringUtils.endsWith(String.valueOf(created), ".csv")) {
+                        submit(feed, created);
                     }
                 });
                 key.reset();
             }
+        } catch (ClosedWatchServiceException e) {
+            if (!stopped) {
+                LOGGER.error("exiting the watch service was closed monitoring input path", e);
+                System.exit(1);
+            }
+            LOGGER.debug("monitor stopped, finishing queued files");
         } catch (Throwable t) {
             LOGGER.error("exiting an unexpected error occurred monitoring input path", t);
             System.exit(1);
         } finally {
+            if (nonNull(microBatcher)) {
+                microBatcher.close();
+            }
+            if (nonNull(fileClaims)) {
+                fileClaims.stop();
+            }
+            if (nonNull(poolSizer)) {
+                poolSizer.close();
+            }
             executorService.shutdown();
         }
     }
-}
 
+    // - ---------------------------------------
+    // - ends start's event loop, files already queued are still converted before the
+    //   workers exit - for embedding the monitor, the command line runs until killed
+    // - ---------------------------------------
+    public void stop() {
+        stopped = true;
+        WatchService started = watchService;
+        if (nonNull(started)) {
+            try {
+                started.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void submit(FeedConfig feed, Path created) {
+        // a producer dropping the same name again must not start a second job racing the first
+        // on one json and error file, the job in flight converts the latest copy instead
+        if (!inFlight.arrived(inFlightKey(feed, created))) {
+            LOGGER.debug("csv file already in flight, feed: [{}], filename: [{}]", feed.getName(), created);
+            return;
+        }
+        queue(feed, created);
+    }
+
+    private void queue(FeedConfig feed, Path created) {
+        long sizeBytes = sizeOf(feed, created);
+        FileDetectedEvent.emit(feed.getName(), created.toString(), sizeBytes);
+        FileQueuedEvent queued = FileQueuedEvent.queued(feed.getName(), created.toString(), sizeBytes);
+
+        if (nonNull(microBatcher) && sizeBytes <= microBatchMaxBytes) {
+            microBatcher.add(feed, new QueuedFile(created, sizeBytes, queued));
+            return;
+        }
+
+        // FLUP - consider a way to signal to thread to stop processing
+        executorService.execute(new LaneTask(feed.getName(), sizeBytes, () -> {
+            FileQueuedEvent.started(queued);
+            Path key = inFlightKey(feed, created);
+            inFlight.started(key);
+            LOGGER.debug(
+                    "processing new csv file on thread, feed: [{}], filename: [{}], thread: [{}]",
+                    feed.getName(), created.toString(), Thread.currentThread().getName());
+            Path takenDir = null;
+            try {
+                // claimed when a worker is free, so an idle node takes the file rather than a busy one queueing it
+                takenDir = take(feed, created);
+                if (takenDir == null) {
+                    return;
+                }
+
+                // FLUP - need a way to capture thread errors and log
+                processor.processCsvFile(
+                        created.toString(),
+                        takenDir.toString(),
+                        feed.getOutputPath(),
+                        feed.getErrorPath());
+
+                LOGGER.debug(
+                        "processing complete, feed: [{}], filename: [{}], thread: [{}]",
+                        feed.getName(), created.toString(), Thread.currentThread().getName());
+            } finally {
+                rerunIfSuperseded(feed, created, nonNull(takenDir));
+            }
+        }));
+    }
+
+    // - ---------------------------------------
+    // - one job for small files that arrived together, scheduled by their combined size
+    // - ---------------------------------------
+    private void submitBatch(FeedConfig feed, List<QueuedFile> batch) {
+        long sizeBytes = batch.stream().mapToLong(file -> file.sizeBytes).sum();
+
+        executorService.execute(new LaneTask(feed.getName(), sizeBytes, () -> {
+            batch.forEach(file -> {
+                FileQueuedEvent.started(file.queued);
+                inFlight.started(inFlightKey(feed, file.created));
+            });
+            LOGGER.debug(
+                    "processing batch of small csv files on thread, feed: [{}], files: [{}], thread: [{}]",
+                    feed.getName(), batch.size(), Thread.currentThread().getName());
+            Set<Path> taken = new HashSet<>();
+            try {
+                // every taken file ends up in the same directory
+                Path takenDir = null;
+                List<String> csvFileNames = new ArrayList<>();
+                for (QueuedFile file : batch) {
+                    Path fileDir = take(feed, file.created);
+                    if (fileDir == null) {
+                        continue;
+                    }
+                    takenDir = fileDir;
+                    taken.add(file.created);
+                    csvFileNames.add(file.created.toString());
+                }
+                if (takenDir == null) {
+                    return;
+                }
+
+                processor.processCsvFiles(
+                        csvFileNames,
+                        takenDir.toString(),
+                        feed.getOutputPath(),
+                        feed.getErrorPath());
+
+                LOGGER.debug(
+                        "batch complete, feed: [{}], files: [{}], thread: [{}]",
+                        feed.getName(), csvFileNames.size(), Thread.currentThread().getName());
+            } finally {
+                batch.forEach(file -> rerunIfSuperseded(feed, file.created, taken.contains(file.created)));
+            }
+        }));
+    }
+
+    // - the input directory path, unique across feeds
+    private static Path inFlightKey(FeedConfig feed, Path created) {
+        return Paths.get(feed.getInputPath()).resolve(created);
+    }
+
+    // - ---------------------------------------
+    // - renames the file out of the input directory, claimed or into IN_FLIGHT_DIR, and returns
+    //   the directory it is converted from - null when it is gone, converted by an earlier
+    //   job or claimed by another node
+    // - ---------------------------------------
+    private Path take(FeedConfig feed, Path created) {
+        Path inputPath = Paths.get(feed.getInputPath());
+        if (nonNull(fileClaims)) {
+            return fileClaims.claim(inputPath, created);
+        }
+        Path inFlightDir = inputPath.resolve(IN_FLIGHT_DIR);
+        try {
+            Files.createDirectories(inFlightDir);
+            Files.move(inputPath.resolve(created), inFlightDir.resolve(created.getFileName()), ATOMIC_MOVE);
+            return inFlightDir;
+        } catch (NoSuchFileException e) {
+            LOGGER.debug("csv file gone before conversion, feed: [{}], filename: [{}]", feed.getName(), created);
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - ---------------------------------------
+    // - puts back and queues files left in IN_FLIGHT_DIR by a process that stopped
+    //   converting them - a copy dropped again since is newer and wins
+    // - ---------------------------------------
+    private void resumeInFlight(FeedConfig feed) {
+        Path inputPath = Paths.get(feed.getInputPath());
+        try (DirectoryStream<Path> csvFiles = Files.newDirectoryStream(inputPath.resolve(IN_FLIGHT_DIR), "*.csv")) {
+            for (Path csvFile : csvFiles) {
+                Path target = inputPath.resolve(csvFile.getFileName());
+                try {
+                    // a link fails on an existing name, a rename would replace it
+                    Files.createLink(target, csvFile);
+                    LOGGER.info("resuming csv file left in flight, feed: [{}], filename: [{}]",
+                            feed.getName(), csvFile.getFileName());
+                } catch (FileAlreadyExistsException e) {
+                    LOGGER.info("csv file left in flight was dropped again, converting the newer copy, "
+                            + "feed: [{}], filename: [{}]", feed.getName(), csvFile.getFileName());
+                }
+                Files.delete(csvFile);
+                submit(feed, csvFile.getFileName());
+            }
+        } catch (NoSuchFileException e) {
+            // nothing was ever in flight there
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - taken is false when the job found the file gone or held by another node - in claims mode
+    //   another node may have left a copy dropped while this one held the name, it is queued too
+    private void rerunIfSuperseded(FeedConfig feed, Path created, boolean taken) {
+        boolean heldBack = taken && nonNull(fileClaims) && fileClaims.done(Paths.get(feed.getInputPath()), created);
+        if (inFlight.finished(inFlightKey(feed, created))) {
+            LOGGER.debug("csv file dropped again while converting, rerunning, feed: [{}], filename: [{}]",
+                    feed.getName(), created);
+            queue(feed, created);
+        } else if (heldBack) {
+            LOGGER.debug("csv file dropped again while its name was held, queueing, feed: [{}], filename: [{}]",
+                    feed.getName(), created);
+            submit(feed, created);
+        }
+    }
+
+    private boolean isTailing() {
+        return tailingProcessor != null;
+    }
+
+    private void submitTail(FeedConfig feed, Path csvFile) {
+        Path queuedFile = Paths.get(feed.getInputPath()).resolve(csvFile);
+        if (!tailsQueued.add(queuedFile)) {
+            return;
+        }
+
+        // appended chunks are scheduled as small, a pass only reads what was added
+        executorService.execute(new LaneTask(feed.getName(), () -> {
+            // removed before converting, an append from here on needs another pass
+            tailsQueued.remove(queuedFile);
+            LOGGER.debug(
+                    "converting appended records on thread, feed: [{}], filename: [{}], thread: [{}]",
+                    feed.getName(), csvFile, Thread.currentThread().getName());
+
+            tailingProcessor.processAppended(
+                    csvFile.toString(),
+                    feed.getInputPath(),
+                    feed.getOutputPath(),
+                    feed.getErrorPath());
+        }));
+    }
+
+    private void submitAll(FeedConfig feed) {
+        try (DirectoryStream<Path> csvFiles = Files.newDirectoryStream(Paths.get(feed.getInputPath()), "*.csv")) {
+            csvFiles.forEach(csvFile -> submit(feed, csvFile.getFileName()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void submitAllTails(FeedConfig feed) {
+        try (DirectoryStream<Path> csvFiles = Files.newDirectoryStream(Paths.get(feed.getInputPath()), "*.csv")) {
+            csvFiles.forEach(csvFile -> submitTail(feed, csvFile.getFileName()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long sizeOf(FeedConfig feed, Path created) {
+        try {
+            return Files.size(Paths.get(feed.getInputPath()).resolve(created));
+        } catch (IOException e) {
+            LOGGER.debug("unable to size file, scheduling as small, filename: [{}]", created);
+            return 0L;
+        }
+    }
+
+    private void registerSchedulerStats() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    laneQueue, new ObjectName("com.loucans.bob.csvtojson:type=Scheduler"));
+            if (nonNull(poolSizer)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                        poolSizer, new ObjectName("com.loucans.bob.csvtojson:type=PoolSizer"));
+            }
+        } catch (JMException e) {
+            LOGGER.warn("unable to register scheduler stats mbean: [{}]", e.getMessage());
+        }
+    }
+
+    // - ---------------------------------------
+    // - a small file waiting for its batch to be submitted
+    // - ---------------------------------------
+    private static class QueuedFile {
+        private final Path created;
+        private final long sizeBytes;
+        private final FileQueuedEvent queued;
+
+        private QueuedFile(Path created, long sizeBytes, FileQueuedEvent queued) {
+            this.created = created;
+            this.sizeBytes = sizeBytes;
+            this.queued = queued;
+        }
+    }
+
+    // - ---------------------------------------
+    // - builder for monitor settings
+    // - ---------------------------------------
+    public static class Builder {
+        private CsvProcessor processor = new CsvProcessor();
+        private TailingCsvProcessor tailingProcessor = null;
+        private FileClaims fileClaims = null;
+        private long expressThresholdBytes = 8L * 1024 * 1024;
+        private int expressWorkers = 1;
+        private long agingBytesPerSecond = 64L * 1024 * 1024;
+        private long microBatchMaxBytes = 0;
+        private long microBatchWindowMillis = 20;
+        private int microBatchMaxFiles = 64;
+        private int minWorkers = DEFAULT_WORKERS;
+        private int maxWorkers = DEFAULT_WORKERS;
+        private long adaptIntervalMillis = 1000;
+        private int adaptStableTicks = 3;
+
+        public Builder processor(CsvProcessor processor) {
+            this.processor = processor;
+            return this;
+        }
+
+        // tail mode - files are converted as they grow and deleted once sealed, null (default) for one pass per file
+        public Builder tailingProcessor(TailingCsvProcessor tailingProcessor) {
+            this.tailingProcessor = tailingProcessor;
+            return this;
+        }
+
+        // share the input directories with other processes, null (default) when this is the only one
+        public Builder fileClaims(FileClaims fileClaims) {
+            this.fileClaims = fileClaims;
+            return this;
+        }
+
+        // files up to this size are small and may use the express workers
+        public Builder expressThresholdBytes(long expressThresholdBytes) {
+            this.expressThresholdBytes = expressThresholdBytes;
+            return this;
+        }
+
+        // workers that large files may never occupy, fewer than minWorkers
+        public Builder expressWorkers(int expressWorkers) {
+            this.expressWorkers = expressWorkers;
+            return this;
+        }
+
+        // workers the pool starts with and never goes below
+        public Builder minWorkers(int minWorkers) {
+            this.minWorkers = minWorkers;
+            return this;
+        }
+
+        // above minWorkers the pool is sized by AdaptivePoolSizer, equal (default) keeps it fixed
+        public Builder maxWorkers(int maxWorkers) {
+            this.maxWorkers = maxWorkers;
+            return this;
+        }
+
+        // how often the adaptive pool samples its workers
+        public Builder adaptIntervalMillis(long adaptIntervalMillis) {
+            this.adaptIntervalMillis = adaptIntervalMillis;
+            return this;
+        }
+
+        // samples in a row that have to agree before the adaptive pool is resized
+        public Builder adaptStableTicks(int adaptStableTicks) {
+            this.adaptStableTicks = adaptStableTicks;
+            return this;
+        }
+
+        // how much file size a second of queue wait makes up for when ordering within a lane
+        public Builder agingBytesPerSecond(long agingBytesPerSecond) {
+            this.agingBytesPerSecond = agingBytesPerSecond;
+            return this;
+        }
+
+        // files up to this size that arrive within the window are converted as one job, 0 (default) for off
+        public Builder microBatchMaxBytes(long microBatchMaxBytes) {
+            this.microBatchMaxBytes = microBatchMaxBytes;
+            return this;
+        }
+
+        // how long a batch stays open for more files after its first
+        public Builder microBatchWindowMillis(long microBatchWindowMillis) {
+            this.microBatchWindowMillis = microBatchWindowMillis;
+            return this;
+        }
+
+        // a batch this full is submitted without waiting for the window
+        public Builder microBatchMaxFiles(int microBatchMaxFiles) {
+            this.microBatchMaxFiles = microBatchMaxFiles;
+            return this;
+        }
+
+        public CsvToJsonMonitor build() {
+            if (minWorkers < 1 || maxWorkers < minWorkers) {
+                throw new IllegalArgumentException("min workers must be at least 1 and at most max workers");
+            }
+            if (expressWorkers < 0 || expressWorkers >= minWorkers) {
+                throw new IllegalArgumentException("express workers must be between 0 and " + (minWorkers - 1));
+            }
+            if (nonNull(tailingProcessor) && nonNull(fileClaims)) {
+                throw new IllegalArgumentException("tail mode cannot share input directories with other nodes");
+            }
+            if (nonNull(tailingProcessor) && microBatchMaxBytes > 0) {
+                throw new IllegalArgumentException("tail mode converts appends as they come, it cannot micro batch");
+            }
+            return new CsvToJsonMonitor(this);
+        }
+    }
+}
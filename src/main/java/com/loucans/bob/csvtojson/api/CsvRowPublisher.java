@@ -0,0 +1,160 @@
+package com.loucans.bob.csvtojson.api;
+
+import com.loucans.bob.csvtojson.model.CsvRow;
+import com.loucans.bob.csvtojson.parser.CsvParser;
+import com.loucans.bob.csvtojson.processor.CsvRowValidator;
+import com.loucans.bob.csvtojson.processor.ErrorLogger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+// - --------------------------------------------------
+// - publishes validated data rows of a single csv stream
+// - the input can only be read once, so only one subscriber is accepted
+// - parsing is driven by subscriber demand: the parse thread waits whenever
+//   demand is exhausted, so a slow subscriber holds back reading
+// - --------------------------------------------------
+class CsvRowPublisher implements Flow.Publisher<CsvRow> {
+    private final Supplier<CsvParser> parserSupplier;
+    private final ErrorLogger errorSink;
+    private final Executor executor;
+    private final CsvRowValidator validator = new CsvRowValidator();
+    private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+    CsvRowPublisher(Supplier<CsvParser> parserSupplier, ErrorLogger errorSink, Executor executor) {
+        this.parserSupplier = parserSupplier;
+        this.errorSink = errorSink;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CsvRow> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("csv rows can only be published to one subscriber"));
+            return;
+        }
+
+        RowSubscription subscription = new RowSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        executor.execute(subscription::publish);
+    }
+
+    private class RowSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super CsvRow> subscriber;
+        private long demand = 0;
+        private boolean cancelled = false;
+        private boolean terminated = false;
+        private Throwable invalidRequest;
+
+        RowSubscription(Flow.Subscriber<? super CsvRow> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (n <= 0) {
+                // rule 3.9 - non-positive requests are a subscriber error, the publish thread
+                //   signals it once the parse loop has unwound, so it never overlaps onNext (rule 1.3)
+                if (!terminated && isNull(invalidRequest)) {
+                    invalidRequest = new IllegalArgumentException("request must be positive, was " + n);
+                }
+                cancelled = true;
+            } else {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        private void publish() {
+            AtomicInteger rowsProcessed = new AtomicInteger(0);
+            Throwable failure = null;
+            try (CsvParser parser = parserSupplier.get()) {
+                parser.parse(
+                        (rowNum, csvRow) -> {
+                            if (validator.isHeaderRow(rowNum)) {
+                                validator.assertValidHeaderRow(csvRow);
+                            } else {
+                                validator.assertValidDataRow(csvRow);
+                                awaitDemand();
+                                subscriber.onNext(csvRow.snapshot());
+                            }
+                            rowsProcessed.incrementAndGet();
+                        },
+                        (rowNum, error) -> {
+                            errorSink.logError(rowNum, error.getMessage().replace("\"", "\"\""));
+                            if (validator.isHeaderRow(rowNum)) {
+                                throw error;
+                            }
+                        });
+
+                if (rowsProcessed.intValue() == 0) {
+                    errorSink.logError(0, "\"empty file\"");
+                }
+            } catch (CancelledException e) {
+                // subscriber is no longer interested or made an invalid request
+            } catch (Throwable t) {
+                failure = t;
+            }
+
+            Throwable error;
+            synchronized (this) {
+                terminated = true;
+                if (nonNull(invalidRequest)) {
+                    error = invalidRequest;
+                } else if (cancelled) {
+                    return;
+                } else {
+                    error = failure;
+                }
+            }
+            if (nonNull(error)) {
+                subscriber.onError(error);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+
+        private synchronized void awaitDemand() {
+            while (demand == 0 && !cancelled) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancelled = true;
+                }
+            }
+            if (cancelled) {
+                throw new CancelledException();
+            }
+            demand--;
+        }
+    }
+
+    // unwinds the parse loop once the subscription is cancelled
+    private static class CancelledException extends RuntimeException {
+        CancelledException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.loucans.bob.csvtojson.api;
+
+import com.loucans.bob.csvtojson.model.CsvRow;
+import com.loucans.bob.csvtojson.parser.CommonsCsvParser;
+import com.loucans.bob.csvtojson.parser.CsvParser;
+import com.loucans.bob.csvtojson.processor.CsvProcessor;
+import com.loucans.bob.csvtojson.processor.ErrorLogger;
+import com.loucans.bob.csvtojson.processor.JsonOutputWriter;
+import com.loucans.bob.csvtojson.processor.OutputWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+// - --------------------------------------------------
+// - in-process entry point for embedding the converter in other services
+// - nothing touches disk and the input is never deleted
+// - the caller owns the streams - input is read to the end, output is flushed,
+//   neither is closed
+// - the error sink receives the same rows and messages the error csv would,
+//   an invalid header row is reported to the sink and then thrown as a CsvToJsonException
+// - --------------------------------------------------
+public class CsvToJsonConverter {
+    private final CsvProcessor processor;
+
+    public CsvToJsonConverter() {
+        this(new CsvProcessor());
+    }
+
+    public CsvToJsonConverter(CsvProcessor processor) {
+        this.processor = processor;
+    }
+
+    // - utf-8 csv in, utf-8 json array out
+    public void convert(InputStream csv, OutputStream json, ErrorLogger errorSink) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(json, UTF_8));
+        try {
+            convert(new InputStreamReader(csv, UTF_8), writer, errorSink);
+        } finally {
+            flush(writer);
+        }
+    }
+
+    public void convert(Reader csv, Writer json, ErrorLogger errorSink) {
+        try (CsvParser parser = new CommonsCsvParser(new BufferedReader(new NonClosingReader(csv)))
+                .reusingRows()
+                .maxFieldLength(processor.getMaxFieldLength());
+             OutputWriter outputWriter = new JsonOutputWriter(json)) {
+
+            processor.convert(parser, outputWriter, errorSink);
+
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - validated data rows, the header is checked but not published
+    // - parsing runs on the executor and blocks there while the subscriber has no demand
+    public Flow.Publisher<CsvRow> publisher(Reader csv, ErrorLogger errorSink, Executor executor) {
+        return new CsvRowPublisher(
+                () -> new CommonsCsvParser(new BufferedReader(new NonClosingReader(csv)))
+                        .maxFieldLength(processor.getMaxFieldLength()),
+                errorSink,
+                executor);
+    }
+
+    // - as above on a dedicated thread per subscription
+    public Flow.Publisher<CsvRow> publisher(Reader csv, ErrorLogger errorSink) {
+        return publisher(csv, errorSink, runnable -> {
+            Thread thread = new Thread(runnable, "csv-row-publisher");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    private static void flush(Writer writer) {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class NonClosingReader extends FilterReader {
+        NonClosingReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // the caller owns the stream
+        }
+    }
+}
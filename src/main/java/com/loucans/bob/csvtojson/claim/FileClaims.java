@@ -0,0 +1,273 @@
+package com.loucans.bob.csvtojson.claim;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.apache.commons.lang3.StringUtils.removeEnd;
+
+// - --------------------------------------------------
+// - lets several processes, on one host or many, share an input directory
+// - a node claims a file by renaming it into <inputPath>/.claimed/<node>, the rename is
+//   atomic so exactly one node wins and the others see the file gone
+// - every node touches <inputPath>/.claimed/<node>/.heartbeat while it runs, a node whose
+//   heartbeat is older than the lease is presumed dead and its claimed files are renamed
+//   back into the input directory, where the live nodes pick them up again
+// - heartbeat ages are compared against this node's own, just touched, heartbeat so both
+//   times come from the file server's clock, not from hosts that may disagree
+// - a claim also holds the name, <inputPath>/.claimed/<name>.lock, until its job is done -
+//   a copy dropped again meanwhile is left in the input directory by every node, rather
+//   than converted into the same output at the same time, and the holder queues it once done
+// - the lease has to outlast the longest pause of a live node, a node that comes back
+//   after its files were recovered fails to delete them and they are converted twice
+// - --------------------------------------------------
+public class FileClaims {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileClaims.class);
+
+    public static final String CLAIMED_DIR = ".claimed";
+    static final String HEARTBEAT_FILE = ".heartbeat";
+    static final String LOCK_SUFFIX = ".lock";
+    // holds the node name, a name's lock is a link to it so it is created with its owner in it
+    static final String OWNER_FILE = ".owner";
+    static final String RELEASING_SUFFIX = ".releasing";
+
+    private final String node;
+    private final Duration lease;
+    private final List<Path> inputPaths = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService heartbeat;
+
+    public FileClaims(String node, Duration lease) {
+        if (node.isBlank() || node.contains("/") || node.contains("\\") || node.startsWith(".")) {
+            throw new IllegalArgumentException("node must be a plain directory name: " + node);
+        }
+        this.node = node;
+        this.lease = lease;
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "claims-heartbeat-" + node);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // - ---------------------------------------
+    // - takes over the input directories - files this node held when it last stopped are
+    //   handed back first, then heartbeats and recovery of dead nodes start
+    // - ---------------------------------------
+    public void start(List<Path> inputPaths) {
+        for (Path inputPath : inputPaths) {
+            this.inputPaths.add(inputPath);
+            try {
+                Files.createDirectories(claimedDir(inputPath));
+                touch(heartbeatFile(inputPath));
+                writeOwner(inputPath);
+                unlockAll(inputPath, node);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            release(claimedDir(inputPath), inputPath);
+        }
+        long intervalMillis = Math.max(1, lease.toMillis() / 4);
+        heartbeat.scheduleWithFixedDelay(this::beat, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        heartbeat.shutdownNow();
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    // - the directory a claimed file now lives in, null when another node claimed it first or
+    //   holds the name for an earlier copy - a claim that succeeded has to be followed by done
+    public Path claim(Path inputPath, Path csvFileName) {
+        Path claimedDir = claimedDir(inputPath);
+        Path lockFile = lockFile(inputPath, csvFileName);
+        try {
+            // a link fails on an existing name, exactly one node holds it
+            Files.createLink(lockFile, claimedDir.resolve(OWNER_FILE));
+        } catch (FileAlreadyExistsException e) {
+            LOGGER.debug("csv file name held by another node, node: [{}], filename: [{}]", node, csvFileName);
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            Files.move(inputPath.resolve(csvFileName), claimedDir.resolve(csvFileName.getFileName()), ATOMIC_MOVE);
+            LOGGER.debug("claimed csv file, node: [{}], filename: [{}]", node, csvFileName);
+            return claimedDir;
+        } catch (NoSuchFileException e) {
+            LOGGER.debug("csv file claimed by another node, node: [{}], filename: [{}]", node, csvFileName);
+            unlock(lockFile, node);
+            return null;
+        } catch (AtomicMoveNotSupportedException e) {
+            unlock(lockFile, node);
+            // without an atomic rename two nodes could both believe they own the file
+            throw new IllegalStateException("input path does not support atomic rename: " + inputPath, e);
+        } catch (IOException e) {
+            unlock(lockFile, node);
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - ends a claim once its job is done, true when a copy of the name is waiting in the input
+    //   directory - dropped while the name was held, the caller has to queue it again
+    public boolean done(Path inputPath, Path csvFileName) {
+        unlock(lockFile(inputPath, csvFileName), node);
+        return Files.exists(inputPath.resolve(csvFileName.getFileName()));
+    }
+
+    private void beat() {
+        for (Path inputPath : inputPaths) {
+            try {
+                FileTime now = touch(heartbeatFile(inputPath));
+                // gone when this node was presumed dead and recovered
+                writeOwner(inputPath);
+                recoverStaleClaims(inputPath, now);
+            } catch (Exception e) {
+                // keep beating, a missed beat is only a problem once the lease runs out
+                LOGGER.warn("claims heartbeat failed, node: [{}], inputPath: [{}], error: [{}]",
+                        node, inputPath, e.getMessage());
+            }
+        }
+    }
+
+    private void recoverStaleClaims(Path inputPath, FileTime now) throws IOException {
+        try (DirectoryStream<Path> nodeDirs = Files.newDirectoryStream(inputPath.resolve(CLAIMED_DIR), Files::isDirectory)) {
+            for (Path nodeDir : nodeDirs) {
+                if (nodeDir.getFileName().toString().equals(node)) {
+                    continue;
+                }
+                Path otherHeartbeat = nodeDir.resolve(HEARTBEAT_FILE);
+                FileTime lastBeat = Files.exists(otherHeartbeat)
+                        ? Files.getLastModifiedTime(otherHeartbeat)
+                        : Files.getLastModifiedTime(nodeDir);
+                if (now.toMillis() - lastBeat.toMillis() > lease.toMillis()) {
+                    LOGGER.warn("node lease expired, recovering its files, node: [{}], expired node: [{}]",
+                            node, nodeDir.getFileName());
+                    // names first, a recovered file must not find its own name still held
+                    unlockAll(inputPath, nodeDir.getFileName().toString());
+                    release(nodeDir, inputPath);
+                    Files.deleteIfExists(otherHeartbeat);
+                    Files.deleteIfExists(nodeDir.resolve(OWNER_FILE));
+                    try {
+                        Files.deleteIfExists(nodeDir);
+                    } catch (DirectoryNotEmptyException e) {
+                        // the node came back or another node is still recovering, next beat retries
+                    }
+                }
+            }
+        }
+    }
+
+    // - puts every csv file in claimedDir back into the input directory
+    // - each is first renamed aside into this node's own directory, so of several recovering
+    //   nodes only one gets it, a file another node got first is skipped
+    // - it is then linked in, a link fails on an existing name where a rename would replace a
+    //   file of the same name dropped since the claim, the released file then takes a name
+    //   of its own and both are converted
+    // - a node that stops between the two keeps the file aside and puts it back on restart
+    private void release(Path claimedDir, Path inputPath) {
+        try (DirectoryStream<Path> csvFiles = Files.newDirectoryStream(claimedDir, "*.{csv,csv" + RELEASING_SUFFIX + "}")) {
+            for (Path csvFile : csvFiles) {
+                String fileName = removeEnd(csvFile.getFileName().toString(), RELEASING_SUFFIX);
+                Path releasing = claimedDir(inputPath).resolve(fileName + RELEASING_SUFFIX);
+                try {
+                    if (!csvFile.equals(releasing)) {
+                        Files.move(csvFile, releasing, ATOMIC_MOVE);
+                    }
+                } catch (NoSuchFileException e) {
+                    LOGGER.debug("claimed csv file already released, filename: [{}]", csvFile);
+                    continue;
+                }
+                Path target = linkIntoInput(inputPath, releasing, fileName, claimedDir.getFileName().toString());
+                Files.delete(releasing);
+                LOGGER.info("released claimed csv file, node: [{}], filename: [{}], released as: [{}]",
+                        node, csvFile, target.getFileName());
+            }
+        } catch (NoSuchFileException e) {
+            // nothing was ever claimed there
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - <name>.csv, or <name>.released-<claiming node>-<n>.csv when that is taken
+    private static Path linkIntoInput(Path inputPath, Path file, String fileName, String claimingNode) throws IOException {
+        String baseName = fileName.substring(0, fileName.length() - ".csv".length());
+        Path target = inputPath.resolve(fileName);
+        for (int n = 1; ; n++) {
+            try {
+                Files.createLink(target, file);
+                return target;
+            } catch (FileAlreadyExistsException e) {
+                target = inputPath.resolve(format("%s.released-%s-%d.csv", baseName, claimingNode, n));
+            }
+        }
+    }
+
+    // - deletes the lock when owner still holds it - a node presumed dead and recovered
+    //   must not release the name for whoever took it since
+    private static void unlock(Path lockFile, String owner) {
+        try {
+            if (owner.equals(Files.readString(lockFile))) {
+                Files.deleteIfExists(lockFile);
+            }
+        } catch (NoSuchFileException e) {
+            // released by a node recovering this one
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void unlockAll(Path inputPath, String owner) throws IOException {
+        try (DirectoryStream<Path> lockFiles = Files.newDirectoryStream(inputPath.resolve(CLAIMED_DIR), "*" + LOCK_SUFFIX)) {
+            lockFiles.forEach(lockFile -> unlock(lockFile, owner));
+        }
+    }
+
+    private static Path lockFile(Path inputPath, Path csvFileName) {
+        return inputPath.resolve(CLAIMED_DIR).resolve(csvFileName.getFileName() + LOCK_SUFFIX);
+    }
+
+    private Path claimedDir(Path inputPath) {
+        return inputPath.resolve(CLAIMED_DIR).resolve(node);
+    }
+
+    private Path heartbeatFile(Path inputPath) {
+        return claimedDir(inputPath).resolve(HEARTBEAT_FILE);
+    }
+
+    // - written only when missing, rewriting it would empty the locks linked to it for a moment
+    private void writeOwner(Path inputPath) throws IOException {
+        Path ownerFile = claimedDir(inputPath).resolve(OWNER_FILE);
+        if (Files.notExists(ownerFile)) {
+            Files.writeString(ownerFile, node);
+        }
+    }
+
+    // - the file server's idea of now - writing lets the server stamp the time,
+    //   setting it explicitly would use this host's clock
+    private static FileTime touch(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, Long.toString(System.currentTimeMillis()));
+        return Files.getLastModifiedTime(file);
+    }
+}
@@ -0,0 +1,41 @@
+package com.loucans.bob.csvtojson.config;
+
+// - --------------------------------------------------
+// - one watched input directory and where its json and errors go
+// - weight is the feed's share of the worker pool relative to other feeds
+// - --------------------------------------------------
+public class FeedConfig {
+    private final String name;
+    private final String inputPath;
+    private final String outputPath;
+    private final String errorPath;
+    private final int weight;
+
+    public FeedConfig(String name, String inputPath, String outputPath, String errorPath, int weight) {
+        this.name = name;
+        this.inputPath = inputPath;
+        this.outputPath = outputPath;
+        this.errorPath = errorPath;
+        this.weight = weight;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getInputPath() {
+        return inputPath;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    public String getErrorPath() {
+        return errorPath;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
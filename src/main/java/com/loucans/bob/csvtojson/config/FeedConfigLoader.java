@@ -0,0 +1,95 @@
+package com.loucans.bob.csvtojson.config;
+
+import com.loucans.bob.csvtojson.scheduler.WeightedLaneQueue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.apache.commons.lang3.StringUtils.split;
+import static org.apache.commons.lang3.StringUtils.trim;
+
+// - --------------------------------------------------
+// - loads feeds from a properties file, i.e.
+//     feeds=orders,customers
+//     feed.orders.inputPath=/data/orders/input
+//     feed.orders.outputPath=/data/orders/output
+//     feed.orders.errorPath=/data/orders/error
+//     feed.orders.weight=3
+// - weight is optional and defaults to 1
+// - names and input directories must be unique - each feed is its own lane and one
+//   directory can only be watched for one feed - and default is the lane of the -i feed
+// - --------------------------------------------------
+public class FeedConfigLoader {
+
+    public List<FeedConfig> load(String configFilePath) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Paths.get(configFilePath), UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        String[] names = split(properties.getProperty("feeds"), ',');
+        if (names == null || names.length == 0) {
+            throw new IllegalArgumentException(format("no feeds defined in config file: [%s]", configFilePath));
+        }
+
+        List<FeedConfig> feeds = new ArrayList<>();
+        Map<Path, String> feedsByInputPath = new HashMap<>();
+        for (String name : names) {
+            String feed = trim(name);
+            if (WeightedLaneQueue.DEFAULT_LANE.equals(feed)) {
+                throw new IllegalArgumentException(format("feed name [%s] is reserved", feed));
+            }
+            if (feeds.stream().anyMatch(existing -> existing.getName().equals(feed))) {
+                throw new IllegalArgumentException(format("feed [%s] is defined twice", feed));
+            }
+            String inputPath = required(properties, feed, "inputPath");
+            String sameInput = feedsByInputPath.putIfAbsent(Paths.get(inputPath).toAbsolutePath().normalize(), feed);
+            if (nonNull(sameInput)) {
+                throw new IllegalArgumentException(
+                        format("feeds [%s] and [%s] have the same inputPath: [%s]", sameInput, feed, inputPath));
+            }
+            feeds.add(new FeedConfig(
+                    feed,
+                    inputPath,
+                    required(properties, feed, "outputPath"),
+                    required(properties, feed, "errorPath"),
+                    weight(properties, feed)));
+        }
+        return feeds;
+    }
+
+    private String required(Properties properties, String feed, String key) {
+        String value = trim(properties.getProperty(format("feed.%s.%s", feed, key)));
+        if (isBlank(value)) {
+            throw new IllegalArgumentException(format("feed [%s] is missing [%s]", feed, key));
+        }
+        return value;
+    }
+
+    private int weight(Properties properties, String feed) {
+        String value = trim(properties.getProperty(format("feed.%s.weight", feed), "1"));
+        try {
+            int weight = Integer.parseInt(value);
+            if (weight < 1) {
+                throw new IllegalArgumentException(format("feed [%s] weight must be positive", feed));
+            }
+            return weight;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(format("feed [%s] has an invalid weight: [%s]", feed, value));
+        }
+    }
+}
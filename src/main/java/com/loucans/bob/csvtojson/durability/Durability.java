@@ -0,0 +1,21 @@
+package com.loucans.bob.csvtojson.durability;
+
+import java.util.Locale;
+
+// - --------------------------------------------------
+// - how far a converted file's output is flushed to disk before its input is deleted
+// - NONE - left to the os page cache, a power loss after the delete can lose both copies
+// - FILE - json and error file and their directories fsynced by the job that wrote them
+// - GROUP_COMMIT - as FILE, but files finishing together are fsynced in parallel and share
+//   the directory fsyncs, see FileSyncer
+// - --------------------------------------------------
+public enum Durability {
+    NONE,
+    FILE,
+    GROUP_COMMIT;
+
+    // - none, file or group-commit as on the command line
+    public static Durability fromOption(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+}
@@ -0,0 +1,176 @@
+package com.loucans.bob.csvtojson.durability;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.nonNull;
+
+// - --------------------------------------------------
+// - flushes written files, and the directory entries that name them, to disk
+// - group commit - every job fsyncs its own files on its own thread, so files finishing
+//   together are fsynced in parallel, and only the directory fsyncs are shared - the first
+//   job to ask becomes the leader and fsyncs the directories asked for so far, jobs finishing
+//   meanwhile queue up behind it and the next leader fsyncs all of theirs in one round, a
+//   directory shared by the round once
+// - every caller returns only once its files, and a round that includes their directories, have finished
+// - files that do not exist are skipped, a conversion does not always write both
+// - --------------------------------------------------
+public class FileSyncer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileSyncer.class);
+
+    private final Durability durability;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition roundFinished = lock.newCondition();
+    private final List<SyncRequest> queued = new ArrayList<>();
+    private boolean roundRunning = false;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong fsyncs = new AtomicLong();
+
+    public FileSyncer(Durability durability) {
+        this.durability = durability;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    // - blocks until the files are on disk, a no-op for Durability.NONE
+    public void sync(Path... files) {
+        if (durability == Durability.NONE) {
+            return;
+        }
+        requests.incrementAndGet();
+        Set<Path> dirs = syncFiles(files);
+        if (durability == Durability.FILE) {
+            dirs.forEach(this::fsyncDirectory);
+            return;
+        }
+
+        SyncRequest request = new SyncRequest(dirs);
+        lock.lock();
+        try {
+            queued.add(request);
+            while (!request.done) {
+                if (roundRunning) {
+                    roundFinished.awaitUninterruptibly();
+                    continue;
+                }
+                // lead a round for the directories of everything queued, this request included
+                roundRunning = true;
+                List<SyncRequest> round = new ArrayList<>(queued);
+                queued.clear();
+                lock.unlock();
+                RuntimeException failure = null;
+                try {
+                    Set<Path> roundDirs = new LinkedHashSet<>();
+                    round.forEach(member -> roundDirs.addAll(member.dirs));
+                    roundDirs.forEach(this::fsyncDirectory);
+                } catch (RuntimeException e) {
+                    failure = e;
+                } finally {
+                    lock.lock();
+                    for (SyncRequest member : round) {
+                        member.failure = failure;
+                        member.done = true;
+                    }
+                    roundRunning = false;
+                    roundFinished.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (nonNull(request.failure)) {
+            throw request.failure;
+        }
+    }
+
+    // - files asked to be synced, per call
+    public long getRequests() {
+        return requests.get();
+    }
+
+    // - fsync calls made for them, files and directories
+    public long getFsyncs() {
+        return fsyncs.get();
+    }
+
+    // - callers waiting for the next round, for tests
+    int getQueued() {
+        lock.lock();
+        try {
+            return queued.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // - fsyncs the files that exist, returns the directories naming them
+    private Set<Path> syncFiles(Path... files) {
+        Set<Path> dirs = new LinkedHashSet<>();
+        for (Path file : new LinkedHashSet<>(Arrays.asList(files))) {
+            if (Files.exists(file)) {
+                fsync(file);
+                dirs.add(file.toAbsolutePath().getParent());
+            }
+        }
+        return dirs;
+    }
+
+    private void fsync(Path file) {
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            channel.force(true);
+            fsyncs.incrementAndGet();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - a new file is only durable once its directory entry is, not every os can open a
+    //   directory - that is skipped, a directory that opens but fails to sync is an error
+    // - package private so tests can hold a round open
+    void fsyncDirectory(Path dir) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, READ);
+        } catch (IOException e) {
+            LOGGER.debug("unable to open directory to fsync it, dir: [{}], error: [{}]", dir, e.getMessage());
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+            fsyncs.incrementAndGet();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - ---------------------------------------
+    // - one caller's directories, done once a round covering them finished
+    // - ---------------------------------------
+    private static class SyncRequest {
+        private final Set<Path> dirs;
+        private boolean done = false;
+        private RuntimeException failure = null;
+
+        private SyncRequest(Set<Path> dirs) {
+            this.dirs = dirs;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.loucans.bob.csvtojson.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.loucans.bob.csvtojson.FileDetected")
+@Label("File Detected")
+@Description("a csv file create event was picked up from a watched input directory")
+@Category({"csvToJson", "File"})
+@StackTrace(false)
+public class FileDetectedEvent extends jdk.jfr.Event {
+    @Label("Feed")
+    String feed;
+
+    @Label("File Name")
+    String fileName;
+
+    @Label("Size")
+    @DataAmount
+    long sizeBytes;
+
+    public static void emit(String feed, String fileName, long sizeBytes) {
+        FileDetectedEvent event = new FileDetectedEvent();
+        if (event.isEnabled()) {
+            event.feed = feed;
+            event.fileName = fileName;
+            event.sizeBytes = sizeBytes;
+            event.commit();
+        }
+    }
+}
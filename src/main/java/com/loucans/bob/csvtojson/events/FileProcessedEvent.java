@@ -0,0 +1,74 @@
+package com.loucans.bob.csvtojson.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// - --------------------------------------------------
+// - duration runs from the processor starting a file to its input being deleted
+// - --------------------------------------------------
+@Name("com.loucans.bob.csvtojson.FileProcessed")
+@Label("File Processed")
+@Description("a csv file was converted, started to finished")
+@Category({"csvToJson", "File"})
+@StackTrace(false)
+public class FileProcessedEvent extends jdk.jfr.Event {
+    @Label("File Name")
+    String fileName;
+
+    @Label("Size")
+    @DataAmount
+    long sizeBytes;
+
+    @Label("Rows Written")
+    long rowsWritten;
+
+    @Label("Errors")
+    long errors;
+
+    @Label("Pipeline Workers")
+    int pipelineWorkers;
+
+    @Label("Failed")
+    @Description("processing ended with an exception, i.e. an invalid header row")
+    boolean failed = true;
+
+    // - null when not recording, pass the result to finished()
+    public static FileProcessedEvent started(Path csvFile, int pipelineWorkers) {
+        FileProcessedEvent event = new FileProcessedEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.fileName = csvFile.getFileName().toString();
+        event.pipelineWorkers = pipelineWorkers;
+        try {
+            event.sizeBytes = Files.size(csvFile);
+        } catch (IOException e) {
+            event.sizeBytes = -1;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static void converted(FileProcessedEvent event, long rowsWritten, long errors) {
+        if (event != null) {
+            event.rowsWritten = rowsWritten;
+            event.errors = errors;
+            event.failed = false;
+        }
+    }
+
+    // - failed unless converted() was called first
+    public static void finished(FileProcessedEvent event) {
+        if (event != null) {
+            event.commit();
+        }
+    }
+}
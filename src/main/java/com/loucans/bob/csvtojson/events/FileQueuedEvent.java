@@ -0,0 +1,48 @@
+package com.loucans.bob.csvtojson.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// - --------------------------------------------------
+// - duration is the time a file waited for a worker, begun on submit and
+//   committed by the worker that picks it up
+// - --------------------------------------------------
+@Name("com.loucans.bob.csvtojson.FileQueued")
+@Label("File Queued")
+@Description("time a csv file waited in the scheduler before a worker started it")
+@Category({"csvToJson", "File"})
+@StackTrace(false)
+public class FileQueuedEvent extends jdk.jfr.Event {
+    @Label("Feed")
+    String feed;
+
+    @Label("File Name")
+    String fileName;
+
+    @Label("Size")
+    @DataAmount
+    long sizeBytes;
+
+    // - null when not recording, pass the result to started()
+    public static FileQueuedEvent queued(String feed, String fileName, long sizeBytes) {
+        FileQueuedEvent event = new FileQueuedEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.feed = feed;
+        event.fileName = fileName;
+        event.sizeBytes = sizeBytes;
+        event.begin();
+        return event;
+    }
+
+    public static void started(FileQueuedEvent event) {
+        if (event != null) {
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.loucans.bob.csvtojson.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// - --------------------------------------------------
+// - duration is the wall time of the chunk, stageTime is the part of it spent
+//   in the stage itself - the rest went to the other stages on the same thread
+// - --------------------------------------------------
+@Name("com.loucans.bob.csvtojson.StageChunk")
+@Label("Stage Chunk")
+@Description("time spent in one processing stage over a chunk of rows")
+@Category({"csvToJson", "Stage"})
+@StackTrace(false)
+public class StageChunkEvent extends jdk.jfr.Event {
+    @Label("Source")
+    String source;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Stage Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long stageTime;
+}
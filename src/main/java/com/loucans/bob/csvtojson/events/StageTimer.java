@@ -0,0 +1,84 @@
+package com.loucans.bob.csvtojson.events;
+
+import jdk.jfr.EventType;
+
+// - --------------------------------------------------
+// - accumulates time spent in a stage and commits a StageChunkEvent per chunk of rows
+// - when not recording start() returns 0 after a countdown, no clock reads and
+//   no allocation - the event type is re-checked once per chunk so a recording
+//   started mid file picks up from the next chunk
+// - one timer per thread, not thread safe
+//
+//     long started = timer.start();
+//     ... stage work for one row ...
+//     timer.stop(started);
+// - --------------------------------------------------
+public class StageTimer {
+    public static final int CHUNK_ROWS = 4096;
+
+    private static final EventType TYPE = EventType.getEventType(StageChunkEvent.class);
+
+    private String source;
+    private final String stage;
+    private final int chunkRows;
+    private StageChunkEvent event;
+    private int untilCheck = 0;
+
+    public StageTimer(String source, String stage) {
+        this(source, stage, CHUNK_ROWS);
+    }
+
+    public StageTimer(String source, String stage, int chunkRows) {
+        this.source = source;
+        this.stage = stage;
+        this.chunkRows = chunkRows;
+    }
+
+    // - labels the chunks from the next one on, for a timer reused for another file
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public long start() {
+        if (event == null) {
+            if (--untilCheck > 0) {
+                return 0L;
+            }
+            untilCheck = chunkRows;
+            if (!TYPE.isEnabled()) {
+                return 0L;
+            }
+            event = new StageChunkEvent();
+            event.source = source;
+            event.stage = stage;
+            event.begin();
+        }
+        return System.nanoTime();
+    }
+
+    public void stop(long started) {
+        if (started == 0L || event == null) {
+            return;
+        }
+        event.stageTime += System.nanoTime() - started;
+        if (++event.rows == chunkRows) {
+            commit();
+        }
+    }
+
+    // - commits a partial chunk, call once the stage is done
+    public void finish() {
+        if (event != null && event.rows > 0) {
+            commit();
+        }
+        event = null;
+    }
+
+    // - the next chunk starts with the next row, not after another countdown
+    private void commit() {
+        event.end();
+        event.commit();
+        event = null;
+        untilCheck = 0;
+    }
+}
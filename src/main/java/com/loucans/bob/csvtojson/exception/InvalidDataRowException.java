@@ -15,7 +15,8 @@ public class InvalidDataRowException extends CsvToJsonException {
 
     public InvalidDataRowException(String message, CsvRow csvRow) {
         super(message);
-        this.csvRow = csvRow;
+        // errors outlive the row callback, a reused row would be refilled by then
+        this.csvRow = ofNullable(csvRow).map(CsvRow::snapshot).orElse(null);
     }
 
     @Override
@@ -0,0 +1,23 @@
+package com.loucans.bob.csvtojson.exception;
+
+// - --------------------------------------------------
+// - a file was given up on as a whole, i.e. too many of its rows failed
+// - --------------------------------------------------
+public class ProcessingAbortedException extends CsvToJsonException {
+    private final int errors;
+
+    public ProcessingAbortedException(String message, int errors) {
+        super(message);
+        this.errors = errors;
+    }
+
+    // row errors up to the point of giving up
+    public int getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String getValue() {
+        return null;
+    }
+}
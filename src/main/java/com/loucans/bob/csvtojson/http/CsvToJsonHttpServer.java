@@ -0,0 +1,150 @@
+package com.loucans.bob.csvtojson.http;
+
+import com.loucans.bob.csvtojson.exception.CsvToJsonException;
+import com.loucans.bob.csvtojson.parser.CommonsCsvParser;
+import com.loucans.bob.csvtojson.parser.CsvParser;
+import com.loucans.bob.csvtojson.processor.CsvErrorLogger;
+import com.loucans.bob.csvtojson.processor.CsvProcessor;
+import com.loucans.bob.csvtojson.processor.ErrorLogger;
+import com.loucans.bob.csvtojson.processor.JsonOutputWriter;
+import com.loucans.bob.csvtojson.processor.OutputWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+// - --------------------------------------------------
+// - optional http ingestion endpoint - POST a csv body to /convert
+// - the response is streamed with chunked transfer as multipart/mixed:
+//     part 1 - application/json, the converted records
+//     part 2 - text/csv, the error file, only present when there were errors
+// - errors are spooled to a temp file while the json streams, so memory stays
+//   constant regardless of body size
+// - binds to the loopback interface only, payloads contain PII
+// - --------------------------------------------------
+public class CsvToJsonHttpServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvToJsonHttpServer.class);
+
+    private static final String CRLF = "\r\n";
+
+    private final CsvProcessor processor;
+    private final int port;
+    private final Semaphore permits;
+    private final ExecutorService executorService;
+    private HttpServer server;
+
+    public CsvToJsonHttpServer(CsvProcessor processor, int port, int maxConcurrent) {
+        this.processor = processor;
+        this.port = port;
+        this.permits = new Semaphore(maxConcurrent);
+        // twice the permits so requests over the limit get a fast 503 instead of queueing
+        this.executorService = Executors.newFixedThreadPool(maxConcurrent * 2);
+    }
+
+    public void start() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        server.createContext("/convert", this::handle);
+        server.setExecutor(executorService);
+        server.start();
+        LOGGER.debug("http endpoint listening, address: [{}]", server.getAddress());
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        executorService.shutdown();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().add("Allow", "POST");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            if (!permits.tryAcquire()) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            try {
+                convert(exchange);
+            } finally {
+                permits.release();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void convert(HttpExchange exchange) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        Path errorFile = Files.createTempFile("csvToJson-", ".errors.csv");
+        try {
+            exchange.getResponseHeaders().add("Content-Type", "multipart/mixed; boundary=" + boundary);
+            // 0 = chunked, the body is streamed as it is produced
+            exchange.sendResponseHeaders(200, 0);
+
+            Writer response = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), UTF_8));
+            response.write("--" + boundary + CRLF
+                    + "Content-Type: application/json; charset=utf-8" + CRLF + CRLF);
+
+            try (CsvParser parser = new CommonsCsvParser(
+                         new BufferedReader(new InputStreamReader(exchange.getRequestBody(), UTF_8)))
+                         .reusingRows()
+                         .maxFieldLength(processor.getMaxFieldLength());
+                 OutputWriter outputWriter = new JsonOutputWriter(response);
+                 ErrorLogger errorLogger = new CsvErrorLogger(errorFile.toString())) {
+
+                processor.convert(parser, outputWriter, errorLogger);
+
+            } catch (CsvToJsonException e) {
+                // already recorded in the error part, i.e. an invalid header row
+                LOGGER.debug("request aborted, error: [{}]", e.getMessage());
+            }
+
+            response.write(CRLF);
+            if (Files.exists(errorFile)) {
+                response.write("--" + boundary + CRLF
+                        + "Content-Type: text/csv; charset=utf-8" + CRLF
+                        + "Content-Disposition: attachment; filename=\"errors.csv\"" + CRLF + CRLF);
+                try (BufferedReader errors = Files.newBufferedReader(errorFile, UTF_8)) {
+                    errors.transferTo(response);
+                }
+                response.write(CRLF);
+            }
+            response.write("--" + boundary + "--" + CRLF);
+            response.flush();
+        } finally {
+            Files.deleteIfExists(errorFile);
+        }
+    }
+}
@@ -1,19 +1,50 @@
 package com.loucans.bob.csvtojson.model;
 
+import java.util.Objects;
+
 import static java.util.Arrays.copyOf;
 
 // - --------------------------------------------------
 // - simple dto for transferring csv rows to callbacks
+// - read fields with get/size, getRowData copies the whole row
+// - a row handed to a callback may be a ReusableCsvRow that is refilled for the
+//   next record - anything that keeps a row after the callback returns must keep snapshot()
 // - FLUP - could this be the place to add validations and json serialization?
 // - --------------------------------------------------
 public class CsvRow {
-    private final String[] rowData;
+    String[] rowData;
+    int size;
 
     public CsvRow(String[] rowData) {
         this.rowData = copyOf(rowData, rowData.length);
+        this.size = rowData.length;
+    }
+
+    CsvRow(String[] rowData, int size) {
+        this.rowData = rowData;
+        this.size = size;
+    }
+
+    // - takes ownership of the array, the caller must not modify it afterwards
+    public static CsvRow wrap(String[] rowData) {
+        return new CsvRow(rowData, rowData.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String get(int index) {
+        Objects.checkIndex(index, size);
+        return rowData[index];
     }
 
     public String[] getRowData() {
-        return copyOf(rowData, rowData.length);
+        return copyOf(rowData, size);
+    }
+
+    // - a row that is safe to keep after the callback, this row is never refilled so it is returned as is
+    public CsvRow snapshot() {
+        return this;
     }
 }
@@ -0,0 +1,40 @@
+package com.loucans.bob.csvtojson.model;
+
+import static java.util.Arrays.copyOf;
+
+// - --------------------------------------------------
+// - flyweight row refilled for every record, saves the per row array copies
+// - only the owner (parser, pipeline batch) mutates it, consumers see a plain
+//   CsvRow and treat it as immutable for the duration of their callback
+// - --------------------------------------------------
+public class ReusableCsvRow extends CsvRow {
+    private static final int INITIAL_CAPACITY = 8;
+
+    public ReusableCsvRow() {
+        super(new String[INITIAL_CAPACITY], 0);
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public void add(String value) {
+        if (size == rowData.length) {
+            rowData = copyOf(rowData, size * 2);
+        }
+        rowData[size++] = value;
+    }
+
+    public void copyFrom(CsvRow csvRow) {
+        if (rowData.length < csvRow.size) {
+            rowData = copyOf(rowData, csvRow.size);
+        }
+        System.arraycopy(csvRow.rowData, 0, rowData, 0, csvRow.size);
+        size = csvRow.size;
+    }
+
+    @Override
+    public CsvRow snapshot() {
+        return new CsvRow(getRowData(), size);
+    }
+}
@@ -1,8 +1,10 @@
 package com.loucans.bob.csvtojson.parser;
 
+import com.loucans.bob.csvtojson.events.StageTimer;
 import com.loucans.bob.csvtojson.exception.CsvToJsonException;
 import com.loucans.bob.csvtojson.exception.InvalidDataRowException;
 import com.loucans.bob.csvtojson.model.CsvRow;
+import com.loucans.bob.csvtojson.model.ReusableCsvRow;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
@@ -10,10 +12,12 @@ import org.apache.commons.csv.CSVRecord;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.Reader;
+import java.util.Iterator;
 
+import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
@@ -22,15 +26,19 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 // - --------------------------------------------------
 public class CommonsCsvParser implements CsvParser {
 
-    private final FileReader fileReader;
-    private final CSVParser parser;
+    private final Reader fileReader;
+    private final StageTimer parseTimer;
+    private CSVParser parser;
+    private boolean reuseRows = false;
+    private int maxFieldLength = 0;
+    private int maxRows = 0;
 
     public CommonsCsvParser(File csvFile) {
         try {
             // FLUP - how to handle source file encoding
             // FLUP - using the standard CSV parser,  what should it be?
             fileReader = new FileReader(csvFile, UTF_8);
-            parser = CSVFormat.RFC4180.parse(fileReader);
+            parseTimer = new StageTimer(csvFile.getName(), "parse");
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -40,21 +48,72 @@ public class CommonsCsvParser implements CsvParser {
         this(new File(csvFilePath));
     }
 
+    // - parses any character stream, i.e. a request body - closing the parser closes the reader
+    public CommonsCsvParser(Reader csvReader) {
+        this(csvReader, "stream");
+    }
+
+    // - source labels flight recorder events, i.e. the name of the file the reader reads
+    public CommonsCsvParser(Reader csvReader, String source) {
+        fileReader = csvReader;
+        parseTimer = new StageTimer(source, "parse");
+    }
+
+    // - hand every callback the same row instance, refilled per record
+    // - only for handlers that do not keep rows beyond the callback, or keep a snapshot()
+    public CommonsCsvParser reusingRows() {
+        this.reuseRows = true;
+        return this;
+    }
+
+    // - a longer field is reported as an error on its row, parsing goes on with the next
+    //   record, 0 for no limit
+    public CommonsCsvParser maxFieldLength(int maxFieldLength) {
+        this.maxFieldLength = maxFieldLength;
+        return this;
+    }
+
+    // - stop after this many records, i.e. to sample the head of a file, 0 for all
+    public CommonsCsvParser maxRows(int maxRows) {
+        this.maxRows = maxRows;
+        return this;
+    }
+
     public void parse(CsvRowCallbackHandler rowCallbackHandler,
                       CsvRowCallbackErrorHandler rowCallbackErrorHandler) {
         int rowNum = 1;
+        ReusableCsvRow reusableRow = reuseRows ? new ReusableCsvRow() : null;
+        FieldLengthLimitingReader limitingReader =
+                maxFieldLength > 0 ? new FieldLengthLimitingReader(fileReader, maxFieldLength) : null;
         try {
-            for (CSVRecord record : parser) {
-                if (nonNull(record) && (nonNull(rowCallbackHandler))) {
-                    List<String> rowData = new ArrayList<>();
-                    for (String s : record) {
-                        rowData.add(s);
-                    }
+            parser = CSVFormat.RFC4180.parse(nonNull(limitingReader) ? limitingReader : fileReader);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            Iterator<CSVRecord> records = parser.iterator();
+            for (; ; ) {
+                // hasNext does the tokenizing
+                long started = parseTimer.start();
+                if ((maxRows > 0 && rowNum > maxRows) || !records.hasNext()) {
+                    break;
+                }
+                CSVRecord record = records.next();
+                if (nonNull(limitingReader) && nonNull(record) && limitingReader.wasCut(record.getCharacterPosition())) {
+                    parseTimer.stop(started);
+                    rowCallbackErrorHandler.handleError(rowNum, new InvalidDataRowException(
+                            format("field longer than %d characters", maxFieldLength), null));
+                    rowNum++;
+                    continue;
+                }
+                CsvRow csvRow = isNull(record) ? null : reuseRows ? fill(reusableRow, record) : CsvRow.wrap(values(record));
+                parseTimer.stop(started);
 
+                if (nonNull(record) && (nonNull(rowCallbackHandler))) {
                     try {
                         rowCallbackHandler.handleRow(
                                 rowNum,
-                                new CsvRow(rowData.toArray(new String[]{})));
+                                csvRow);
                     } catch (CsvToJsonException e) {
                         rowCallbackErrorHandler.handleError(rowNum, e);
                     }
@@ -70,7 +129,25 @@ public class CommonsCsvParser implements CsvParser {
                             ? "unknown error processing csv file"
                             : e.getMessage().replace("IOException reading next record: java.io.IOException: ", "");
             rowCallbackErrorHandler.handleError(rowNum, new InvalidDataRowException(message, null));
+        } finally {
+            parseTimer.finish();
+        }
+    }
+
+    private CsvRow fill(ReusableCsvRow csvRow, CSVRecord record) {
+        csvRow.clear();
+        for (int i = 0; i < record.size(); i++) {
+            csvRow.add(record.get(i));
+        }
+        return csvRow;
+    }
+
+    private String[] values(CSVRecord record) {
+        String[] values = new String[record.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = record.get(i);
         }
+        return values;
     }
 
     @Override
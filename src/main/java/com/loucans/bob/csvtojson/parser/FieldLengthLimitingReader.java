@@ -0,0 +1,225 @@
+package com.loucans.bob.csvtojson.parser;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// - --------------------------------------------------
+// - cuts a csv field short once it runs past maxFieldLength characters and drops the
+//   rest of its record, so an oversized field is never buffered by the parser and the
+//   records after it are still read
+// - length is counted as written in the file, enclosing and escaped quotes included
+// - fields are followed as commons-csv reads RFC4180, so records start where the parser
+//   starts them - a quote only opens a quoted value as its first character, "" inside
+//   one is a quote, \r, \n and \r\n end a record
+// - a cut record is handed on as the characters before the limit, closed with a quote
+//   when the cut is inside one, and its line break - the parser asks wasCut() with the
+//   position of each record and reports the cut ones instead
+// - the dropped rest of the record is not checked for malformed values, a quote closing
+//   a value early just makes the rest of it literal
+// - --------------------------------------------------
+public class FieldLengthLimitingReader extends FilterReader {
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    // a quote inside a quoted value, escaped or closing depending on the next character
+    private static final int QUOTE = 3;
+    private static final int CLOSED = 4;
+    // after \r, a \n is still the same line break
+    private static final int LINE_BREAK = 5;
+    // commons-csv fails the record here, nothing after it is parsed
+    private static final int MALFORMED = 6;
+
+    private final int maxFieldLength;
+
+    private int state = FIELD_START;
+    private int fieldLength = 0;
+    private boolean skipping = false;
+    // positions in the characters handed out
+    private long position = 0;
+    private long recordStart = 0;
+    private final Deque<Long> cutRecords = new ArrayDeque<>();
+
+    public FieldLengthLimitingReader(Reader in, int maxFieldLength) {
+        super(in);
+        if (maxFieldLength < 1) {
+            throw new IllegalArgumentException("maxFieldLength must be at least 1");
+        }
+        this.maxFieldLength = maxFieldLength;
+    }
+
+    // - whether the record starting at this position, as CSVRecord.getCharacterPosition()
+    //   gives it, was cut - records are asked in order
+    public boolean wasCut(long recordPosition) {
+        while (!cutRecords.isEmpty() && cutRecords.peekFirst() < recordPosition) {
+            cutRecords.pollFirst();
+        }
+        if (!cutRecords.isEmpty() && cutRecords.peekFirst() == recordPosition) {
+            cutRecords.pollFirst();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        char[] single = new char[1];
+        int read = read(single, 0, 1);
+        return read < 0 ? -1 : single[0];
+    }
+
+    // - characters are kept in place, the dropped ones closed up, a cut only ever replaces
+    //   the character that went over the limit
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        for (; ; ) {
+            int read = super.read(buffer, offset, length);
+            if (read <= 0) {
+                return read;
+            }
+            int kept = offset;
+            for (int i = offset; i < offset + read; i++) {
+                char c = buffer[i];
+                if (skipping) {
+                    if (!skip(c)) {
+                        continue;
+                    }
+                } else if (state != MALFORMED && next(c) && ++fieldLength > maxFieldLength) {
+                    c = cut(c);
+                    if (c == 0) {
+                        continue;
+                    }
+                }
+                buffer[kept++] = c;
+                position++;
+            }
+            if (kept > offset) {
+                return kept - offset;
+            }
+        }
+    }
+
+    // - moves to the state after c, true when c is a character of the current field
+    private boolean next(char c) {
+        if (state == LINE_BREAK) {
+            state = FIELD_START;
+            if (c == '\n') {
+                recordStart = position + 1;
+                return false;
+            }
+        }
+        switch (state) {
+            case FIELD_START:
+                fieldLength = 0;
+                if (c == '"') {
+                    state = QUOTED;
+                    return true;
+                }
+                state = UNQUOTED;
+                return !endOfField(c);
+            case UNQUOTED:
+                return !endOfField(c);
+            case QUOTED:
+                if (c == '"') {
+                    state = QUOTE;
+                }
+                return true;
+            case QUOTE:
+                if (c == '"') {
+                    state = QUOTED;
+                    return true;
+                }
+                return afterClosingQuote(c);
+            default:
+                return afterClosingQuote(c);
+        }
+    }
+
+    // - only whitespace may follow a closing quote
+    private boolean afterClosingQuote(char c) {
+        if (endOfField(c)) {
+            return false;
+        }
+        state = Character.isWhitespace(c) ? CLOSED : MALFORMED;
+        return state == CLOSED;
+    }
+
+    private boolean endOfField(char c) {
+        if (c == ',') {
+            state = FIELD_START;
+            return true;
+        }
+        if (c == '\r' || c == '\n') {
+            state = c == '\r' ? LINE_BREAK : FIELD_START;
+            recordStart = position + 1;
+            return true;
+        }
+        return false;
+    }
+
+    // - the character over the limit is dropped, or replaced by a quote closing the value
+    //   it was in, 0 when nothing is handed out for it
+    private char cut(char c) {
+        cutRecords.addLast(recordStart);
+        skipping = true;
+        boolean inQuotes = state == QUOTED && c != '"' || state == QUOTE && c == '"';
+        if (state == CLOSED) {
+            state = UNQUOTED;
+        }
+        return inQuotes ? '"' : 0;
+    }
+
+    // - moves over the dropped rest of a record, true for the line break that ends it
+    private boolean skip(char c) {
+        switch (state) {
+            case QUOTED:
+                if (c == '"') {
+                    state = QUOTE;
+                }
+                return false;
+            case QUOTE:
+                if (c == '"') {
+                    state = QUOTED;
+                    return false;
+                }
+                state = UNQUOTED;
+                break;
+            case FIELD_START:
+                if (c == '"') {
+                    state = QUOTED;
+                    return false;
+                }
+                state = UNQUOTED;
+                break;
+            default:
+                break;
+        }
+        if (c == ',') {
+            state = FIELD_START;
+            return false;
+        }
+        if (c == '\r' || c == '\n') {
+            skipping = false;
+            endOfField(c);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // skipped characters still have to be scanned
+        char[] skipped = new char[(int) Math.min(n, 8192)];
+        long remaining = n;
+        while (remaining > 0) {
+            int read = read(skipped, 0, (int) Math.min(remaining, skipped.length));
+            if (read < 0) {
+                break;
+            }
+            remaining -= read;
+        }
+        return n - remaining;
+    }
+}
@@ -0,0 +1,671 @@
+package com.loucans.bob.csvtojson.parser;
+
+import com.loucans.bob.csvtojson.events.StageTimer;
+import com.loucans.bob.csvtojson.exception.CsvToJsonException;
+import com.loucans.bob.csvtojson.exception.InvalidDataRowException;
+import com.loucans.bob.csvtojson.model.CsvRow;
+import com.loucans.bob.csvtojson.model.ReusableCsvRow;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.nonNull;
+
+// - --------------------------------------------------
+// - utf-8 csv parser for wide, mostly unquoted files - input is read in large byte
+//   blocks and each block gets a structural index, the positions of every , " \r and \n,
+//   found eight bytes at a time (swar - a long compared against each character in all
+//   its bytes at once). Records are then cut by walking the index, so the bytes of an
+//   unquoted value are only touched again when it is decoded into its string
+// - produces the same rows and errors as CommonsCsvParser with RFC4180 - a quote only
+//   opens a quoted value as its first character, "" inside one is a quote, only
+//   whitespace may follow the closing quote, \r, \n and \r\n end a record, an empty line
+//   is a record with one empty value - error messages and their line numbers included
+// - maxFieldLength cuts a record as FieldLengthLimitingReader does, at the same
+//   character, and skips its rest the same way, so the line numbers of later errors match
+// - the structural characters are ascii, they never occur inside a multi byte utf-8
+//   character, so the index needs no decoding
+// - --------------------------------------------------
+public class StructuralCsvParser implements CsvParser {
+    static final int DEFAULT_BLOCK_BYTES = 256 * 1024;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long COMMAS = ONES * ',';
+    private static final long QUOTES = ONES * '"';
+    private static final long CARRIAGE_RETURNS = ONES * '\r';
+    private static final long LINE_FEEDS = ONES * '\n';
+
+    private static final int NEED_MORE = -1;
+    private static final int NO_RECORD = -2;
+
+    // skipping the rest of a cut record, as FieldLengthLimitingReader reads it
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE = 3;
+
+    private final InputStream in;
+    private final StageTimer parseTimer;
+    private boolean reuseRows = false;
+    private int maxFieldLength = 0;
+    private int maxRows = 0;
+
+    // bytes read and not yet parsed, from the start of the current record
+    private byte[] buffer;
+    private int end = 0;
+    private boolean endOfInput = false;
+
+    // structural positions in buffer, ascending
+    private int[] index;
+    private int indexed = 0;
+    // first entry of the current record, and the walk's position within it
+    private int recordCursor = 0;
+    private int cursor = 0;
+
+    // for error messages - line breaks dropped with parsed records, and the last byte dropped
+    private long droppedLineBreaks = 0;
+    private byte droppedLastByte = 0;
+
+    // a record cut at a field over maxFieldLength - its bytes from skipFrom are dropped up
+    // to the line break ending it, the index walked for that from skipScan
+    private boolean recordCut = false;
+    private boolean skipping = false;
+    private int skipFrom = 0;
+    private int skipScan = 0;
+    private int skipState = UNQUOTED;
+    // where the character after a delimiter or quote has to be to open or escape a quote
+    private int skipNext = 0;
+
+    private String[] values = new String[8];
+    private int valueCount = 0;
+    private byte[] quoted = new byte[256];
+    private int quotedLength = 0;
+
+    public StructuralCsvParser(File csvFile) {
+        this(openFile(csvFile), csvFile.getName(), DEFAULT_BLOCK_BYTES);
+    }
+
+    public StructuralCsvParser(String csvFilePath) {
+        this(new File(csvFilePath));
+    }
+
+    // - parses any utf-8 byte stream - closing the parser closes the stream
+    public StructuralCsvParser(InputStream csvStream) {
+        this(csvStream, "stream");
+    }
+
+    // - source labels flight recorder events, i.e. the name of the file the stream reads
+    public StructuralCsvParser(InputStream csvStream, String source) {
+        this(csvStream, source, DEFAULT_BLOCK_BYTES);
+    }
+
+    // - tests use small blocks so records and quoted values straddle block boundaries
+    StructuralCsvParser(InputStream csvStream, String source, int blockBytes) {
+        this.in = csvStream;
+        this.parseTimer = new StageTimer(source, "parse");
+        this.buffer = new byte[initialBlockBytes(csvStream, blockBytes)];
+        this.index = new int[Math.max(16, buffer.length / 8)];
+    }
+
+    // - a small file gets a buffer of its size, the buffer grows when a record needs it
+    private static int initialBlockBytes(InputStream in, int blockBytes) {
+        try {
+            int available = in.available();
+            return available > 0 ? Math.min(blockBytes, available + 1) : blockBytes;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - hand every callback the same row instance, refilled per record
+    // - only for handlers that do not keep rows beyond the callback, or keep a snapshot()
+    public StructuralCsvParser reusingRows() {
+        this.reuseRows = true;
+        return this;
+    }
+
+    // - a longer field is reported as an error on its row, parsing goes on with the next
+    //   record, 0 for no limit
+    public StructuralCsvParser maxFieldLength(int maxFieldLength) {
+        this.maxFieldLength = maxFieldLength;
+        return this;
+    }
+
+    // - stop after this many records, i.e. to sample the head of a file, 0 for all
+    public StructuralCsvParser maxRows(int maxRows) {
+        this.maxRows = maxRows;
+        return this;
+    }
+
+    @Override
+    public void parse(CsvRowCallbackHandler rowCallbackHandler,
+                      CsvRowCallbackErrorHandler rowCallbackErrorHandler) {
+        int rowNum = 1;
+        ReusableCsvRow reusableRow = reuseRows ? new ReusableCsvRow() : null;
+        int recordStart = 0;
+        try {
+            for (; ; ) {
+                long started = parseTimer.start();
+                if (maxRows > 0 && rowNum > maxRows) {
+                    break;
+                }
+                int recordEnd = skipping ? skipRecord() : parseRecord(recordStart);
+                if (recordEnd == NEED_MORE) {
+                    dropParsed(recordStart);
+                    recordStart = 0;
+                    read();
+                    continue;
+                }
+                if (recordEnd == NO_RECORD) {
+                    break;
+                }
+                if (recordCut) {
+                    recordCut = false;
+                    parseTimer.stop(started);
+                    rowCallbackErrorHandler.handleError(rowNum, new InvalidDataRowException(
+                            format("field longer than %d characters", maxFieldLength), null));
+                    recordStart = recordEnd;
+                    rowNum++;
+                    continue;
+                }
+                CsvRow csvRow = reuseRows ? fill(reusableRow) : CsvRow.wrap(Arrays.copyOf(values, valueCount));
+                parseTimer.stop(started);
+
+                if (nonNull(rowCallbackHandler)) {
+                    try {
+                        rowCallbackHandler.handleRow(rowNum, csvRow);
+                    } catch (CsvToJsonException e) {
+                        rowCallbackErrorHandler.handleError(rowNum, e);
+                    }
+                }
+                recordStart = recordEnd;
+                rowNum++;
+            }
+        } catch (MalformedRecordException e) {
+            // as with commons-csv, the first malformed record is the last one reported
+            rowCallbackErrorHandler.handleError(rowNum, new InvalidDataRowException(e.getMessage(), null));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            parseTimer.finish();
+        }
+    }
+
+    private CsvRow fill(ReusableCsvRow csvRow) {
+        csvRow.clear();
+        for (int i = 0; i < valueCount; i++) {
+            csvRow.add(values[i]);
+        }
+        return csvRow;
+    }
+
+    // - ---------------------------------------
+    // - parses the record at recordStart into values, returns the position after it,
+    //   NEED_MORE when it runs past the bytes read so far, NO_RECORD at end of input
+    // - the index is walked for the next structural character, only the bytes after a
+    //   closing quote are looked at one by one
+    // - ---------------------------------------
+    private int parseRecord(int recordStart) throws MalformedRecordException {
+        valueCount = 0;
+        cursor = recordCursor;
+        int pos = recordStart;
+        for (; ; ) {
+            if (pos == end) {
+                if (!endOfInput) {
+                    return NEED_MORE;
+                }
+                if (valueCount == 0) {
+                    return NO_RECORD;
+                }
+                // a delimiter right before the end of input ends with an empty value
+                addValue("");
+                return complete(end);
+            }
+
+            byte c = buffer[pos];
+            if (c == ',') {
+                addValue("");
+                pos++;
+            } else if (c == '\r' || c == '\n') {
+                addValue("");
+                return endOfLine(pos);
+            } else if (c != '"') {
+                int terminator = nextTerminator(pos);
+                if (isTooLong(pos, terminator)) {
+                    return cut(pos, -1);
+                }
+                if (terminator == end) {
+                    if (!endOfInput) {
+                        return NEED_MORE;
+                    }
+                    addValue(new String(buffer, pos, end - pos, UTF_8));
+                    return complete(end);
+                }
+                addValue(new String(buffer, pos, terminator - pos, UTF_8));
+                if (buffer[terminator] != ',') {
+                    return endOfLine(terminator);
+                }
+                pos = terminator + 1;
+            } else {
+                // quoted value - copied between quotes, "" unescaped
+                int fieldStart = pos;
+                quotedLength = 0;
+                int from = pos + 1;
+                for (; ; ) {
+                    int quote = nextQuote(from);
+                    if (quote == end) {
+                        if (isTooLong(fieldStart, end)) {
+                            return cut(fieldStart, -1);
+                        }
+                        if (!endOfInput) {
+                            return NEED_MORE;
+                        }
+                        throw new MalformedRecordException(format(
+                                "(startline %d) EOF reached before encapsulated token finished", lineNumber(pos)));
+                    }
+                    appendQuoted(from, quote);
+                    if (quote + 1 == end && !endOfInput) {
+                        return isTooLong(fieldStart, end) ? cut(fieldStart, -1) : NEED_MORE;
+                    }
+                    if (quote + 1 < end && buffer[quote + 1] == '"') {
+                        appendQuoted(quote, quote + 1);
+                        from = quote + 2;
+                        continue;
+                    }
+                    pos = quote + 1;
+                    break;
+                }
+                int closingQuote = pos - 1;
+                String value = new String(quoted, 0, quotedLength, UTF_8);
+
+                // only whitespace up to the delimiter or line end, the field's length runs up to there
+                for (; ; ) {
+                    boolean fieldEnd = pos == end || buffer[pos] == ',' || buffer[pos] == '\r' || buffer[pos] == '\n';
+                    if (fieldEnd && isTooLong(fieldStart, pos)) {
+                        return cut(fieldStart, closingQuote);
+                    }
+                    if (pos == end) {
+                        if (!endOfInput) {
+                            return NEED_MORE;
+                        }
+                        addValue(value);
+                        return complete(end);
+                    }
+                    byte b = buffer[pos];
+                    if (b == ',') {
+                        addValue(value);
+                        pos++;
+                        break;
+                    }
+                    if (b == '\r' || b == '\n') {
+                        addValue(value);
+                        return endOfLine(pos);
+                    }
+                    int width = whitespaceWidth(pos);
+                    if (width <= 0 && isTooLong(fieldStart, pos)) {
+                        // over the limit before this character, whatever it turns out to be
+                        return cut(fieldStart, closingQuote);
+                    }
+                    if (width < 0) {
+                        return NEED_MORE;
+                    }
+                    if (width == 0) {
+                        throw new MalformedRecordException(format(
+                                "(line %d) invalid char between encapsulated token and delimiter", lineNumber(pos)));
+                    }
+                    pos += width;
+                }
+            }
+        }
+    }
+
+    // - \r\n is one line end, a \r at the end of the bytes read needs the next byte to tell
+    private int endOfLine(int pos) {
+        if (buffer[pos] == '\r') {
+            if (pos + 1 == end && !endOfInput) {
+                return NEED_MORE;
+            }
+            if (pos + 1 < end && buffer[pos + 1] == '\n') {
+                pos++;
+            }
+        }
+        return complete(pos + 1);
+    }
+
+    private int complete(int recordEnd) {
+        nextStructural(recordEnd);
+        recordCursor = cursor;
+        return recordEnd;
+    }
+
+    // - ---------------------------------------
+    // - field length limit - the field at fieldStart is checked up to its end, or up to the
+    //   bytes read so far while it is incomplete, so a long field is never buffered whole
+    // - ---------------------------------------
+    private boolean isTooLong(int fieldStart, int to) {
+        // only a field with more bytes than the limit can have more characters, those are counted
+        return maxFieldLength > 0 && to - fieldStart > maxFieldLength
+                && countCharacters(fieldStart, to, 0) > maxFieldLength;
+    }
+
+    // - cuts the record at the character over the limit - dropped, or replaced by a quote
+    //   closing the value it was in - and skips the rest of it
+    // - closingQuote of a quoted field, -1 when it is not found yet
+    private int cut(int fieldStart, int closingQuote) {
+        int cutAt = fieldStart;
+        int characters = 0;
+        for (; ; cutAt++) {
+            characters = countCharacters(cutAt, cutAt + 1, characters);
+            if (characters > maxFieldLength) {
+                break;
+            }
+        }
+        // only the low surrogate of a four byte character over the limit - the reader still
+        // hands out the high one, its first byte stands in for it
+        int kept = characters - 1 == maxFieldLength && (buffer[cutAt] & 0xF8) == 0xF0 ? 1 : 0;
+        if (kept > 0 && cutAt + 1 == end) {
+            if (!endOfInput) {
+                // the rest of the character is not read yet
+                return NEED_MORE;
+            }
+            kept = 0;
+        }
+        boolean closeQuote;
+        if (buffer[fieldStart] != '"' || closingQuote >= 0 && cutAt > closingQuote) {
+            // only whitespace after a closing quote, as good as unquoted when skipping
+            skipState = UNQUOTED;
+            closeQuote = false;
+        } else if (buffer[cutAt] != '"') {
+            skipState = QUOTED;
+            closeQuote = true;
+        } else {
+            // quotes after the opening one pair up from the start of their run, the first
+            // of a pair is escaping or closing, the second is an escaped quote
+            int run = cutAt;
+            while (run - 1 > fieldStart && buffer[run - 1] == '"') {
+                run--;
+            }
+            closeQuote = (cutAt - run) % 2 == 0;
+            skipState = closeQuote ? QUOTE : QUOTED;
+        }
+        if (closeQuote) {
+            buffer[cutAt + kept] = '"';
+        }
+        skipFrom = cutAt + kept + (closeQuote ? 1 : 0);
+        skipScan = cutAt + 1;
+        skipNext = cutAt + 1;
+        skipping = true;
+        recordCut = true;
+        return skipRecord();
+    }
+
+    // - walks the index from skipScan to the line break ending the cut record, quotes
+    //   following FieldLengthLimitingReader, and closes up the bytes before it - at the end
+    //   of the bytes read they are all dropped and the walk goes on with the next read
+    private int skipRecord() {
+        cursor = recordCursor;
+        for (int pos = nextStructural(skipScan); pos < end; pos = nextStructural(pos + 1)) {
+            byte b = buffer[pos];
+            if ((skipState == FIELD_START || skipState == QUOTE) && pos != skipNext) {
+                skipState = UNQUOTED;
+            }
+            if (skipState == QUOTED) {
+                if (b == '"') {
+                    skipState = QUOTE;
+                    skipNext = pos + 1;
+                }
+            } else if (b == '"') {
+                if (skipState != UNQUOTED) {
+                    skipState = QUOTED;
+                }
+            } else if (b == ',') {
+                skipState = FIELD_START;
+                skipNext = pos + 1;
+            } else {
+                closeUp(skipFrom, pos);
+                skipScan = skipFrom;
+                int recordEnd = endOfLine(skipFrom);
+                skipping = recordEnd == NEED_MORE;
+                return recordEnd;
+            }
+        }
+        if ((skipState == FIELD_START || skipState == QUOTE) && skipNext != end) {
+            skipState = UNQUOTED;
+        }
+        while (indexed > 0 && index[indexed - 1] >= skipFrom) {
+            indexed--;
+        }
+        end = skipFrom;
+        skipScan = skipFrom;
+        skipNext = skipFrom;
+        if (!endOfInput) {
+            return NEED_MORE;
+        }
+        skipping = false;
+        return complete(end);
+    }
+
+    // - drops the bytes from to to, with their index entries
+    private void closeUp(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        int first = cursor;
+        while (first > 0 && index[first - 1] >= from) {
+            first--;
+        }
+        int last = first;
+        while (last < indexed && index[last] < to) {
+            last++;
+        }
+        for (int i = last; i < indexed; i++) {
+            index[first + i - last] = index[i] - (to - from);
+        }
+        indexed -= last - first;
+        cursor = first;
+        System.arraycopy(buffer, to, buffer, from, end - to);
+        end -= to - from;
+    }
+
+    private void addValue(String value) {
+        if (valueCount == values.length) {
+            values = Arrays.copyOf(values, valueCount * 2);
+        }
+        values[valueCount++] = value;
+    }
+
+    private void appendQuoted(int from, int to) {
+        int length = to - from;
+        if (quotedLength + length > quoted.length) {
+            quoted = Arrays.copyOf(quoted, Math.max(quoted.length * 2, quotedLength + length));
+        }
+        System.arraycopy(buffer, from, quoted, quotedLength, length);
+        quotedLength += length;
+    }
+
+    // - first structural position at or after from, end when there is none
+    private int nextStructural(int from) {
+        while (cursor < indexed && index[cursor] < from) {
+            cursor++;
+        }
+        return cursor < indexed ? index[cursor] : end;
+    }
+
+    private int nextQuote(int from) {
+        int pos = nextStructural(from);
+        while (pos < end && buffer[pos] != '"') {
+            pos = nextStructural(pos + 1);
+        }
+        return pos;
+    }
+
+    // - a quote inside an unquoted value is kept as is
+    private int nextTerminator(int from) {
+        int pos = nextStructural(from);
+        while (pos < end && buffer[pos] == '"') {
+            pos = nextStructural(pos + 1);
+        }
+        return pos;
+    }
+
+    // - bytes of the whitespace character at pos, 0 when it is not whitespace, -1 when
+    //   the character is cut off at the end of the bytes read so far
+    // - Character.isWhitespace as commons-csv uses it, multi byte ones are all three bytes
+    private int whitespaceWidth(int pos) {
+        int b = buffer[pos] & 0xFF;
+        if (b < 0x80) {
+            return Character.isWhitespace((char) b) ? 1 : 0;
+        }
+        if ((b & 0xF0) != 0xE0) {
+            return 0;
+        }
+        if (pos + 3 > end) {
+            return endOfInput ? 0 : -1;
+        }
+        if ((buffer[pos + 1] & 0xC0) != 0x80 || (buffer[pos + 2] & 0xC0) != 0x80) {
+            // malformed, decoded as the replacement character
+            return 0;
+        }
+        char c = (char) ((b & 0x0F) << 12 | (buffer[pos + 1] & 0x3F) << 6 | (buffer[pos + 2] & 0x3F));
+        return Character.isWhitespace(c) ? 3 : 0;
+    }
+
+    // - line of pos as commons-csv counts it, \r, \n and \r\n are one line break each
+    private long lineNumber(int pos) {
+        long lineBreaks = droppedLineBreaks;
+        for (int i = 0; i < pos; i++) {
+            if (isLineBreak(i)) {
+                lineBreaks++;
+            }
+        }
+        return lineBreaks + 1;
+    }
+
+    private boolean isLineBreak(int pos) {
+        byte b = buffer[pos];
+        return b == '\r' || b == '\n' && (pos == 0 ? droppedLastByte : buffer[pos - 1]) != '\r';
+    }
+
+    // - ---------------------------------------
+    // - reading and indexing
+    // - ---------------------------------------
+
+    // - moves the current record to the start of the buffer, its index entries with it
+    private void dropParsed(int recordStart) {
+        if (recordStart == 0) {
+            if (end == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            return;
+        }
+        for (int i = 0; i < recordCursor; i++) {
+            if (isLineBreak(index[i])) {
+                droppedLineBreaks++;
+            }
+        }
+        droppedLastByte = buffer[recordStart - 1];
+        System.arraycopy(buffer, recordStart, buffer, 0, end - recordStart);
+        end -= recordStart;
+        for (int i = recordCursor; i < indexed; i++) {
+            index[i - recordCursor] = index[i] - recordStart;
+        }
+        indexed -= recordCursor;
+        recordCursor = 0;
+        if (skipping) {
+            skipFrom -= recordStart;
+            skipScan -= recordStart;
+            skipNext -= recordStart;
+        }
+    }
+
+    private void read() throws IOException {
+        int read = in.read(buffer, end, buffer.length - end);
+        if (read < 0) {
+            endOfInput = true;
+            return;
+        }
+        int from = end;
+        end += read;
+        indexStructural(from, end);
+    }
+
+    // - swar - a byte equal to the character xors to zero, zeroByteMask sets the high bit of
+    //   exactly those bytes, and each set bit is one index entry
+    private void indexStructural(int from, int to) {
+        int pos = from;
+        for (; pos + Long.BYTES <= to; pos += Long.BYTES) {
+            long word = (long) LONGS.get(buffer, pos);
+            long found = zeroByteMask(word ^ COMMAS)
+                    | zeroByteMask(word ^ QUOTES)
+                    | zeroByteMask(word ^ CARRIAGE_RETURNS)
+                    | zeroByteMask(word ^ LINE_FEEDS);
+            while (found != 0) {
+                addIndexEntry(pos + (Long.numberOfTrailingZeros(found) >>> 3));
+                found &= found - 1;
+            }
+        }
+        for (; pos < to; pos++) {
+            byte b = buffer[pos];
+            if (b == ',' || b == '"' || b == '\r' || b == '\n') {
+                addIndexEntry(pos);
+            }
+        }
+    }
+
+    // - high bit set in every zero byte of word, without the false positives of the
+    //   shorter (word - ONES) & ~word form, which a borrow can set above a zero byte
+    private static long zeroByteMask(long word) {
+        long low = (word & LOW_SEVEN_BITS) + LOW_SEVEN_BITS;
+        return ~(low | word | LOW_SEVEN_BITS);
+    }
+
+    private void addIndexEntry(int pos) {
+        if (indexed == index.length) {
+            index = Arrays.copyOf(index, indexed * 2);
+        }
+        index[indexed++] = pos;
+    }
+
+    // - java chars in the utf-8 bytes, four byte characters are two
+    private int countCharacters(int from, int to, int characters) {
+        for (int pos = from; pos < to; pos++) {
+            int b = buffer[pos] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                characters += (b & 0xF8) == 0xF0 ? 2 : 1;
+            }
+        }
+        return characters;
+    }
+
+    private static InputStream openFile(File csvFile) {
+        try {
+            return Files.newInputStream(csvFile.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // - ---------------------------------------
+    // - the record cannot be parsed, parsing stops with it
+    // - ---------------------------------------
+    private static class MalformedRecordException extends IOException {
+        private MalformedRecordException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.loucans.bob.csvtojson.pipeline;
+
+import com.loucans.bob.csvtojson.events.StageTimer;
+import com.loucans.bob.csvtojson.exception.CsvToJsonException;
+import com.loucans.bob.csvtojson.parser.CsvParser;
+import com.loucans.bob.csvtojson.parser.CsvRowCallbackErrorHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Objects.nonNull;
+
+// - --------------------------------------------------
+// - staged reader -> N workers -> writer pipeline for a single file
+// - the calling thread parses and fills batches, workers validate and serialize,
+//   one writer thread consumes results and errors in file order
+// - every worker owns a lane of three spsc rings (free -> work -> done), batches are
+//   dealt to lanes round robin so the writer restores file order by visiting the
+//   lanes in the same sequence, no reordering buffer is needed
+// - memory is bounded by workers * batchesPerWorker * batchSize rows
+// - --------------------------------------------------
+public class CsvPipeline {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CsvPipeline.class);
+
+    private static final int SPIN_ATTEMPTS = 100;
+    private static final int YIELD_ATTEMPTS = 200;
+    private static final long PARK_NANOS = 50_000L;
+
+    private final int workers;
+    private final int batchSize;
+    private final int batchesPerWorker;
+    private final String source;
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    public CsvPipeline(int workers, int batchSize, int batchesPerWorker) {
+        this(workers, batchSize, batchesPerWorker, "stream");
+    }
+
+    // - source only labels flight recorder events
+    public CsvPipeline(int workers, int batchSize, int batchesPerWorker, String source) {
+        if (workers < 1 || batchSize < 1 || batchesPerWorker < 1) {
+            throw new IllegalArgumentException("pipeline workers, batch size and batches per worker must be positive");
+        }
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.batchesPerWorker = batchesPerWorker;
+        this.source = source;
+    }
+
+    public void run(CsvParser parser,
+                    CsvRowTransformer transformer,
+                    CsvRowResultHandler resultHandler,
+                    CsvRowCallbackErrorHandler errorHandler) {
+        Lane[] lanes = new Lane[workers];
+        for (int i = 0; i < workers; i++) {
+            lanes[i] = new Lane(batchSize, batchesPerWorker);
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        String parent = Thread.currentThread().getName();
+        for (int i = 0; i < workers; i++) {
+            Lane lane = lanes[i];
+            threads.add(stageThread(parent + "-worker-" + i, () -> work(lane, transformer)));
+        }
+        threads.add(stageThread(parent + "-writer", () -> write(lanes, resultHandler, errorHandler)));
+        threads.forEach(Thread::start);
+
+        try {
+            read(parser, lanes);
+        } catch (Throwable t) {
+            fail(t);
+        } finally {
+            joinAll(threads);
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else if (nonNull(t)) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    // - ---------------------------------------
+    // - reader stage - runs on the calling thread
+    // - ---------------------------------------
+    private void read(CsvParser parser, Lane[] lanes) {
+        Reader reader = new Reader(lanes);
+        parser.parse(
+                (rowNum, csvRow) -> reader.current().addRow(rowNum, csvRow),
+                (rowNum, error) -> reader.current().addError(rowNum, error));
+        reader.finish();
+    }
+
+    private class Reader {
+        private final Lane[] lanes;
+        private long sequence = 0;
+        private RowBatch batch;
+
+        Reader(Lane[] lanes) {
+            this.lanes = lanes;
+        }
+
+        RowBatch current() {
+            if (nonNull(batch) && batch.isFull()) {
+                dispatch();
+            }
+            if (batch == null) {
+                batch = take(lanes[lane(sequence)].free);
+            }
+            return batch;
+        }
+
+        void finish() {
+            if (nonNull(batch) && batch.size > 0) {
+                dispatch();
+            }
+            // the writer stops at the first end of stream marker it meets in sequence,
+            // every worker still needs one to exit
+            for (int i = 0; i < lanes.length; i++) {
+                if (batch == null) {
+                    batch = take(lanes[lane(sequence)].free);
+                }
+                batch.endOfStream = true;
+                dispatch();
+            }
+        }
+
+        private void dispatch() {
+            if (nonNull(failure.get())) {
+                throw new PipelineAbortedException();
+            }
+            put(lanes[lane(sequence)].work, batch);
+            batch = null;
+            sequence++;
+        }
+    }
+
+    // - ---------------------------------------
+    // - worker stage - validation and serialization
+    // - ---------------------------------------
+    private void work(Lane lane, CsvRowTransformer transformer) {
+        StageTimer transformTimer = new StageTimer(source, "transform", batchSize);
+        try {
+            for (; ; ) {
+                RowBatch batch = take(lane.work);
+                if (!batch.endOfStream) {
+                    for (int i = 0; i < batch.size; i++) {
+                        if (batch.errors[i] == null) {
+                            long started = transformTimer.start();
+                            try {
+                                batch.serializedRows[i] = transformer.transform(batch.rowNums[i], batch.rows[i]);
+                            } catch (CsvToJsonException e) {
+                                batch.errors[i] = e;
+                            }
+                            transformTimer.stop(started);
+                        }
+                    }
+                }
+                put(lane.done, batch);
+                if (batch.endOfStream) {
+                    return;
+                }
+            }
+        } finally {
+            transformTimer.finish();
+        }
+    }
+
+    // - ---------------------------------------
+    // - writer stage - results and errors in file order
+    // - ---------------------------------------
+    private void write(Lane[] lanes,
+                       CsvRowResultHandler resultHandler,
+                       CsvRowCallbackErrorHandler errorHandler) {
+        for (long sequence = 0; ; sequence++) {
+            Lane lane = lanes[lane(sequence)];
+            RowBatch batch = take(lane.done);
+            if (batch.endOfStream) {
+                return;
+            }
+            for (int i = 0; i < batch.size; i++) {
+                if (nonNull(batch.errors[i])) {
+                    errorHandler.handleError(batch.rowNums[i], batch.errors[i]);
+                } else {
+                    resultHandler.handleResult(batch.rowNums[i], batch.serializedRows[i]);
+                }
+            }
+            batch.clear();
+            put(lane.free, batch);
+        }
+    }
+
+    // - ---------------------------------------
+    // - hand-off helpers
+    // - ---------------------------------------
+    private int lane(long sequence) {
+        return (int) (sequence % workers);
+    }
+
+    private <E> E take(RingBuffer<E> ring) {
+        E element;
+        for (int attempt = 0; (element = ring.poll()) == null; attempt++) {
+            idle(attempt);
+        }
+        return element;
+    }
+
+    private <E> void put(RingBuffer<E> ring, E element) {
+        for (int attempt = 0; !ring.offer(element); attempt++) {
+            idle(attempt);
+        }
+    }
+
+    private void idle(int attempt) {
+        if (nonNull(failure.get())) {
+            throw new PipelineAbortedException();
+        }
+        if (attempt < SPIN_ATTEMPTS) {
+            Thread.onSpinWait();
+        } else if (attempt < YIELD_ATTEMPTS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    private void fail(Throwable t) {
+        if (!(t instanceof PipelineAbortedException) && !failure.compareAndSet(null, t)) {
+            LOGGER.debug("pipeline already failed, suppressing: [{}]", t.toString());
+        }
+    }
+
+    private Thread stageThread(String name, Runnable stage) {
+        Thread thread = new Thread(() -> {
+            try {
+                stage.run();
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private void joinAll(List<Thread> threads) {
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            for (; ; ) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    fail(e);
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Lane {
+        final RingBuffer<RowBatch> free;
+        final RingBuffer<RowBatch> work;
+        final RingBuffer<RowBatch> done;
+
+        Lane(int batchSize, int batchesPerWorker) {
+            free = new RingBuffer<>(batchesPerWorker);
+            work = new RingBuffer<>(batchesPerWorker);
+            done = new RingBuffer<>(batchesPerWorker);
+            for (int i = 0; i < batchesPerWorker; i++) {
+                free.offer(new RowBatch(batchSize));
+            }
+        }
+    }
+
+    // unwinds a stage once another stage has failed, never reported itself
+    private static class PipelineAbortedException extends RuntimeException {
+        PipelineAbortedException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.loucans.bob.csvtojson.pipeline;
+
+// - --------------------------------------------------
+// - receives transformed rows on the writer thread, in file order
+// - --------------------------------------------------
+public interface CsvRowResultHandler {
+    void handleResult(Integer rowNum, String serializedRow);
+}
@@ -0,0 +1,12 @@
+package com.loucans.bob.csvtojson.pipeline;
+
+import com.loucans.bob.csvtojson.exception.CsvToJsonException;
+import com.loucans.bob.csvtojson.model.CsvRow;
+
+// - --------------------------------------------------
+// - validates and serializes a row on a pipeline worker thread
+// - returns null when the row produces no output, i.e. the header
+// - --------------------------------------------------
+public interface CsvRowTransformer {
+    String transform(Integer rowNum, CsvRow csvRow) throws CsvToJsonException;
+}
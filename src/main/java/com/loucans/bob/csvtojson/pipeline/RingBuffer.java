@@ -0,0 +1,70 @@
+package com.loucans.bob.csvtojson.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// - --------------------------------------------------
+// - bounded single producer / single consumer ring buffer
+// - slots are preallocated and sequences are published with lazySet,
+//   no locks are taken on either side
+// - exactly one thread may offer and exactly one thread may poll
+// - --------------------------------------------------
+public class RingBuffer<E> {
+    private final Object[] slots;
+    private final int mask;
+    private final int capacity;
+
+    // next sequence to poll, written by the consumer only
+    private final AtomicLong head = new AtomicLong();
+    // next sequence to offer, written by the producer only
+    private final AtomicLong tail = new AtomicLong();
+
+    // producer side cache of head, consumer side cache of tail - saves a volatile read per call
+    private long cachedHead;
+    private long cachedTail;
+
+    public RingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 1) {
+            throw new IllegalArgumentException("ring buffer capacity must be positive");
+        }
+        int powerOfTwo = 1;
+        while (powerOfTwo < requestedCapacity) {
+            powerOfTwo <<= 1;
+        }
+        capacity = powerOfTwo;
+        mask = capacity - 1;
+        slots = new Object[capacity];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean offer(E element) {
+        long currentTail = tail.get();
+        if (currentTail - cachedHead >= capacity) {
+            cachedHead = head.get();
+            if (currentTail - cachedHead >= capacity) {
+                return false;
+            }
+        }
+        slots[(int) currentTail & mask] = element;
+        tail.lazySet(currentTail + 1);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long currentHead = head.get();
+        if (currentHead >= cachedTail) {
+            cachedTail = tail.get();
+            if (currentHead >= cachedTail) {
+                return null;
+            }
+        }
+        int index = (int) currentHead & mask;
+        E element = (E) slots[index];
+        slots[index] = null;
+        head.lazySet(currentHead + 1);
+        return element;
+    }
+}
@@ -0,0 +1,57 @@
+package com.loucans.bob.csvtojson.pipeline;
+
+import com.loucans.bob.csvtojson.exception.CsvToJsonException;
+import com.loucans.bob.csvtojson.model.CsvRow;
+import com.loucans.bob.csvtojson.model.ReusableCsvRow;
+
+import java.util.Arrays;
+
+// - --------------------------------------------------
+// - unit of hand-off between pipeline stages
+// - allocated once per pipeline and recycled by the writer, which bounds
+//   the number of rows in flight regardless of file size
+// - row slots are flyweights, the reader copies field references into them so a
+//   parser handing out a reused row costs no allocation per row
+// - --------------------------------------------------
+class RowBatch {
+    final int[] rowNums;
+    final ReusableCsvRow[] rows;
+    final String[] serializedRows;
+    final CsvToJsonException[] errors;
+    int size;
+    boolean endOfStream;
+
+    RowBatch(int batchSize) {
+        rowNums = new int[batchSize];
+        rows = new ReusableCsvRow[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            rows[i] = new ReusableCsvRow();
+        }
+        serializedRows = new String[batchSize];
+        errors = new CsvToJsonException[batchSize];
+    }
+
+    boolean isFull() {
+        return size == rows.length;
+    }
+
+    void addRow(int rowNum, CsvRow csvRow) {
+        rowNums[size] = rowNum;
+        rows[size].copyFrom(csvRow);
+        size++;
+    }
+
+    void addError(int rowNum, CsvToJsonException error) {
+        rowNums[size] = rowNum;
+        rows[size].clear();
+        errors[size] = error;
+        size++;
+    }
+
+    void clear() {
+        Arrays.fill(serializedRows, 0, size, null);
+        Arrays.fill(errors, 0, size, null);
+        size = 0;
+        endOfStream = false;
+    }
+}
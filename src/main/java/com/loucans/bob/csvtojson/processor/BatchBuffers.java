@@ -0,0 +1,196 @@
+package com.loucans.bob.csvtojson.processor;
+
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+// - --------------------------------------------------
+// - buffers one worker reuses across a batch of small files
+// - a csv file is read with one channel read into a byte buffer and decoded into a char
+//   buffer, json and errors are collected in memory and each output file is written
+//   with a single write when its writer is closed - no buffered reader or writer, and
+//   no open/append/close per error line, for every file
+// - as with the file writers, nothing is created for a file without records or errors
+// - the json writer and error logger are one instance each, reset for every file
+// - not thread safe, one instance per batch
+// - --------------------------------------------------
+class BatchBuffers {
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+    // - malformed input is replaced, as InputStreamReader does for a single file
+    private final CharsetDecoder decoder = UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharsetEncoder encoder = UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private CharBuffer chars = CharBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private final StringWriter json = new StringWriter(INITIAL_BUFFER_BYTES);
+    private final StringBuilder errors = new StringBuilder();
+    // after the buffers they write to
+    private final BatchJsonWriter jsonWriter = new BatchJsonWriter();
+    private final BatchErrorLogger errorLogger = new BatchErrorLogger();
+
+    // - the whole file, valid until the next read
+    Reader read(Path csvFile) {
+        readFully(csvFile);
+
+        // utf-8 never decodes to more chars than it has bytes
+        if (chars.capacity() < bytes.remaining()) {
+            chars = CharBuffer.allocate(bytes.remaining());
+        }
+        chars.clear();
+        decoder.reset();
+        decoder.decode(bytes, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        return new CharArrayReader(chars.array(), 0, chars.limit());
+    }
+
+    // - the whole file undecoded, for parsers that decode utf-8 themselves, valid until the next read
+    InputStream readBytes(Path csvFile) {
+        readFully(csvFile);
+        return new ByteArrayInputStream(bytes.array(), 0, bytes.limit());
+    }
+
+    // - the bytes of the last read, hashed from memory rather than read again
+    void hashRead(ContentCache.Probe probe) {
+        probe.hash(bytes.array(), 0, bytes.limit());
+    }
+
+    private void readFully(Path csvFile) {
+        try (FileChannel channel = FileChannel.open(csvFile, READ)) {
+            bytes.clear();
+            while (channel.read(bytes) >= 0) {
+                if (!bytes.hasRemaining()) {
+                    bytes = grow(bytes);
+                }
+            }
+            bytes.flip();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - valid until the next call, close it before converting the next file
+    OutputWriter jsonWriter(Path outputFile) {
+        deleteIfExists(outputFile);
+        json.getBuffer().setLength(0);
+        jsonWriter.writeTo(outputFile);
+        return jsonWriter;
+    }
+
+    // - valid until the next call, close it before converting the next file
+    ErrorLogger errorLogger(String errorFilePath) {
+        Path errorFile = Paths.get(errorFilePath);
+        deleteIfExists(errorFile);
+        errors.setLength(0);
+        errorLogger.writeTo(errorFile);
+        return errorLogger;
+    }
+
+    private void write(Path file, CharSequence content) throws IOException {
+        CharBuffer in = CharBuffer.wrap(content);
+        bytes.clear();
+        encoder.reset();
+        for (CoderResult result = encoder.encode(in, bytes, true);
+             result.isOverflow();
+             result = encoder.encode(in, bytes, true)) {
+            bytes = grow(bytes);
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            bytes = grow(bytes);
+        }
+        bytes.flip();
+        try (FileChannel channel = FileChannel.open(file, CREATE_NEW, WRITE)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    // - ---------------------------------------
+    // - json collected in json, written to the current output file on close
+    // - ---------------------------------------
+    private class BatchJsonWriter extends JsonOutputWriter {
+        private Path outputFile;
+
+        private BatchJsonWriter() {
+            super(json, "batch");
+        }
+
+        private void writeTo(Path outputFile) {
+            this.outputFile = outputFile;
+            reset(outputFile.getFileName().toString());
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            if (json.getBuffer().length() > 0) {
+                write(outputFile, json.getBuffer());
+            }
+        }
+    }
+
+    // - ---------------------------------------
+    // - error lines collected in errors, written to the current error file on close
+    // - ---------------------------------------
+    private class BatchErrorLogger implements ErrorLogger {
+        private Path errorFile;
+
+        private void writeTo(Path errorFile) {
+            this.errorFile = errorFile;
+        }
+
+        @Override
+        public void logError(Integer rowNum, String errorMessage) {
+            if (errors.length() == 0) {
+                errors.append(CsvErrorLogger.HEADER_LINE);
+            }
+            errors.append(CsvErrorLogger.errorLine(rowNum, errorMessage));
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (errors.length() > 0) {
+                write(errorFile, errors);
+            }
+        }
+    }
+
+    // - keeps what was put so far, ready for more
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        return grown.put(buffer);
+    }
+
+    private static void deleteIfExists(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
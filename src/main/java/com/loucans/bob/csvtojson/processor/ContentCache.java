@@ -0,0 +1,451 @@
+package com.loucans.bob.csvtojson.processor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.stream.Collectors.toList;
+
+// - --------------------------------------------------
+// - converted outputs kept by the content of their input, so a file sent again, under
+//   any name, is restored from the cache instead of converted again
+// - an entry is a directory named by the sha-256 of the processor settings and the
+//   file's bytes, holding the json, the error file and their counts
+// - the hash is taken as the conversion reads the file, not in a pass of its own - to
+//   know before converting whether a file may be a hit, entries are also indexed by a
+//   prekey, the size and a hash of the first block: only a file whose prekey is known
+//   is read once to hash it, and converted after all in the rare case where size and
+//   first block match but the rest does not - files of one block are hashed up front
+// - outputs are hard-linked into and out of the cache, copied where links are not
+//   supported - outputs must not be modified in place once written
+// - at most maxBytes on disk, least recently used entries are evicted first - use is
+//   kept in the entry file's modified time, so the order survives a restart
+// - shared by concurrent jobs - an entry is written to a temp directory and renamed
+//   into place, a job whose entry is evicted under it converts the file
+// - --------------------------------------------------
+public class ContentCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentCache.class);
+
+    // - bumped when the json or error format changes, old entries then never hit
+    private static final String FORMAT = "csvtojson-cache-1";
+    private static final int HEAD_BYTES = 4 * 1024;
+
+    private static final String JSON_FILE = "json";
+    private static final String ERROR_FILE = "errors";
+    private static final String ENTRY_FILE = "entry.properties";
+    private static final String TEMP_PREFIX = "tmp-";
+
+    private final Path cacheDir;
+    private final long maxBytes;
+
+    // - access ordered, the least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Set<String>> keysByPrekey = new HashMap<>();
+    private long bytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ContentCache(Path cacheDir, long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("cache size must be at least 1 byte");
+        }
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        try {
+            Files.createDirectories(cacheDir);
+            load();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - ---------------------------------------
+    // - looks a file up by its prekey, hashing it only when the prekey is known
+    // - settings are whatever changes the outputs of a conversion, part of every key
+    // - ---------------------------------------
+    public Probe probe(Path csvFile, String settings) {
+        try {
+            long size = Files.size(csvFile);
+            byte[] head;
+            try (InputStream in = Files.newInputStream(csvFile)) {
+                head = in.readNBytes(HEAD_BYTES);
+            }
+            MessageDigest prekeyDigest = digest(settings);
+            prekeyDigest.update(Long.toString(size).getBytes(UTF_8));
+            prekeyDigest.update(head);
+            Probe probe = new Probe(hex(prekeyDigest.digest()), digest(settings));
+
+            if (head.length < HEAD_BYTES) {
+                // the whole file
+                probe.hash(head, 0, head.length);
+            } else if (hasPrekey(probe.prekey)) {
+                // likely sent before, read once for the hash and not converted on a hit
+                try (InputStream in = Files.newInputStream(csvFile)) {
+                    byte[] block = new byte[64 * 1024];
+                    for (int read = in.read(block); read >= 0; read = in.read(block)) {
+                        probe.digest.update(block, 0, read);
+                    }
+                }
+                probe.key = hex(probe.digest.digest());
+            }
+            return probe;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getEntries() {
+        return entries.size();
+    }
+
+    private synchronized boolean hasPrekey(String prekey) {
+        return keysByPrekey.containsKey(prekey);
+    }
+
+    // - null when not cached, touches the entry otherwise
+    private synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    // - an entry another job stored meanwhile wins, the temp directory is dropped
+    private void add(String key, Path tempDir, Entry entry) throws IOException {
+        synchronized (this) {
+            if (!entries.containsKey(key)) {
+                Files.move(tempDir, cacheDir.resolve(key), ATOMIC_MOVE);
+                put(key, entry);
+                evict();
+                return;
+            }
+        }
+        deleteEntryDir(tempDir);
+    }
+
+    private void put(String key, Entry entry) {
+        entries.put(key, entry);
+        keysByPrekey.computeIfAbsent(entry.prekey, prekey -> new HashSet<>()).add(key);
+        bytes += entry.bytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            eldest.remove();
+            Set<String> keys = keysByPrekey.get(evicted.getValue().prekey);
+            keys.remove(evicted.getKey());
+            if (keys.isEmpty()) {
+                keysByPrekey.remove(evicted.getValue().prekey);
+            }
+            bytes -= evicted.getValue().bytes;
+            try {
+                deleteEntryDir(cacheDir.resolve(evicted.getKey()));
+            } catch (IOException e) {
+                LOGGER.warn("unable to delete evicted cache entry: [{}], error: [{}]", evicted.getKey(), e.getMessage());
+            }
+            LOGGER.debug("evicted cache entry: [{}], bytes: [{}]", evicted.getKey(), evicted.getValue().bytes);
+        }
+    }
+
+    // - entries in the order they were last used, temp directories of an interrupted store dropped
+    private void load() throws IOException {
+        List<Path> dirs;
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            dirs = files.filter(Files::isDirectory).collect(toList());
+        }
+        List<Path> entryDirs = new ArrayList<>();
+        for (Path dir : dirs) {
+            if (dir.getFileName().toString().startsWith(TEMP_PREFIX) || !Files.exists(dir.resolve(ENTRY_FILE))) {
+                deleteEntryDir(dir);
+            } else {
+                entryDirs.add(dir);
+            }
+        }
+        entryDirs.sort(Comparator.comparing(dir -> lastUsed(dir)));
+        for (Path dir : entryDirs) {
+            try {
+                put(dir.getFileName().toString(), Entry.load(dir));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("dropping unreadable cache entry: [{}], error: [{}]", dir, e.getMessage());
+                deleteEntryDir(dir);
+            }
+        }
+        evict();
+        LOGGER.info("loaded content cache: [{}], entries: [{}], bytes: [{}]", cacheDir, entries.size(), bytes);
+    }
+
+    private static FileTime lastUsed(Path entryDir) {
+        try {
+            return Files.getLastModifiedTime(entryDir.resolve(ENTRY_FILE));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - the files of an entry, and the entry itself
+    private static void deleteEntryDir(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.collect(toList())) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    // - a hard link where the file system has them, a copy otherwise
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(source, target);
+        }
+    }
+
+    private static MessageDigest digest(String settings) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((FORMAT + "\n" + settings + "\n").getBytes(UTF_8));
+            return digest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String hex(byte[] hash) {
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    // - ---------------------------------------
+    // - one file on its way through the cache - restore it, or hash it while it is
+    //   converted with hashing or hash, then store its outputs
+    // - not thread safe, one per file
+    // - ---------------------------------------
+    public class Probe {
+        private final String prekey;
+        private final MessageDigest digest;
+        // known once the whole file has been hashed
+        private String key = null;
+        private HashingInputStream stream = null;
+
+        private Probe(String prekey, MessageDigest digest) {
+            this.prekey = prekey;
+            this.digest = digest;
+        }
+
+        // - the outputs copied into place and their counts, null on a miss
+        public ConversionStats restore(Path outputFile, Path errorFile) {
+            Entry entry = key == null ? null : get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            Path entryDir = cacheDir.resolve(key);
+            try {
+                Files.deleteIfExists(outputFile);
+                Files.deleteIfExists(errorFile);
+                if (entry.json) {
+                    linkOrCopy(entryDir.resolve(JSON_FILE), outputFile);
+                }
+                if (entry.errors) {
+                    linkOrCopy(entryDir.resolve(ERROR_FILE), errorFile);
+                }
+                Files.setLastModifiedTime(entryDir.resolve(ENTRY_FILE), FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (NoSuchFileException e) {
+                // evicted meanwhile, the conversion replaces whatever was restored
+                LOGGER.debug("cache entry evicted while restoring: [{}]", key);
+                misses.incrementAndGet();
+                return null;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            hits.incrementAndGet();
+            LOGGER.debug("restored from cache: [{}], entry: [{}]", outputFile, key);
+            return new ConversionStats(entry.rowsWritten, entry.errorCount);
+        }
+
+        // - the stream the conversion reads, hashed unless the hash is known already
+        public InputStream hashing(InputStream in) {
+            if (key != null) {
+                return in;
+            }
+            stream = new HashingInputStream(in, digest);
+            return stream;
+        }
+
+        // - the whole file at once, for callers that read it into memory
+        public void hash(byte[] content, int offset, int length) {
+            if (key == null) {
+                digest.update(content, offset, length);
+                key = hex(digest.digest());
+            }
+        }
+
+        // - ---------------------------------------
+        // - keeps the outputs of a finished conversion - not for a quarantined file, or
+        //   one the conversion did not read to its end, whose hash is incomplete
+        // - ---------------------------------------
+        public void store(Path outputFile, Path errorFile, ConversionStats stats) {
+            if (stats.isQuarantined()) {
+                return;
+            }
+            if (key == null && stream != null && stream.finished) {
+                key = hex(digest.digest());
+            }
+            if (key == null) {
+                LOGGER.debug("not cached, file not read to its end: [{}]", outputFile);
+                return;
+            }
+            if (get(key) != null) {
+                return;
+            }
+            Path tempDir = cacheDir.resolve(TEMP_PREFIX + UUID.randomUUID());
+            try {
+                Files.createDirectory(tempDir);
+                Entry entry = new Entry(prekey, stats.getRowsWritten(), stats.getErrors(),
+                        Files.exists(outputFile), Files.exists(errorFile));
+                if (entry.json) {
+                    linkOrCopy(outputFile, tempDir.resolve(JSON_FILE));
+                    entry.bytes += Files.size(outputFile);
+                }
+                if (entry.errors) {
+                    linkOrCopy(errorFile, tempDir.resolve(ERROR_FILE));
+                    entry.bytes += Files.size(errorFile);
+                }
+                if (entry.bytes > maxBytes) {
+                    LOGGER.debug("not cached, larger than the cache: [{}], bytes: [{}]", outputFile, entry.bytes);
+                    deleteEntryDir(tempDir);
+                    return;
+                }
+                entry.save(tempDir);
+                add(key, tempDir, entry);
+            } catch (IOException e) {
+                // the conversion itself succeeded, only later copies miss the cache
+                LOGGER.warn("unable to cache outputs: [{}], error: [{}]", outputFile, e.getMessage());
+                try {
+                    deleteEntryDir(tempDir);
+                } catch (IOException ignored) {
+                    // left for the next load
+                }
+            }
+        }
+
+        // for tests
+        String getKey() {
+            return key;
+        }
+    }
+
+    // - digest of everything read, finished once the end of the stream was reached
+    private static class HashingInputStream extends DigestInputStream {
+        private boolean finished = false;
+
+        private HashingInputStream(InputStream in, MessageDigest digest) {
+            super(in, digest);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            finished |= b < 0;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            finished |= read < 0;
+            return read;
+        }
+    }
+
+    // - ---------------------------------------
+    // - what a hit restores besides the files, kept in the entry's properties file
+    // - ---------------------------------------
+    private static class Entry {
+        private final String prekey;
+        private final int rowsWritten;
+        private final int errorCount;
+        private final boolean json;
+        private final boolean errors;
+        private long bytes = 0;
+
+        private Entry(String prekey, int rowsWritten, int errorCount, boolean json, boolean errors) {
+            this.prekey = prekey;
+            this.rowsWritten = rowsWritten;
+            this.errorCount = errorCount;
+            this.json = json;
+            this.errors = errors;
+        }
+
+        private static Entry load(Path entryDir) throws IOException {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(entryDir.resolve(ENTRY_FILE), UTF_8)) {
+                properties.load(reader);
+            }
+            Entry entry = new Entry(
+                    properties.getProperty("prekey"),
+                    Integer.parseInt(properties.getProperty("rowsWritten")),
+                    Integer.parseInt(properties.getProperty("errors")),
+                    Files.exists(entryDir.resolve(JSON_FILE)),
+                    Files.exists(entryDir.resolve(ERROR_FILE)));
+            entry.bytes = (entry.json ? Files.size(entryDir.resolve(JSON_FILE)) : 0)
+                    + (entry.errors ? Files.size(entryDir.resolve(ERROR_FILE)) : 0);
+            return entry;
+        }
+
+        private void save(Path entryDir) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("prekey", prekey);
+            properties.setProperty("rowsWritten", Integer.toString(rowsWritten));
+            properties.setProperty("errors", Integer.toString(errorCount));
+            try (Writer writer = Files.newBufferedWriter(entryDir.resolve(ENTRY_FILE), UTF_8)) {
+                properties.store(writer, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.loucans.bob.csvtojson.processor;
+
+// - --------------------------------------------------
+// - counts from converting one csv source
+// - --------------------------------------------------
+public class ConversionStats {
+    private final int rowsWritten;
+    private final int errors;
+    private final boolean quarantined;
+
+    public ConversionStats(int rowsWritten, int errors) {
+        this(rowsWritten, errors, false);
+    }
+
+    public ConversionStats(int rowsWritten, int errors, boolean quarantined) {
+        this.rowsWritten = rowsWritten;
+        this.errors = errors;
+        this.quarantined = quarantined;
+    }
+
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    // the file was judged bad as a whole, no json was kept
+    public boolean isQuarantined() {
+        return quarantined;
+    }
+}
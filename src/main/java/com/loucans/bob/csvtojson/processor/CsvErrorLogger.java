@@ -10,14 +10,26 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.nio.file.StandardOpenOption.APPEND;
 
 public class CsvErrorLogger implements ErrorLogger {
+    // - shared with BatchBuffers, which writes the same format in one go
+    static final String HEADER_LINE = "\"LINE_NUM\",\"ERROR_MSG\"\r\n";
+
     private final Path errorFile;
     private boolean fileCreated = false;
 
     public CsvErrorLogger(String errorFilePath) {
+        this(errorFilePath, false);
+    }
+
+    // - append keeps an existing error file and adds to it, for files converted in several passes
+    public CsvErrorLogger(String errorFilePath, boolean append) {
         this.errorFile =
                 Paths.get(errorFilePath);
         try {
-            Files.deleteIfExists(errorFile);
+            if (append) {
+                fileCreated = Files.exists(errorFile);
+            } else {
+                Files.deleteIfExists(errorFile);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -28,16 +40,19 @@ public class CsvErrorLogger implements ErrorLogger {
         try {
             if (!fileCreated) {
                 Files.createFile(errorFile);
-                Files.writeString(
-                        errorFile, "\"LINE_NUM\",\"ERROR_MSG\"\r\n", UTF_8, APPEND);
+                Files.writeString(errorFile, HEADER_LINE, UTF_8, APPEND);
                 fileCreated = true;
             }
-            Files.writeString(errorFile, format("\"%d\",\"%s\"\r\n", rowNum, errorMessage), UTF_8, APPEND);
+            Files.writeString(errorFile, errorLine(rowNum, errorMessage), UTF_8, APPEND);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    static String errorLine(Integer rowNum, String errorMessage) {
+        return format("\"%d\",\"%s\"\r\n", rowNum, errorMessage);
+    }
+
     @Override
     public void close() throws IOException {
         // do nothing
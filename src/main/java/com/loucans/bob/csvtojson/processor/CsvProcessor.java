@@ -1,22 +1,37 @@
 package com.loucans.bob.csvtojson.processor;
 
-import com.loucans.bob.csvtojson.exception.InvalidDataRowException;
-import com.loucans.bob.csvtojson.exception.InvalidDataValueException;
-import com.loucans.bob.csvtojson.model.CsvRow;
+import com.loucans.bob.csvtojson.durability.Durability;
+import com.loucans.bob.csvtojson.durability.FileSyncer;
+import com.loucans.bob.csvtojson.events.FileProcessedEvent;
+import com.loucans.bob.csvtojson.events.StageTimer;
+import com.loucans.bob.csvtojson.exception.CsvToJsonException;
+import com.loucans.bob.csvtojson.exception.ProcessingAbortedException;
 import com.loucans.bob.csvtojson.parser.CommonsCsvParser;
 import com.loucans.bob.csvtojson.parser.CsvParser;
 import com.loucans.bob.csvtojson.parser.CsvRowCallbackErrorHandler;
 import com.loucans.bob.csvtojson.parser.CsvRowCallbackHandler;
-import org.apache.commons.lang3.StringUtils;
+import com.loucans.bob.csvtojson.parser.StructuralCsvParser;
+import com.loucans.bob.csvtojson.pipeline.CsvPipeline;
+import com.loucans.bob.csvtojson.scheduler.MemoryBudget;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.StringUtils.*;
 
 // - --------------------------------------------------
@@ -28,110 +43,652 @@ import static org.apache.commons.lang3.StringUtils.*;
 public class CsvProcessor {
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvProcessor.class);
 
+    public static final int DEFAULT_MAX_FIELD_LENGTH = 64 * 1024;
+
+    // quarantined input files are moved here, under the feed's error directory
+    public static final String QUARANTINE_DIR = "quarantine";
+
+    // - reader and writer buffers and their charset coders, per job
+    private static final long FIXED_BUFFER_BYTES = 64 * 1024;
+
+    private final CsvRowValidator validator = new CsvRowValidator();
+
+    private final int pipelineWorkers;
+    private final int pipelineBatchSize;
+    private final int pipelineBatchesPerWorker;
+    private final int maxFieldLength;
+    private final MemoryBudget memoryBudget;
+    private final int preflightSampleRows;
+    private final double preflightMaxErrorRate;
+    private final double abortErrorRate;
+    private final int abortMinRows;
+    private final int maxErrorLines;
+    private final boolean sortById;
+    private final long sortRunBytes;
+    private final FileSyncer fileSyncer;
+    private final boolean structuralParser;
+    private final boolean validateOnly;
+    private final int validationSampleRows;
+    private final ContentCache contentCache;
+    private final String cacheSettings;
+
+    public CsvProcessor() {
+        this(builder());
+    }
+
+    private CsvProcessor(Builder builder) {
+        this.pipelineWorkers = builder.pipelineWorkers;
+        this.pipelineBatchSize = builder.pipelineBatchSize;
+        this.pipelineBatchesPerWorker = builder.pipelineBatchesPerWorker;
+        this.maxFieldLength = builder.maxFieldLength;
+        this.memoryBudget = builder.memoryBudget;
+        this.preflightSampleRows = builder.preflightSampleRows;
+        this.preflightMaxErrorRate = builder.preflightMaxErrorRate;
+        this.abortErrorRate = builder.abortErrorRate;
+        this.abortMinRows = builder.abortMinRows;
+        this.maxErrorLines = builder.maxErrorLines;
+        this.sortById = builder.sortById;
+        this.sortRunBytes = builder.sortRunBytes;
+        this.fileSyncer = nonNull(builder.fileSyncer) ? builder.fileSyncer : new FileSyncer(builder.durability);
+        this.structuralParser = builder.structuralParser;
+        this.validateOnly = builder.validateOnly;
+        this.validationSampleRows = builder.validationSampleRows;
+        this.contentCache = builder.contentCache;
+        // - every setting that changes what a file converts to, so processors set up
+        //   differently never share entries
+        this.cacheSettings = format("maxFieldLength=%d,preflightSampleRows=%d,preflightMaxErrorRate=%s,"
+                        + "abortErrorRate=%s,abortMinRows=%d,maxErrorLines=%d,sortById=%b",
+                maxFieldLength, preflightSampleRows, preflightMaxErrorRate,
+                abortErrorRate, abortMinRows, maxErrorLines, sortById);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
     public void processCsvFile(String csvFileName,
                                String inputPath,
                                String outputPath,
                                String errorPath) {
-        try (CsvParser parser =
-                     new CommonsCsvParser(inputPath + "/" + csvFileName);
-             OutputWriter outputWriter =
-                     new JsonOutputWriter(outputPath + "/" + substring(csvFileName, 0, lastIndexOf(csvFileName, ".")) + ".json");
-             ErrorLogger errorLogger =
-                     new CsvErrorLogger(errorPath + "/" + csvFileName)) {
+        processCsvFile(csvFileName, inputPath, outputPath, errorPath, null);
+    }
 
-            AtomicInteger rowsProcessed = new AtomicInteger(0);
+    // - ---------------------------------------
+    // - converts a batch of small files from one directory on the calling thread, each to
+    //   its own json and error file and deleted or quarantined as processCsvFile would
+    // - the files share one set of read and write buffers, see BatchBuffers
+    // - a file that fails is logged and the rest of the batch still converted
+    // - ---------------------------------------
+    public void processCsvFiles(List<String> csvFileNames,
+                                String inputPath,
+                                String outputPath,
+                                String errorPath) {
+        BatchBuffers buffers = new BatchBuffers();
+        for (String csvFileName : csvFileNames) {
+            try {
+                processCsvFile(csvFileName, inputPath, outputPath, errorPath, buffers);
+            } catch (RuntimeException e) {
+                LOGGER.error("unable to process csv file in batch, filename: [{}]", csvFileName, e);
+            }
+        }
+    }
 
-            CsvRowCallbackHandler rowHandler = (rowNum, csvRow) -> {
-                if (isHeaderRow(rowNum)) {
-                    assertValidHeaderRow(csvRow);
-                    rowsProcessed.incrementAndGet();
-                } else {
-                    assertValidDataRow(csvRow);
-                    outputWriter.writeRecord(csvRow);
-                    LOGGER.debug("processed row: [{}]", csvRow);
-                    rowsProcessed.incrementAndGet();
+    private void processCsvFile(String csvFileName,
+                                String inputPath,
+                                String outputPath,
+                                String errorPath,
+                                BatchBuffers buffers) {
+        Path csvFile = Paths.get(inputPath + "/" + csvFileName);
+        if (validateOnly) {
+            // a dry run - nothing is written but the report, the input stays where it is
+            validateCsvFile(csvFile, errorPath);
+            return;
+        }
+        MemoryBudget.Reservation reservation = reserveMemory(csvFile);
+        try {
+            FileProcessedEvent event = FileProcessedEvent.started(csvFile, pipelineWorkers);
+            boolean quarantined = false;
+            try {
+                ConversionStats stats = convertCsvFile(csvFile, outputPath, errorPath, buffers);
+                quarantined = stats.isQuarantined();
+                FileProcessedEvent.converted(event, stats.getRowsWritten(), stats.getErrors());
+            } finally {
+                try {
+                    // the outputs have to be on disk before the only other copy is gone
+                    fileSyncer.sync(outputFileFor(outputPath, csvFileName), Paths.get(errorPath, csvFileName));
+                    if (quarantined) {
+                        // kept for whoever investigates the extract
+                        Path quarantineDir = Files.createDirectories(Paths.get(errorPath, QUARANTINE_DIR));
+                        Files.move(csvFile, quarantineDir.resolve(csvFile.getFileName()), REPLACE_EXISTING);
+                        LOGGER.warn("csv file quarantined, filename: [{}]", quarantineDir.resolve(csvFile.getFileName()));
+                    } else {
+                        Files.delete(csvFile);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    FileProcessedEvent.finished(event);
                 }
-            };
+            }
+        } finally {
+            if (nonNull(reservation)) {
+                reservation.close();
+            }
+        }
+    }
 
-            CsvRowCallbackErrorHandler errorHandler = (rowNum, error) -> {
-                LOGGER.error(
-                        "row failed, value: [{}], error: [{}]", error.getValue(), error.getMessage());
-                errorLogger.logError(
-                        rowNum, error.getMessage().replace("\"", "\"\""));
-                if (isHeaderRow(rowNum)) {
-                    // abort for processing errors on header row
-                    throw error;
+    // - ---------------------------------------
+    // - converts one file into outputPath and errorPath, leaving the csv file in place
+    // - a quarantined file leaves no json, only a summary in its error file
+    // - ---------------------------------------
+    public ConversionStats convertCsvFile(Path csvFile,
+                                          String outputPath,
+                                          String errorPath) {
+        return convertCsvFile(csvFile, outputPath, errorPath, null);
+    }
+
+    // - null buffers reads and writes the files directly
+    private ConversionStats convertCsvFile(Path csvFile,
+                                           String outputPath,
+                                           String errorPath,
+                                           BatchBuffers buffers) {
+        String csvFileName = csvFile.getFileName().toString();
+        String errorFile = errorPath + "/" + csvFileName;
+        Path outputFile = outputFileFor(outputPath, csvFileName);
+
+        ContentCache.Probe probe = null;
+        if (nonNull(contentCache)) {
+            probe = contentCache.probe(csvFile, cacheSettings);
+            ConversionStats cached = probe.restore(outputFile, Paths.get(errorFile));
+            if (nonNull(cached)) {
+                return cached;
+            }
+        }
+
+        if (preflightSampleRows > 0) {
+            String verdict = preflight(csvFile);
+            if (nonNull(verdict)) {
+                try (ErrorLogger errorLogger = openErrorLogger(errorFile, buffers)) {
+                    errorLogger.logError(0, verdict.replace("\"", "\"\""));
+                    Files.deleteIfExists(outputFile);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
                 }
-            };
+                return new ConversionStats(0, 1, true);
+            }
+        }
 
-            parser.parse(rowHandler, errorHandler);
+        ConversionStats stats;
+        try (CsvParser parser =
+                     openParser(csvFile, buffers, probe);
+             OutputWriter outputWriter =
+                     sortedById(openOutputWriter(outputFile, buffers), outputFile.getParent());
+             ErrorLogger errorLogger =
+                     openErrorLogger(errorFile, buffers)) {
+
+            stats = convert(parser, outputWriter, errorLogger, csvFileName);
 
-            if (rowsProcessed.intValue() == 0) {
-                errorLogger.logError(0, "\"empty file\"");
-            } else if (rowsProcessed.intValue() == 1) {
-                outputWriter.writeRecord(null);
+        } catch (ProcessingAbortedException e) {
+            // the summary is already in the error file, partial json would look like a complete conversion
+            try {
+                Files.deleteIfExists(outputFile);
+            } catch (IOException ioe) {
+                throw new RuntimeException(ioe);
             }
+            return new ConversionStats(0, e.getErrors(), true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
 
+        if (nonNull(probe)) {
+            // the outputs are closed, so complete
+            probe.store(outputFile, Paths.get(errorFile), stats);
+        }
+        return stats;
+    }
+
+    // - ---------------------------------------
+    // - validates one file without converting it and writes the report to
+    //   <errorPath>/<name>.validation.json - no json or error file, the csv file stays
+    // - ---------------------------------------
+    public ValidationReport validateCsvFile(Path csvFile, String errorPath) {
+        ValidationReport report = validateCsvFile(csvFile);
+        String csvFileName = csvFile.getFileName().toString();
+        Path reportFile = Paths.get(errorPath,
+                substring(csvFileName, 0, lastIndexOf(csvFileName, ".")) + ".validation.json");
+        try {
+            Files.writeString(reportFile, report.toJson(), UTF_8);
         } catch (IOException e) {
             throw new RuntimeException(e);
-        } finally {
-            try {
-                Files.delete(Paths.get(inputPath + "/" + csvFileName));
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+        }
+        LOGGER.info("validated csv file: [{}], rows: [{}], failed rows: [{}], errors: [{}]",
+                csvFile, report.getRows(), report.getFailedRows(), report.getErrorCounts());
+        return report;
+    }
+
+    // - ---------------------------------------
+    // - parse and validate only, on the calling thread - nothing is serialized, logged
+    //   per row or written, so a file is checked about as fast as it can be parsed
+    // - ---------------------------------------
+    public ValidationReport validateCsvFile(Path csvFile) {
+        ValidationReport report = new ValidationReport(csvFile.getFileName().toString(), validationSampleRows);
+        AtomicBoolean headerSeen = new AtomicBoolean(false);
+        try (CsvParser parser = openParser(csvFile, null, null)) {
+            parser.parse(
+                    (rowNum, csvRow) -> {
+                        if (validator.isHeaderRow(rowNum)) {
+                            headerSeen.set(true);
+                            validator.assertValidHeaderRow(csvRow);
+                            return;
+                        }
+                        try {
+                            validator.assertValidDataRow(csvRow);
+                            report.passed();
+                        } catch (CsvToJsonException e) {
+                            report.failed(e.getMessage(), rowNum, e.getValue(), csvRow.snapshot().getRowData());
+                        }
+                    },
+                    (rowNum, error) -> {
+                        if (validator.isHeaderRow(rowNum)) {
+                            report.fileError(error.getMessage(), rowNum, error.getValue(), null);
+                            // ends the file, as it ends a conversion
+                            throw error;
+                        }
+                        // a record that could not be parsed, or cut at a field over maxFieldLength
+                        report.failed(error.getMessage(), rowNum, null, null);
+                    });
+        } catch (CsvToJsonException e) {
+            // invalid header, already in the report
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (!headerSeen.get() && !report.hasErrors()) {
+            report.fileError("empty file", 0, null, null);
+        }
+        return report;
+    }
+
+    private static Path outputFileFor(String outputPath, String csvFileName) {
+        return Paths.get(outputPath, substring(csvFileName, 0, lastIndexOf(csvFileName, ".")) + ".json");
+    }
+
+    // - with a probe the file is hashed for the cache as the parser reads it, or from
+    //   memory once buffers read it
+    private CsvParser openParser(Path csvFile, BatchBuffers buffers, ContentCache.Probe probe) {
+        String source = csvFile.getFileName().toString();
+        if (structuralParser) {
+            InputStream in = isNull(buffers) ? hashing(openFile(csvFile), probe) : buffers.readBytes(csvFile);
+            hashRead(buffers, probe);
+            return new StructuralCsvParser(in, source).reusingRows().maxFieldLength(maxFieldLength);
+        }
+        Reader reader = isNull(buffers)
+                ? new InputStreamReader(hashing(openFile(csvFile), probe), UTF_8)
+                : buffers.read(csvFile);
+        hashRead(buffers, probe);
+        return new CommonsCsvParser(reader, source).reusingRows().maxFieldLength(maxFieldLength);
+    }
+
+    private static InputStream openFile(Path csvFile) {
+        try {
+            return Files.newInputStream(csvFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static InputStream hashing(InputStream in, ContentCache.Probe probe) {
+        return isNull(probe) ? in : probe.hashing(in);
+    }
+
+    private static void hashRead(BatchBuffers buffers, ContentCache.Probe probe) {
+        if (nonNull(buffers) && nonNull(probe)) {
+            buffers.hashRead(probe);
+        }
+    }
+
+    private static OutputWriter openOutputWriter(Path outputFile, BatchBuffers buffers) {
+        return isNull(buffers) ? new JsonOutputWriter(outputFile.toString()) : buffers.jsonWriter(outputFile);
+    }
+
+    private static ErrorLogger openErrorLogger(String errorFile, BatchBuffers buffers) {
+        return isNull(buffers) ? new CsvErrorLogger(errorFile) : buffers.errorLogger(errorFile);
+    }
+
+    // - sort runs spill next to the output, the temp directory may be smaller than the files
+    private OutputWriter sortedById(OutputWriter outputWriter, Path tempDir) {
+        return sortById ? new SortingOutputWriter(outputWriter, tempDir, sortRunBytes) : outputWriter;
+    }
+
+    // - null when the sample passes, otherwise why the file should be quarantined
+    private String preflight(Path csvFile) {
+        PreflightSampler.Result sample =
+                new PreflightSampler(validator, preflightSampleRows, maxFieldLength).sample(csvFile);
+        LOGGER.debug("preflight sample, filename: [{}], sampled: [{}], failed: [{}]",
+                csvFile, sample.getSampled(), sample.getFailed());
+
+        if (nonNull(sample.getHeaderError())) {
+            return "quarantined: " + sample.getHeaderError();
+        }
+        if (sample.getErrorRate() > preflightMaxErrorRate) {
+            return format("quarantined: %d of %d sampled rows failed, error rate %.2f over %.2f, first error %s",
+                    sample.getFailed(), sample.getSampled(), sample.getErrorRate(), preflightMaxErrorRate,
+                    sample.getFirstError());
+        }
+        return null;
+    }
+
+    public int getMaxFieldLength() {
+        return maxFieldLength;
+    }
+
+    public FileSyncer getFileSyncer() {
+        return fileSyncer;
+    }
+
+    // - ---------------------------------------
+    // - heap a job on a file of this size may hold at once - rows in flight are bounded by
+    //   the pipeline slots and field length, and by the file itself for small files
+    // - ---------------------------------------
+    public long estimateMemoryBytes(long fileSizeBytes) {
+        // utf-16 in memory, once as csv and once as json
+        long contentBytes = Math.max(0, fileSizeBytes) * 4;
+        if (maxFieldLength <= 0) {
+            return FIXED_BUFFER_BYTES + contentBytes + sortBytes(fileSizeBytes);
+        }
+        long rowsInFlight = pipelineWorkers > 0
+                ? (long) pipelineWorkers * pipelineBatchesPerWorker * pipelineBatchSize
+                : 1;
+        // plus the field the parser is filling
+        long rowBytes = rowsInFlight * CsvRowValidator.COLUMNS * maxFieldLength * 4 + maxFieldLength * 2L;
+        return FIXED_BUFFER_BYTES + Math.min(contentBytes, rowBytes) + sortBytes(fileSizeBytes);
+    }
+
+    // - one run of json, and the merge buffers once it spills
+    private long sortBytes(long fileSizeBytes) {
+        return sortById ? Math.min(Math.max(0, fileSizeBytes) * 4, sortRunBytes) : 0;
+    }
+
+    // - null without a budget
+    private MemoryBudget.Reservation reserveMemory(Path csvFile) {
+        if (memoryBudget == null) {
+            return null;
+        }
+        long sizeBytes;
+        try {
+            sizeBytes = Files.size(csvFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        long estimate = estimateMemoryBytes(sizeBytes);
+        LOGGER.debug("reserving memory, file: [{}], bytes: [{}], reserved: [{}], waiting jobs: [{}]",
+                csvFile, estimate, memoryBudget.getReservedBytes(), memoryBudget.getWaitingJobs());
+        try {
+            return memoryBudget.reserve(estimate);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - ---------------------------------------
+    // - converts everything the parser produces, independent of where rows come from
+    //   or where json and errors go - the caller owns and closes all three
+    // - ---------------------------------------
+    public ConversionStats convert(CsvParser parser,
+                                   OutputWriter outputWriter,
+                                   ErrorLogger errorLogger) {
+        return convert(parser, outputWriter, errorLogger, "stream");
+    }
+
+    // - source only labels flight recorder events
+    public ConversionStats convert(CsvParser parser,
+                                   OutputWriter outputWriter,
+                                   ErrorLogger errorLogger,
+                                   String source) {
+        AtomicInteger rowsProcessed = new AtomicInteger(0);
+        AtomicInteger errors = new AtomicInteger(0);
+
+        CsvRowCallbackErrorHandler errorHandler = (rowNum, error) -> {
+            int errorCount = errors.incrementAndGet();
+            LOGGER.error(
+                    "row failed, value: [{}], error: [{}]", error.getValue(), error.getMessage());
+            if (maxErrorLines == 0 || errorCount <= maxErrorLines) {
+                errorLogger.logError(
+                        rowNum, error.getMessage().replace("\"", "\"\""));
             }
+            if (validator.isHeaderRow(rowNum)) {
+                // abort for processing errors on header row
+                throw error;
+            }
+            assertErrorRateBelowCeiling(rowNum, errorCount, rowsProcessed.intValue() - 1 + errorCount);
+        };
+
+        try {
+            if (pipelineWorkers > 0) {
+                processPipelined(parser, outputWriter, errorHandler, rowsProcessed, source);
+            } else {
+                processSequentially(parser, outputWriter, errorHandler, rowsProcessed, source);
+            }
+        } catch (ProcessingAbortedException e) {
+            logErrorSummary(errorLogger, errors.intValue());
+            errorLogger.logError(0, e.getMessage().replace("\"", "\"\""));
+            throw e;
         }
+        logErrorSummary(errorLogger, errors.intValue());
+
+        if (rowsProcessed.intValue() == 0) {
+            errorLogger.logError(0, "\"empty file\"");
+            errors.incrementAndGet();
+        } else if (rowsProcessed.intValue() == 1) {
+            outputWriter.writeRecord(null);
+        }
+
+        // the header counts as processed
+        return new ConversionStats(Math.max(0, rowsProcessed.intValue() - 1), errors.intValue());
     }
 
-    private boolean isHeaderRow(Integer rowNum) {
-        return rowNum == 1;
+    // - rows counts data rows seen so far, failed or not
+    private void assertErrorRateBelowCeiling(int rowNum, int errorCount, int rows) {
+        if (abortErrorRate < 1 && rows >= abortMinRows && (double) errorCount / rows > abortErrorRate) {
+            throw new ProcessingAbortedException(
+                    format("aborted at row %d: %d of %d rows failed, error rate %.2f over ceiling %.2f",
+                            rowNum, errorCount, rows, (double) errorCount / rows, abortErrorRate),
+                    errorCount);
+        }
     }
 
-    private void assertValidHeaderRow(CsvRow csvRow) {
-        if (isNull(csvRow) || isNull(csvRow.getRowData()) || csvRow.getRowData().length != 5) {
-            throw new InvalidDataRowException(
-                    "csv header row is null or does not match expected header definition", csvRow);
+    private void logErrorSummary(ErrorLogger errorLogger, int errorCount) {
+        if (maxErrorLines > 0 && errorCount > maxErrorLines) {
+            errorLogger.logError(0, format("%d more errors not listed, %d in total", errorCount - maxErrorLines, errorCount));
         }
+    }
 
-        String[] headers = {"INTERNAL_ID", "FIRST_NAME", "MIDDLE_NAME", "LAST_NAME", "PHONE_NUM"};
-        for (int i = 0; i < headers.length; i++) {
-            if (!headers[i].equals(csvRow.getRowData()[i])) {
-                throw new InvalidDataRowException(
-                        "csv header row is null or does not match expected header definition", csvRow);
+    private void processSequentially(CsvParser parser,
+                                     OutputWriter outputWriter,
+                                     CsvRowCallbackErrorHandler errorHandler,
+                                     AtomicInteger rowsProcessed,
+                                     String source) {
+        StageTimer validateTimer = new StageTimer(source, "validate");
+        CsvRowCallbackHandler rowHandler = (rowNum, csvRow) -> {
+            if (validator.isHeaderRow(rowNum)) {
+                validator.assertValidHeaderRow(csvRow);
+                rowsProcessed.incrementAndGet();
+            } else {
+                long started = validateTimer.start();
+                validator.assertValidDataRow(csvRow);
+                validateTimer.stop(started);
+                outputWriter.writeRecord(csvRow);
+                LOGGER.debug("processed row: [{}]", csvRow);
+                rowsProcessed.incrementAndGet();
             }
+        };
+
+        try {
+            parser.parse(rowHandler, errorHandler);
+        } finally {
+            validateTimer.finish();
         }
     }
 
-    private void assertValidDataRow(CsvRow csvRow) {
-        if (isNull(csvRow) || isNull(csvRow.getRowData()) || csvRow.getRowData().length != 5) {
-            throw new InvalidDataRowException(
-                    "csv data row is null or does not match expected header definition", csvRow);
+    // - ---------------------------------------
+    // - parse on this thread, validate and serialize on pipeline workers,
+    //   write on the pipeline writer thread in file order
+    // - ---------------------------------------
+    private void processPipelined(CsvParser parser,
+                                  OutputWriter outputWriter,
+                                  CsvRowCallbackErrorHandler errorHandler,
+                                  AtomicInteger rowsProcessed,
+                                  String source) {
+        new CsvPipeline(pipelineWorkers, pipelineBatchSize, pipelineBatchesPerWorker, source).run(
+                parser,
+                (rowNum, csvRow) -> {
+                    if (validator.isHeaderRow(rowNum)) {
+                        validator.assertValidHeaderRow(csvRow);
+                        return null;
+                    }
+                    validator.assertValidDataRow(csvRow);
+                    return outputWriter.serializeRecord(csvRow);
+                },
+                (rowNum, serializedRow) -> {
+                    if (nonNull(serializedRow)) {
+                        outputWriter.writeSerializedRecord(serializedRow);
+                    }
+                    rowsProcessed.incrementAndGet();
+                },
+                errorHandler);
+    }
+
+    // - ---------------------------------------
+    // - builder for processor settings, defaults match the original single threaded behaviour
+    // - ---------------------------------------
+    public static class Builder {
+        private int pipelineWorkers = 0;
+        private int pipelineBatchSize = 256;
+        private int pipelineBatchesPerWorker = 4;
+        private int maxFieldLength = DEFAULT_MAX_FIELD_LENGTH;
+        private MemoryBudget memoryBudget = null;
+        private int preflightSampleRows = 0;
+        private double preflightMaxErrorRate = 0.5;
+        private double abortErrorRate = 1;
+        private int abortMinRows = 1000;
+        private int maxErrorLines = 0;
+        private boolean sortById = false;
+        private long sortRunBytes = SortingOutputWriter.DEFAULT_RUN_BYTES;
+        private Durability durability = Durability.NONE;
+        private FileSyncer fileSyncer = null;
+        private boolean structuralParser = false;
+        private boolean validateOnly = false;
+        private int validationSampleRows = 5;
+        private ContentCache contentCache = null;
+
+        // 0 processes each file on the calling thread
+        public Builder pipelineWorkers(int pipelineWorkers) {
+            this.pipelineWorkers = pipelineWorkers;
+            return this;
+        }
+
+        public Builder pipelineBatchSize(int pipelineBatchSize) {
+            this.pipelineBatchSize = pipelineBatchSize;
+            return this;
+        }
+
+        public Builder pipelineBatchesPerWorker(int pipelineBatchesPerWorker) {
+            this.pipelineBatchesPerWorker = pipelineBatchesPerWorker;
+            return this;
+        }
+
+        // 0 for no limit
+        public Builder maxFieldLength(int maxFieldLength) {
+            this.maxFieldLength = maxFieldLength;
+            return this;
+        }
+
+        // shared by every processor that should count against it, null for no budget
+        public Builder memoryBudget(MemoryBudget memoryBudget) {
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        // validate this many rows before converting, 0 (default) converts without a pre-flight
+        public Builder preflightSampleRows(int preflightSampleRows) {
+            this.preflightSampleRows = preflightSampleRows;
+            return this;
+        }
+
+        // share of sampled rows that may fail before the file is quarantined
+        public Builder preflightMaxErrorRate(double preflightMaxErrorRate) {
+            this.preflightMaxErrorRate = preflightMaxErrorRate;
+            return this;
+        }
+
+        // share of rows that may fail while converting before the file is abandoned, 1 (default) never aborts
+        public Builder abortErrorRate(double abortErrorRate) {
+            this.abortErrorRate = abortErrorRate;
+            return this;
+        }
+
+        // rows seen before abortErrorRate applies, so a bad first row does not end a file
+        public Builder abortMinRows(int abortMinRows) {
+            this.abortMinRows = abortMinRows;
+            return this;
+        }
+
+        // error lines written per file before the rest are only counted, 0 (default) for all
+        public Builder maxErrorLines(int maxErrorLines) {
+            this.maxErrorLines = maxErrorLines;
+            return this;
+        }
+
+        // json files ordered by INTERNAL_ID, sorted externally so files may be larger than the heap
+        public Builder sortById(boolean sortById) {
+            this.sortById = sortById;
+            return this;
+        }
+
+        // records held in memory per sorted run before it is spilled to disk
+        public Builder sortRunBytes(long sortRunBytes) {
+            this.sortRunBytes = sortRunBytes;
+            return this;
+        }
+
+        // fsync outputs before their input is deleted, NONE (default) leaves it to the os
+        public Builder durability(Durability durability) {
+            this.durability = durability;
+            return this;
+        }
+
+        // shared by every processor whose files should group commit together, null (default) for one of durability's own
+        public Builder fileSyncer(FileSyncer fileSyncer) {
+            this.fileSyncer = fileSyncer;
+            return this;
         }
 
-        String[] data = csvRow.getRowData();
-        if (isEmpty(data[0]) || !data[0].matches("\\d{8}")) {
-            throw new InvalidDataValueException(
-                    "invalid INTERNAL_ID [required, length <= 8, digits only]", data[0]);
+        // parse files with StructuralCsvParser, same rows and errors as commons-csv, faster on large files
+        public Builder structuralParser(boolean structuralParser) {
+            this.structuralParser = structuralParser;
+            return this;
         }
 
-        if (isEmpty(data[1]) || data[1].length() > 15) {
-            throw new InvalidDataValueException(
-                    "invalid FIRST_NAME [required, length <= 15]", data[1]);
+        // validate files without converting them, see validateCsvFile, inputs are left in place
+        public Builder validateOnly(boolean validateOnly) {
+            this.validateOnly = validateOnly;
+            return this;
         }
 
-        if (!isEmpty(data[2]) && data[2].length() > 15) {
-            throw new InvalidDataValueException(
-                    "invalid MIDDLE_NAME [length <= 15]", data[2]);
+        // offending rows kept per failed rule in a validation report
+        public Builder validationSampleRows(int validationSampleRows) {
+            this.validationSampleRows = validationSampleRows;
+            return this;
         }
 
-        if (isEmpty(data[3]) || data[3].length() > 15) {
-            throw new InvalidDataValueException(
-                    "invalid LAST_NAME [required, length <= 15]", data[3]);
+        // restore outputs of files converted before, by content, null (default) converts every file
+        public Builder contentCache(ContentCache contentCache) {
+            this.contentCache = contentCache;
+            return this;
         }
 
-        if (isEmpty(data[4]) || !(data[4].length() == 12) || !data[4].matches("\\d{3}-\\d{3}-\\d{4}")) {
-            throw new InvalidDataValueException(
-                    "invalid PHONE_NUM [required, length = 12, format: ###-###-####]", data[4]);
+        public CsvProcessor build() {
+            return new CsvProcessor(this);
         }
     }
 }
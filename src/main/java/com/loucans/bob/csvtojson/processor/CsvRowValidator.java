@@ -0,0 +1,90 @@
+package com.loucans.bob.csvtojson.processor;
+
+import com.loucans.bob.csvtojson.exception.InvalidDataRowException;
+import com.loucans.bob.csvtojson.exception.InvalidDataValueException;
+import com.loucans.bob.csvtojson.model.CsvRow;
+
+import static java.util.Objects.isNull;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+// - --------------------------------------------------
+// - header and data row validations per requirements
+// - stateless so a single instance can be shared by pipeline workers
+// - --------------------------------------------------
+public class CsvRowValidator {
+    private static final String[] HEADERS = {"INTERNAL_ID", "FIRST_NAME", "MIDDLE_NAME", "LAST_NAME", "PHONE_NUM"};
+    static final int COLUMNS = HEADERS.length;
+
+    public boolean isHeaderRow(Integer rowNum) {
+        return rowNum == 1;
+    }
+
+    public void assertValidHeaderRow(CsvRow csvRow) {
+        if (isNull(csvRow) || csvRow.size() != 5) {
+            throw new InvalidDataRowException(
+                    "csv header row is null or does not match expected header definition", csvRow);
+        }
+
+        for (int i = 0; i < HEADERS.length; i++) {
+            if (!HEADERS[i].equals(csvRow.get(i))) {
+                throw new InvalidDataRowException(
+                        "csv header row is null or does not match expected header definition", csvRow);
+            }
+        }
+    }
+
+    public void assertValidDataRow(CsvRow csvRow) {
+        if (isNull(csvRow) || csvRow.size() != 5) {
+            throw new InvalidDataRowException(
+                    "csv data row is null or does not match expected header definition", csvRow);
+        }
+
+        String id = csvRow.get(0);
+        if (isEmpty(id) || id.length() != 8 || !isDigits(id, 0, 8)) {
+            throw new InvalidDataValueException(
+                    "invalid INTERNAL_ID [required, length <= 8, digits only]", id);
+        }
+
+        String firstName = csvRow.get(1);
+        if (isEmpty(firstName) || firstName.length() > 15) {
+            throw new InvalidDataValueException(
+                    "invalid FIRST_NAME [required, length <= 15]", firstName);
+        }
+
+        String middleName = csvRow.get(2);
+        if (!isEmpty(middleName) && middleName.length() > 15) {
+            throw new InvalidDataValueException(
+                    "invalid MIDDLE_NAME [length <= 15]", middleName);
+        }
+
+        String lastName = csvRow.get(3);
+        if (isEmpty(lastName) || lastName.length() > 15) {
+            throw new InvalidDataValueException(
+                    "invalid LAST_NAME [required, length <= 15]", lastName);
+        }
+
+        String phone = csvRow.get(4);
+        if (isEmpty(phone) || !(phone.length() == 12) || !isPhoneNumber(phone)) {
+            throw new InvalidDataValueException(
+                    "invalid PHONE_NUM [required, length = 12, format: ###-###-####]", phone);
+        }
+    }
+
+    // - ###-###-####, checked by hand rather than by regex, it runs for every row
+    private static boolean isPhoneNumber(String phone) {
+        return isDigits(phone, 0, 3) && phone.charAt(3) == '-'
+                && isDigits(phone, 4, 7) && phone.charAt(7) == '-'
+                && isDigits(phone, 8, 12);
+    }
+
+    // - ascii digits only, as \d matched them
+    private static boolean isDigits(String value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
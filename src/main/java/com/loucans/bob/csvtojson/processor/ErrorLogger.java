@@ -1,7 +1,13 @@
 package com.loucans.bob.csvtojson.processor;
 
 import java.io.Closeable;
+import java.io.IOException;
 
 public interface ErrorLogger extends Closeable {
     void logError(Integer rowNum, String errorToLog);
+
+    // - no-op so callers can pass a lambda as an error sink
+    @Override
+    default void close() throws IOException {
+    }
 }
@@ -1,26 +1,36 @@
 package com.loucans.bob.csvtojson.processor;
 
+import com.loucans.bob.csvtojson.events.StageTimer;
 import com.loucans.bob.csvtojson.model.CsvRow;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Objects;
 
 import static java.lang.System.lineSeparator;
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
 
 public class JsonOutputWriter implements OutputWriter {
+    // null when writing to a caller supplied writer
     private final Path outputFile;
-    private boolean fileCreated = false;
+    private final StageTimer serializeTimer;
+    private final StageTimer writeTimer;
+    private Writer writer;
+    private boolean arrayStarted = false;
     private boolean firstRecordWritten = false;
 
     public JsonOutputWriter(String outputFilePath) {
         outputFile = Paths.get(outputFilePath);
+        serializeTimer = new StageTimer(outputFile.getFileName().toString(), "serialize");
+        writeTimer = new StageTimer(outputFile.getFileName().toString(), "write");
         try {
             Files.deleteIfExists(outputFile);
         } catch (IOException e) {
@@ -28,51 +38,95 @@ public class JsonOutputWriter implements OutputWriter {
         }
     }
 
+    // - streams json to the writer - close ends the array and flushes, the caller closes the writer
+    public JsonOutputWriter(Writer writer) {
+        this(writer, "stream");
+    }
+
+    // - source labels the stage timers, i.e. the file the json ends up in
+    public JsonOutputWriter(Writer writer, String source) {
+        this.outputFile = null;
+        this.serializeTimer = new StageTimer(source, "serialize");
+        this.writeTimer = new StageTimer(source, "write");
+        this.writer = writer;
+    }
+
+    // - starts another array on the same writer once closed, for a writer reused across outputs
+    void reset(String source) {
+        serializeTimer.setSource(source);
+        writeTimer.setSource(source);
+        arrayStarted = false;
+        firstRecordWritten = false;
+    }
+
     @Override
     public void writeRecord(CsvRow csvRow) {
+        long started = serializeTimer.start();
+        String serializedRecord = nonNull(csvRow) ? serializeRecord(csvRow) : null;
+        serializeTimer.stop(started);
+        writeSerializedRecord(serializedRecord);
+    }
+
+    @Override
+    public String serializeRecord(CsvRow csvRow) {
+        return rowtoJson(csvRow);
+    }
+
+    @Override
+    public void writeSerializedRecord(String serializedRecord) {
+        long started = writeTimer.start();
         try {
-            if (!fileCreated) {
-                Files.createFile(outputFile);
-                Files.writeString(outputFile, "[", UTF_8, APPEND);
-                fileCreated = true;
+            if (!arrayStarted) {
+                // file is only created once there is something to write, buffered so each
+                // record no longer costs an open/write/close of the output file
+                if (isNull(writer)) {
+                    writer = Files.newBufferedWriter(outputFile, UTF_8, CREATE_NEW, WRITE);
+                }
+                writer.write("[");
+                arrayStarted = true;
             }
 
-            if (!firstRecordWritten) {
-                if (Objects.nonNull(csvRow)) {
-                    Files.writeString(outputFile, lineSeparator() + rowtoJson(csvRow), UTF_8, APPEND);
-                    firstRecordWritten = true;
-                }
-            } else {
-                if (Objects.nonNull(csvRow)) {
-                    Files.writeString(outputFile, "," + lineSeparator() + rowtoJson(csvRow), UTF_8, APPEND);
-                }
+            if (nonNull(serializedRecord)) {
+                writer.write(firstRecordWritten ? "," + lineSeparator() : lineSeparator());
+                writer.write(serializedRecord);
+                firstRecordWritten = true;
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        writeTimer.stop(started);
     }
 
     @Override
     public void close() throws IOException {
-        if (fileCreated) {
-            Files.writeString(outputFile, (firstRecordWritten ? lineSeparator() : "") + "]", UTF_8, APPEND);
+        serializeTimer.finish();
+        writeTimer.finish();
+        try {
+            if (arrayStarted) {
+                writer.write((firstRecordWritten ? lineSeparator() : "") + "]");
+            }
+        } finally {
+            if (isNull(outputFile)) {
+                writer.flush();
+            } else if (nonNull(writer)) {
+                writer.close();
+            }
         }
     }
 
-    private String rowtoJson(CsvRow csvRow) {
-        String[] data = csvRow.getRowData();
-
+    // - shared with NdjsonOutputWriter
+    static String rowtoJson(CsvRow csvRow) {
         JSONObject name = new JSONObject();
-        name.put("first", data[1]);
-        if (isNotEmpty(data[2])) {
-            name.put("middle", data[2]);
+        name.put("first", csvRow.get(1));
+        if (isNotEmpty(csvRow.get(2))) {
+            name.put("middle", csvRow.get(2));
         }
-        name.put("last", data[3]);
+        name.put("last", csvRow.get(3));
 
         JSONObject jso = new JSONObject();
-        jso.put("id", Long.valueOf(data[0]));
+        jso.put("id", Long.valueOf(csvRow.get(0)));
         jso.put("name", name);
-        jso.put("phone", data[4]);
+        jso.put("phone", csvRow.get(4));
 
         return jso.toString();
     }
@@ -0,0 +1,62 @@
+package com.loucans.bob.csvtojson.processor;
+
+import com.loucans.bob.csvtojson.model.CsvRow;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+// - --------------------------------------------------
+// - one json object per line, appended to whatever the file already holds
+// - unlike a json array the output stays valid after every record, so it can grow across passes
+// - --------------------------------------------------
+public class NdjsonOutputWriter implements OutputWriter {
+    private final Path outputFile;
+    private Writer writer;
+
+    public NdjsonOutputWriter(String outputFilePath) {
+        this.outputFile = Paths.get(outputFilePath);
+    }
+
+    @Override
+    public void writeRecord(CsvRow csvRow) {
+        writeSerializedRecord(nonNull(csvRow) ? serializeRecord(csvRow) : null);
+    }
+
+    @Override
+    public String serializeRecord(CsvRow csvRow) {
+        return JsonOutputWriter.rowtoJson(csvRow);
+    }
+
+    // - null has nothing to mark, ndjson has no enclosing array
+    @Override
+    public void writeSerializedRecord(String serializedRecord) {
+        if (isNull(serializedRecord)) {
+            return;
+        }
+        try {
+            if (isNull(writer)) {
+                writer = Files.newBufferedWriter(outputFile, UTF_8, CREATE, APPEND);
+            }
+            writer.write(serializedRecord);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (nonNull(writer)) {
+            writer.close();
+        }
+    }
+}
@@ -6,4 +6,10 @@ import java.io.Closeable;
 
 public interface OutputWriter extends Closeable {
     void writeRecord(CsvRow csvRow);
+
+    // - must be thread safe, pipeline workers serialize rows ahead of the writer thread
+    String serializeRecord(CsvRow csvRow);
+
+    // - null behaves like writeRecord(null), the output is created without a record
+    void writeSerializedRecord(String serializedRecord);
 }
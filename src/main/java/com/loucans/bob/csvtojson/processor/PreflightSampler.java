@@ -0,0 +1,143 @@
+package com.loucans.bob.csvtojson.processor;
+
+import com.loucans.bob.csvtojson.parser.CommonsCsvParser;
+import com.loucans.bob.csvtojson.parser.CsvParser;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+
+// - --------------------------------------------------
+// - checks the header and validates a sample of rows before a file is converted,
+//   so an obviously bad extract can be set aside without reading all of it
+// - small files are sampled from the top, large ones at evenly spaced offsets so a
+//   bad tail is seen too - a strided sample starts at the line after its offset,
+//   which is only a record boundary if no quoted value spans lines
+// - --------------------------------------------------
+class PreflightSampler {
+    static final long STRIDE_FROM_BYTES = 8L * 1024 * 1024;
+
+    private final CsvRowValidator validator;
+    private final int sampleRows;
+    private final int maxFieldLength;
+
+    PreflightSampler(CsvRowValidator validator, int sampleRows, int maxFieldLength) {
+        this.validator = validator;
+        this.sampleRows = sampleRows;
+        this.maxFieldLength = maxFieldLength;
+    }
+
+    Result sample(Path csvFile) {
+        Result result = new Result();
+        try {
+            long fileSize = Files.size(csvFile);
+            if (fileSize < STRIDE_FROM_BYTES) {
+                // header and the rows after it in one pass
+                sampleAt(csvFile, 0, sampleRows + 1, result);
+            } else {
+                sampleAt(csvFile, 0, 1, result);
+                for (int i = 1; i <= sampleRows && result.headerError == null; i++) {
+                    sampleAt(csvFile, fileSize * i / (sampleRows + 1), 1, result);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return result;
+    }
+
+    private void sampleAt(Path csvFile, long offset, int rows, Result result) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(csvFile));
+        try (CsvParser parser = new CommonsCsvParser(new InputStreamReader(in, UTF_8))
+                .reusingRows()
+                .maxFieldLength(maxFieldLength)
+                .maxRows(rows)) {
+            if (offset > 0 && !skipToNextLine(in, offset)) {
+                return;
+            }
+            AtomicInteger handledRow = new AtomicInteger(0);
+            parser.parse(
+                    (rowNum, csvRow) -> {
+                        handledRow.set(rowNum);
+                        if (offset == 0 && validator.isHeaderRow(rowNum)) {
+                            validator.assertValidHeaderRow(csvRow);
+                        } else {
+                            result.sampled++;
+                            validator.assertValidDataRow(csvRow);
+                        }
+                    },
+                    (rowNum, error) -> {
+                        String where = offset == 0 ? format("row %d", rowNum) : format("near byte %d", offset);
+                        if (offset == 0 && validator.isHeaderRow(rowNum)) {
+                            result.headerError = error.getMessage();
+                            return;
+                        }
+                        if (handledRow.get() != rowNum) {
+                            // a record that failed to parse never reached the row handler
+                            result.sampled++;
+                        }
+                        result.failed++;
+                        if (isNull(result.firstError)) {
+                            result.firstError = where + ": " + error.getMessage();
+                        }
+                    });
+        }
+    }
+
+    // - false at end of file
+    private boolean skipToNextLine(InputStream in, long offset) throws IOException {
+        long skipped = 0;
+        while (skipped < offset) {
+            long n = in.skip(offset - skipped);
+            if (n <= 0) {
+                return false;
+            }
+            skipped += n;
+        }
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // - ---------------------------------------
+    // - sampled counts data rows only, the header is checked on its own
+    // - ---------------------------------------
+    static class Result {
+        private int sampled = 0;
+        private int failed = 0;
+        private String firstError = null;
+        private String headerError = null;
+
+        int getSampled() {
+            return sampled;
+        }
+
+        int getFailed() {
+            return failed;
+        }
+
+        double getErrorRate() {
+            return sampled == 0 ? 0 : (double) failed / sampled;
+        }
+
+        String getFirstError() {
+            return firstError;
+        }
+
+        // null when the header row is valid
+        String getHeaderError() {
+            return headerError;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.loucans.bob.csvtojson.processor;
+
+import com.loucans.bob.csvtojson.model.CsvRow;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+// - --------------------------------------------------
+// - hands records to the wrapped writer ordered by INTERNAL_ID, equal ids in input order
+// - records are collected in runs of at most runBytes, each run is sorted on a long[] of
+//   id << 32 | position - ids are at most 8 digits so both fit, and sorting primitives
+//   needs no comparator or boxing - and spilled to a temp file once full
+// - close merges the runs, at most maxFanIn at a time, so memory stays at about one run
+//   whatever the size of the file
+// - serializeRecord prefixes the id, writeSerializedRecord expects that prefix - both
+//   must come from this writer, as they do in the pipeline
+// - --------------------------------------------------
+public class SortingOutputWriter implements OutputWriter {
+    public static final long DEFAULT_RUN_BYTES = 64L * 1024 * 1024;
+
+    private static final int MAX_FAN_IN = 64;
+    private static final int RUN_BUFFER_BYTES = 64 * 1024;
+    // - string, array slot and key per record, on top of the characters
+    private static final int RECORD_OVERHEAD_BYTES = 64;
+    private static final char ID_SEPARATOR = ':';
+
+    private final OutputWriter delegate;
+    private final Path tempDir;
+    private final long runBytes;
+
+    private long[] keys = new long[1024];
+    private String[] records = new String[1024];
+    private int size = 0;
+    private long bytes = 0;
+    private final List<Path> runFiles = new ArrayList<>();
+    private boolean emptyRecordWritten = false;
+
+    // - temp files go to tempDir, the wrapped writer is closed with this one
+    public SortingOutputWriter(OutputWriter delegate, Path tempDir, long runBytes) {
+        this.delegate = delegate;
+        this.tempDir = tempDir;
+        this.runBytes = runBytes;
+    }
+
+    @Override
+    public void writeRecord(CsvRow csvRow) {
+        writeSerializedRecord(nonNull(csvRow) ? serializeRecord(csvRow) : null);
+    }
+
+    @Override
+    public String serializeRecord(CsvRow csvRow) {
+        return csvRow.get(0) + ID_SEPARATOR + delegate.serializeRecord(csvRow);
+    }
+
+    @Override
+    public void writeSerializedRecord(String serializedRecord) {
+        if (isNull(serializedRecord)) {
+            emptyRecordWritten = true;
+            return;
+        }
+        int separator = serializedRecord.indexOf(ID_SEPARATOR);
+        long id = Long.parseLong(serializedRecord, 0, separator, 10);
+        String record = serializedRecord.substring(separator + 1);
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            records = Arrays.copyOf(records, size * 2);
+        }
+        keys[size] = id << 32 | size;
+        records[size] = record;
+        size++;
+        bytes += record.length() * 2L + RECORD_OVERHEAD_BYTES;
+
+        if (bytes >= runBytes) {
+            spillRun();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (runFiles.isEmpty()) {
+                // fits in one run, nothing touches disk
+                sortRun();
+                for (int i = 0; i < size; i++) {
+                    delegate.writeSerializedRecord(records[(int) keys[i]]);
+                }
+            } else {
+                if (size > 0) {
+                    spillRun();
+                }
+                List<Path> runs = new ArrayList<>(runFiles);
+                while (runs.size() > MAX_FAN_IN) {
+                    runs = mergePass(runs);
+                }
+                merge(runs, null);
+            }
+            if (emptyRecordWritten) {
+                delegate.writeSerializedRecord(null);
+            }
+        } finally {
+            try {
+                for (Path runFile : runFiles) {
+                    Files.deleteIfExists(runFile);
+                }
+            } finally {
+                delegate.close();
+            }
+        }
+    }
+
+    private void sortRun() {
+        Arrays.sort(keys, 0, size);
+    }
+
+    private void spillRun() {
+        sortRun();
+        try {
+            Path runFile = Files.createTempFile(tempDir, "csvToJson-sort-", ".run");
+            runFiles.add(runFile);
+            try (DataOutputStream out = openRun(runFile)) {
+                for (int i = 0; i < size; i++) {
+                    writeEntry(out, keys[i] >>> 32, records[(int) keys[i]]);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        Arrays.fill(records, 0, size, null);
+        size = 0;
+        bytes = 0;
+    }
+
+    // - merges groups of runs into longer runs until few enough are left for one final merge
+    private List<Path> mergePass(List<Path> runs) throws IOException {
+        List<Path> merged = new ArrayList<>();
+        for (int from = 0; from < runs.size(); from += MAX_FAN_IN) {
+            Path runFile = Files.createTempFile(tempDir, "csvToJson-sort-", ".run");
+            runFiles.add(runFile);
+            try (DataOutputStream out = openRun(runFile)) {
+                merge(runs.subList(from, Math.min(from + MAX_FAN_IN, runs.size())), out);
+            }
+            for (Path run : runs.subList(from, Math.min(from + MAX_FAN_IN, runs.size()))) {
+                Files.delete(run);
+                runFiles.remove(run);
+            }
+            merged.add(runFile);
+        }
+        return merged;
+    }
+
+    // - k-way merge to out, or to the wrapped writer when out is null
+    // - ties go to the earlier run, which holds the earlier records
+    private void merge(List<Path> runs, DataOutputStream out) throws IOException {
+        PriorityQueue<RunCursor> heads = new PriorityQueue<>(
+                Comparator.comparingLong((RunCursor cursor) -> cursor.id).thenComparingInt(cursor -> cursor.run));
+        List<RunCursor> cursors = new ArrayList<>();
+        try {
+            for (int run = 0; run < runs.size(); run++) {
+                RunCursor cursor = new RunCursor(runs.get(run), run);
+                cursors.add(cursor);
+                if (cursor.next()) {
+                    heads.add(cursor);
+                }
+            }
+            while (!heads.isEmpty()) {
+                RunCursor head = heads.poll();
+                if (isNull(out)) {
+                    delegate.writeSerializedRecord(head.record);
+                } else {
+                    writeEntry(out, head.id, head.record);
+                }
+                if (head.next()) {
+                    heads.add(head);
+                }
+            }
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.in.close();
+            }
+        }
+    }
+
+    private static DataOutputStream openRun(Path runFile) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile), RUN_BUFFER_BYTES));
+    }
+
+    // - writeUTF stops at 64k, records can be longer
+    private static void writeEntry(DataOutputStream out, long id, String record) throws IOException {
+        byte[] utf8 = record.getBytes(UTF_8);
+        out.writeLong(id);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    // - ---------------------------------------
+    // - current entry of one run during a merge
+    // - ---------------------------------------
+    private static class RunCursor {
+        private final DataInputStream in;
+        private final int run;
+        private long id;
+        private String record;
+
+        private RunCursor(Path runFile, int run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFile), RUN_BUFFER_BYTES));
+            this.run = run;
+        }
+
+        // - false once the run is exhausted
+        private boolean next() throws IOException {
+            try {
+                id = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            byte[] utf8 = new byte[in.readInt()];
+            in.readFully(utf8);
+            record = new String(utf8, UTF_8);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.loucans.bob.csvtojson.processor;
+
+import com.loucans.bob.csvtojson.durability.FileSyncer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+// - --------------------------------------------------
+// - how far each tailed csv file has been converted, kept in the output directory
+//   next to the json it describes so both move together
+// - saved by writing a temp file and renaming it over the old one, a crash leaves
+//   either the old or the new offsets, never a torn file
+// - --------------------------------------------------
+class TailOffsets {
+    static final String FILE_NAME = ".csvToJson-tail-offsets.properties";
+
+    private final Path offsetsFile;
+    private final Properties properties = new Properties();
+
+    private TailOffsets(Path offsetsFile) {
+        this.offsetsFile = offsetsFile;
+    }
+
+    static TailOffsets load(Path outputPath) {
+        TailOffsets offsets = new TailOffsets(outputPath.resolve(FILE_NAME));
+        if (Files.exists(offsets.offsetsFile)) {
+            try (Reader reader = Files.newBufferedReader(offsets.offsetsFile, UTF_8)) {
+                offsets.properties.load(reader);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return offsets;
+    }
+
+    synchronized Position get(String csvFileName) {
+        return new Position(
+                Long.parseLong(properties.getProperty(csvFileName + ".offset", "0")),
+                Integer.parseInt(properties.getProperty(csvFileName + ".rows", "0")),
+                Boolean.parseBoolean(properties.getProperty(csvFileName + ".failed", "false")));
+    }
+
+    synchronized void put(String csvFileName, Position position) {
+        properties.setProperty(csvFileName + ".offset", Long.toString(position.getOffset()));
+        properties.setProperty(csvFileName + ".rows", Integer.toString(position.getRows()));
+        properties.setProperty(csvFileName + ".failed", Boolean.toString(position.isFailed()));
+    }
+
+    synchronized void remove(String csvFileName) {
+        properties.remove(csvFileName + ".offset");
+        properties.remove(csvFileName + ".rows");
+        properties.remove(csvFileName + ".failed");
+    }
+
+    // - the temp file is synced before the rename and the rename after it, a no-op for Durability.NONE
+    synchronized void save(FileSyncer fileSyncer) {
+        Path tempFile = offsetsFile.resolveSibling(FILE_NAME + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, UTF_8)) {
+                properties.store(writer, "csvToJson tail offsets");
+            }
+            fileSyncer.sync(tempFile);
+            Files.move(tempFile, offsetsFile, ATOMIC_MOVE, REPLACE_EXISTING);
+            fileSyncer.sync(offsetsFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // - ---------------------------------------
+    // - offset is always at a record boundary, rows counts the records before it, header included
+    // - ---------------------------------------
+    static class Position {
+        static final Position START = new Position(0, 0, false);
+
+        private final long offset;
+        private final int rows;
+        private final boolean failed;
+
+        Position(long offset, int rows, boolean failed) {
+            this.offset = offset;
+            this.rows = rows;
+            this.failed = failed;
+        }
+
+        long getOffset() {
+            return offset;
+        }
+
+        int getRows() {
+            return rows;
+        }
+
+        // the header row was invalid, the rest of the file is skipped
+        boolean isFailed() {
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.loucans.bob.csvtojson.processor;
+
+import com.loucans.bob.csvtojson.durability.Durability;
+import com.loucans.bob.csvtojson.durability.FileSyncer;
+import com.loucans.bob.csvtojson.exception.CsvToJsonException;
+import com.loucans.bob.csvtojson.parser.CommonsCsvParser;
+import com.loucans.bob.csvtojson.parser.CsvParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.apache.commons.lang3.StringUtils.lastIndexOf;
+import static org.apache.commons.lang3.StringUtils.substring;
+
+// - --------------------------------------------------
+// - converts csv files that producers keep appending to
+// - each pass converts the complete records added since the last one, appending json
+//   lines to <name>.ndjson and errors to the error file, then saves the byte offset
+// - a producer declares a file finished by creating <name>.csv.sealed next to it, the
+//   pass after that converts the remainder, trailing record without line break included,
+//   and deletes the file and the marker
+// - a file converted from the start replaces the outputs of whatever had its name before,
+//   a file that shrank or a sealed name reused the next day, as a dropped file would
+// - output is written before the offset is saved, after a crash the last pass is
+//   converted again, so records can repeat but are never lost - with a durability other
+//   than NONE the outputs are fsynced before the offset is saved or the input deleted
+// - --------------------------------------------------
+public class TailingCsvProcessor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TailingCsvProcessor.class);
+
+    public static final String SEALED_SUFFIX = ".sealed";
+
+    private static final int SCAN_BUFFER_BYTES = 64 * 1024;
+
+    private final CsvRowValidator validator = new CsvRowValidator();
+    private final int maxFieldLength;
+    private final FileSyncer fileSyncer;
+    private final Map<Path, TailOffsets> offsetsByOutputPath = new ConcurrentHashMap<>();
+    private final Map<Path, Object> fileLocks = new ConcurrentHashMap<>();
+
+    public TailingCsvProcessor() {
+        this(CsvProcessor.DEFAULT_MAX_FIELD_LENGTH);
+    }
+
+    public TailingCsvProcessor(int maxFieldLength) {
+        this(maxFieldLength, new FileSyncer(Durability.NONE));
+    }
+
+    public TailingCsvProcessor(int maxFieldLength, FileSyncer fileSyncer) {
+        this.maxFieldLength = maxFieldLength;
+        this.fileSyncer = fileSyncer;
+    }
+
+    public void processAppended(String csvFileName,
+                                String inputPath,
+                                String outputPath,
+                                String errorPath) {
+        Path csvFile = Paths.get(inputPath, csvFileName);
+        String fileName = csvFile.getFileName().toString();
+        Path sealMarker = csvFile.resolveSibling(fileName + SEALED_SUFFIX);
+
+        // passes over one file run one at a time, passes over different files in parallel
+        synchronized (fileLocks.computeIfAbsent(csvFile, path -> new Object())) {
+            TailOffsets offsets = offsetsByOutputPath.computeIfAbsent(Paths.get(outputPath), TailOffsets::load);
+            try {
+                // checked before sizing, everything the producer wrote before sealing is then included
+                boolean sealed = Files.exists(sealMarker);
+                if (!Files.exists(csvFile)) {
+                    return;
+                }
+
+                TailOffsets.Position position = offsets.get(fileName);
+                long fileSize = Files.size(csvFile);
+                if (fileSize < position.getOffset()) {
+                    LOGGER.warn("csv file shrank, converting again from the start, filename: [{}], offset: [{}], size: [{}]",
+                            csvFile, position.getOffset(), fileSize);
+                    position = TailOffsets.Position.START;
+                }
+                if (position.getOffset() == 0) {
+                    Files.deleteIfExists(ndjsonFileFor(outputPath, fileName));
+                    Files.deleteIfExists(Paths.get(errorPath, fileName));
+                }
+
+                long end = sealed ? fileSize : lastRecordEnd(csvFile, position.getOffset(), fileSize);
+                boolean converting = end > position.getOffset();
+                if (converting) {
+                    position = position.isFailed()
+                            ? new TailOffsets.Position(end, position.getRows(), true)
+                            : convertRange(csvFile, position, end, outputPath, errorPath);
+                }
+
+                if (sealed) {
+                    if (position.getRows() == 0) {
+                        try (ErrorLogger errorLogger = new CsvErrorLogger(errorPath + "/" + fileName, true)) {
+                            errorLogger.logError(0, "\"empty file\"");
+                        }
+                    }
+                    // the outputs have to be on disk before the only other copy is gone
+                    syncOutputs(fileName, outputPath, errorPath);
+                    Files.delete(csvFile);
+                    Files.deleteIfExists(sealMarker);
+                    offsets.remove(fileName);
+                    LOGGER.debug("sealed csv file converted and deleted, filename: [{}], rows: [{}]",
+                            csvFile, position.getRows());
+                } else {
+                    if (converting) {
+                        // and before the offset moves past them
+                        syncOutputs(fileName, outputPath, errorPath);
+                    }
+                    offsets.put(fileName, position);
+                }
+                offsets.save(fileSyncer);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                if (!Files.exists(csvFile)) {
+                    fileLocks.remove(csvFile);
+                }
+            }
+        }
+    }
+
+    private TailOffsets.Position convertRange(Path csvFile,
+                                              TailOffsets.Position position,
+                                              long end,
+                                              String outputPath,
+                                              String errorPath) throws IOException {
+        String fileName = csvFile.getFileName().toString();
+        int rowsBefore = position.getRows();
+        AtomicInteger lastRow = new AtomicInteger(rowsBefore);
+        AtomicBoolean headerFailed = new AtomicBoolean(false);
+
+        try (FileChannel channel = FileChannel.open(csvFile, READ)) {
+            channel.position(position.getOffset());
+            InputStream range = new RangeInputStream(Channels.newInputStream(channel), end - position.getOffset());
+
+            try (CsvParser parser = new CommonsCsvParser(new BufferedReader(new InputStreamReader(range, UTF_8)))
+                    .reusingRows()
+                    .maxFieldLength(maxFieldLength);
+                 OutputWriter outputWriter = new NdjsonOutputWriter(ndjsonFileFor(outputPath, fileName).toString());
+                 ErrorLogger errorLogger = new CsvErrorLogger(errorPath + "/" + fileName, true)) {
+
+                parser.parse(
+                        (rowNum, csvRow) -> {
+                            int row = rowsBefore + rowNum;
+                            lastRow.set(row);
+                            if (validator.isHeaderRow(row)) {
+                                validator.assertValidHeaderRow(csvRow);
+                            } else {
+                                validator.assertValidDataRow(csvRow);
+                                outputWriter.writeRecord(csvRow);
+                            }
+                        },
+                        (rowNum, error) -> {
+                            int row = rowsBefore + rowNum;
+                            lastRow.set(Math.max(lastRow.get(), row));
+                            LOGGER.error(
+                                    "row failed, value: [{}], error: [{}]", error.getValue(), error.getMessage());
+                            errorLogger.logError(row, error.getMessage().replace("\"", "\"\""));
+                            if (validator.isHeaderRow(row)) {
+                                // abort for processing errors on header row
+                                headerFailed.set(true);
+                                throw error;
+                            }
+                        });
+            } catch (CsvToJsonException e) {
+                LOGGER.debug("invalid header row, skipping the rest of the file, filename: [{}]", csvFile);
+            }
+        }
+
+        // a malformed record ends parsing early, the rest of the range is skipped like the rest of a dropped file
+        return new TailOffsets.Position(end, lastRow.get(), headerFailed.get());
+    }
+
+    private void syncOutputs(String csvFileName, String outputPath, String errorPath) {
+        fileSyncer.sync(ndjsonFileFor(outputPath, csvFileName), Paths.get(errorPath, csvFileName));
+    }
+
+    private static Path ndjsonFileFor(String outputPath, String csvFileName) {
+        return Paths.get(outputPath, substring(csvFileName, 0, lastIndexOf(csvFileName, ".")) + ".ndjson");
+    }
+
+    // - end of the last complete record in [from, to) - a line break outside quotes,
+    //   from if there is none yet
+    // - a line break is \n, \r\n or a bare \r as the parser reads them - a \r is only an end
+    //   once the byte after it is known, its \n may not have been written yet
+    // - quotes and line breaks are single bytes in utf-8, so the bytes can be scanned directly
+    private long lastRecordEnd(Path csvFile, long from, long to) throws IOException {
+        long recordEnd = from;
+        boolean inQuotes = false;
+        // end after a \r outside quotes, until the next byte says whether \n follows
+        long crEnd = -1;
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_BYTES);
+        try (FileChannel channel = FileChannel.open(csvFile, READ)) {
+            long position = from;
+            while (position < to) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), to - position));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer.get(i);
+                    if (crEnd >= 0 && b != '\n') {
+                        recordEnd = crEnd;
+                    }
+                    crEnd = -1;
+                    if (b == '"') {
+                        inQuotes = !inQuotes;
+                    } else if (b == '\n' && !inQuotes) {
+                        recordEnd = position + i + 1;
+                    } else if (b == '\r' && !inQuotes) {
+                        crEnd = position + i + 1;
+                    }
+                }
+                position += read;
+            }
+        }
+        return recordEnd;
+    }
+
+    // - ---------------------------------------
+    // - stops at the end of the range, the producer may have appended more since it was measured
+    // - ---------------------------------------
+    private static class RangeInputStream extends FilterInputStream {
+        private long remaining;
+
+        private RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.loucans.bob.csvtojson.processor;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// - --------------------------------------------------
+// - outcome of validating a file without converting it - rows seen, and per failed
+//   rule how often it failed with the first few offending rows
+// - a rule is an error message, i.e. "invalid PHONE_NUM [...]" - a row counts against
+//   the first rule it fails, a record that cannot be parsed against its parse error
+// - --------------------------------------------------
+public class ValidationReport {
+    private final String source;
+    private final int sampleRows;
+    private final Map<String, RuleErrors> errorsByRule = new LinkedHashMap<>();
+    private int rows = 0;
+    private int failedRows = 0;
+
+    ValidationReport(String source, int sampleRows) {
+        this.source = source;
+        this.sampleRows = sampleRows;
+    }
+
+    void passed() {
+        rows++;
+    }
+
+    // - fields null when the record never parsed into a row
+    void failed(String rule, int rowNum, String value, String[] fields) {
+        rows++;
+        failedRows++;
+        addError(rule, rowNum, value, fields);
+    }
+
+    // - errors that are no data row's - an invalid header, after which nothing is looked
+    //   at as with converting, or an empty file
+    void fileError(String rule, int rowNum, String value, String[] fields) {
+        addError(rule, rowNum, value, fields);
+    }
+
+    private void addError(String rule, int rowNum, String value, String[] fields) {
+        RuleErrors errors = errorsByRule.computeIfAbsent(rule, RuleErrors::new);
+        errors.count++;
+        if (errors.samples.size() < sampleRows) {
+            errors.samples.add(new Sample(rowNum, value, fields));
+        }
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    // data rows, the header row not included
+    public int getRows() {
+        return rows;
+    }
+
+    public int getFailedRows() {
+        return failedRows;
+    }
+
+    // a failed row or an invalid header
+    public boolean hasErrors() {
+        return !errorsByRule.isEmpty();
+    }
+
+    // in the order the rules first failed
+    public Map<String, Integer> getErrorCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        errorsByRule.forEach((rule, errors) -> counts.put(rule, errors.count));
+        return counts;
+    }
+
+    public List<Sample> getSamples(String rule) {
+        RuleErrors errors = errorsByRule.get(rule);
+        return errors == null ? Collections.emptyList() : Collections.unmodifiableList(errors.samples);
+    }
+
+    public String toJson() {
+        JSONArray rules = new JSONArray();
+        for (RuleErrors errors : errorsByRule.values()) {
+            JSONArray samples = new JSONArray();
+            for (Sample sample : errors.samples) {
+                samples.put(new JSONObject()
+                        .put("row", sample.rowNum)
+                        .put("value", sample.value)
+                        .putOpt("fields", sample.fields == null ? null : new JSONArray(sample.fields)));
+            }
+            rules.put(new JSONObject()
+                    .put("rule", errors.rule)
+                    .put("count", errors.count)
+                    .put("samples", samples));
+        }
+        return new JSONObject()
+                .put("file", source)
+                .put("rows", rows)
+                .put("failedRows", failedRows)
+                .put("errors", rules)
+                .toString(2);
+    }
+
+    private static class RuleErrors {
+        private final String rule;
+        private final List<Sample> samples = new ArrayList<>();
+        private int count = 0;
+
+        private RuleErrors(String rule) {
+            this.rule = rule;
+        }
+    }
+
+    // - ---------------------------------------
+    // - one offending row as read, rowNum counts the header as row 1
+    // - ---------------------------------------
+    public static class Sample {
+        private final int rowNum;
+        private final String value;
+        private final String[] fields;
+
+        private Sample(int rowNum, String value, String[] fields) {
+            this.rowNum = rowNum;
+            this.value = value;
+            this.fields = fields;
+        }
+
+        public int getRowNum() {
+            return rowNum;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        // null when the record could not be parsed
+        public String[] getFields() {
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntConsumer;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+// - --------------------------------------------------
+// - sizes a worker pool between minWorkers and maxWorkers from what its tasks do
+// - every interval it takes the cpu time and the wall time workers spent in tasks,
+//   tasks still running included, and the queue depth:
+//     backlog and every worker busy, cores to spare - grow, the tasks wait on i/o
+//       (cpu time well under wall time) or there are simply more cores than workers
+//     backlog, cpu bound tasks and more workers than cores - shrink, they only contend
+//     no backlog and workers idle - shrink
+// - hysteresis - a signal has to hold stableTicks intervals in a row before the pool
+//   moves one worker, and the thresholds leave a dead band, so a load near a limit
+//   does not make the pool flap
+// - core and max size are set together, surplus threads leave on their next task
+//   even while there is a backlog
+// - --------------------------------------------------
+public class AdaptivePoolSizer implements AutoCloseable, PoolSizerStatsMXBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptivePoolSizer.class);
+
+    // cpu time over wall time from which tasks count as cpu bound
+    static final double CPU_BOUND_RATIO = 0.8;
+
+    private enum Signal { GROW, SHRINK, HOLD }
+
+    private final ThreadPoolExecutor executor;
+    private final int minWorkers;
+    private final int maxWorkers;
+    private final long intervalMillis;
+    private final int stableTicks;
+    private final int cores;
+    private final IntConsumer onResize;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Map<Thread, TaskSample> running = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+
+    // totals of tasks finished since the last tick
+    private long finishedCpuNanos = 0;
+    private long finishedWallNanos = 0;
+    private long lastTickNanos = System.nanoTime();
+
+    private volatile int workers;
+    private volatile double cpuRatio = 0;
+    private volatile double busyWorkers = 0;
+    private Signal pending = Signal.HOLD;
+    private int pendingTicks = 0;
+
+    public AdaptivePoolSizer(ThreadPoolExecutor executor, int minWorkers, int maxWorkers, long intervalMillis,
+                             int stableTicks, IntConsumer onResize) {
+        this(executor, minWorkers, maxWorkers, intervalMillis, stableTicks,
+                Runtime.getRuntime().availableProcessors(), onResize);
+    }
+
+    // - tests pin the core count
+    AdaptivePoolSizer(ThreadPoolExecutor executor, int minWorkers, int maxWorkers, long intervalMillis,
+                      int stableTicks, int cores, IntConsumer onResize) {
+        if (minWorkers < 1 || maxWorkers < minWorkers) {
+            throw new IllegalArgumentException("workers must be at least 1 and min workers at most max workers");
+        }
+        this.executor = executor;
+        this.minWorkers = minWorkers;
+        this.maxWorkers = maxWorkers;
+        this.intervalMillis = intervalMillis;
+        this.stableTicks = Math.max(1, stableTicks);
+        this.cores = cores;
+        this.onResize = onResize;
+        this.workers = executor.getCorePoolSize();
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pool-sizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        if (!threads.isThreadCpuTimeSupported()) {
+            LOGGER.warn("thread cpu time not supported, worker pool stays at [{}] workers", workers);
+            return;
+        }
+        if (!threads.isThreadCpuTimeEnabled()) {
+            threads.setThreadCpuTimeEnabled(true);
+        }
+        timer.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, MILLISECONDS);
+    }
+
+    // - from the executor's beforeExecute, on the worker
+    public void taskStarted() {
+        running.put(Thread.currentThread(), new TaskSample(threads.getCurrentThreadCpuTime(), System.nanoTime()));
+    }
+
+    // - from the executor's afterExecute, on the worker
+    public void taskFinished() {
+        TaskSample sample = running.remove(Thread.currentThread());
+        if (sample == null) {
+            return;
+        }
+        long cpu = threads.getCurrentThreadCpuTime();
+        long now = System.nanoTime();
+        synchronized (this) {
+            synchronized (sample) {
+                finishedCpuNanos += cpu - sample.cpuNanos;
+                finishedWallNanos += now - sample.wallNanos;
+                sample.done = true;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    // - the part of running tasks since their last sample counts towards this interval
+    private synchronized void tick() {
+        try {
+            long now = System.nanoTime();
+            long cpuNanos = finishedCpuNanos;
+            long wallNanos = finishedWallNanos;
+            for (Map.Entry<Thread, TaskSample> entry : running.entrySet()) {
+                TaskSample sample = entry.getValue();
+                synchronized (sample) {
+                    long cpu = threads.getThreadCpuTime(entry.getKey().getId());
+                    if (sample.done || cpu < 0) {
+                        continue;
+                    }
+                    cpuNanos += cpu - sample.cpuNanos;
+                    wallNanos += now - sample.wallNanos;
+                    sample.cpuNanos = cpu;
+                    sample.wallNanos = now;
+                }
+            }
+            finishedCpuNanos = 0;
+            finishedWallNanos = 0;
+            long intervalNanos = now - lastTickNanos;
+            lastTickNanos = now;
+            adjust(cpuNanos, wallNanos, intervalNanos, executor.getQueue().size());
+        } catch (RuntimeException e) {
+            // a failed tick must not end the timer, the next one tries again
+            LOGGER.warn("unable to size worker pool: [{}]", e.getMessage());
+        }
+    }
+
+    // - one interval's measurements, returns the worker count after it
+    synchronized int adjust(long cpuNanos, long wallNanos, long intervalNanos, int queued) {
+        busyWorkers = (double) wallNanos / intervalNanos;
+        cpuRatio = wallNanos == 0 ? 0 : (double) cpuNanos / wallNanos;
+        double coresUsed = (double) cpuNanos / intervalNanos;
+
+        Signal signal = Signal.HOLD;
+        if (queued > 0 && busyWorkers >= workers - 0.5) {
+            if (coresUsed < cores - 0.5) {
+                signal = Signal.GROW;
+            } else if (workers > cores && cpuRatio >= CPU_BOUND_RATIO) {
+                signal = Signal.SHRINK;
+            }
+        } else if (queued == 0 && busyWorkers < workers - 1) {
+            signal = Signal.SHRINK;
+        }
+
+        pendingTicks = signal == pending ? pendingTicks + 1 : 1;
+        pending = signal;
+        LOGGER.debug("worker pool sample, workers: [{}], busy: [{}], cpu ratio: [{}], queued: [{}], signal: [{}] x [{}]",
+                workers, busyWorkers, cpuRatio, queued, signal, pendingTicks);
+        if (signal == Signal.HOLD || pendingTicks < stableTicks) {
+            return workers;
+        }
+
+        int target = Math.max(minWorkers, Math.min(maxWorkers, workers + (signal == Signal.GROW ? 1 : -1)));
+        if (target != workers) {
+            resize(target);
+        }
+        pendingTicks = 0;
+        return workers;
+    }
+
+    private void resize(int target) {
+        LOGGER.info("resizing worker pool, from: [{}], to: [{}], busy: [{}], cpu ratio: [{}]",
+                workers, target, busyWorkers, cpuRatio);
+        if (target > workers) {
+            executor.setMaximumPoolSize(target);
+            executor.setCorePoolSize(target);
+            // started idle, so they take their first task from the queue like every other worker
+            executor.prestartAllCoreThreads();
+        } else {
+            executor.setCorePoolSize(target);
+            executor.setMaximumPoolSize(target);
+        }
+        workers = target;
+        onResize.accept(target);
+    }
+
+    @Override
+    public int getWorkers() {
+        return workers;
+    }
+
+    @Override
+    public double getCpuRatio() {
+        return cpuRatio;
+    }
+
+    @Override
+    public double getBusyWorkers() {
+        return busyWorkers;
+    }
+
+    // - cpu and wall clock of a running task at its start or last tick
+    private static class TaskSample {
+        private long cpuNanos;
+        private long wallNanos;
+        private boolean done = false;
+
+        private TaskSample(long cpuNanos, long wallNanos) {
+            this.cpuNanos = cpuNanos;
+            this.wallNanos = wallNanos;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// - --------------------------------------------------
+// - keeps at most one job per key queued or running, and at most one rerun behind it
+// - a key arriving again while its job is queued needs nothing, the job has not read
+//   anything yet - while it runs the job is marked superseded and finished reports that
+//   one rerun is due, however often the key arrived meanwhile - latest arrival wins
+// - lock free - each key's state is one atomic int, moved on by compare and set, and a
+//   finished entry is only removed from the map by whoever sees it finished
+// - --------------------------------------------------
+public class InFlightTable<K> {
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int SUPERSEDED = 2;
+    private static final int FINISHED = 3;
+
+    private final ConcurrentMap<K, AtomicInteger> entries = new ConcurrentHashMap<>();
+
+    // - true when the caller has to queue a job for key, false when one already covers it
+    public boolean arrived(K key) {
+        for (; ;) {
+            AtomicInteger state = entries.get(key);
+            if (state == null) {
+                if (entries.putIfAbsent(key, new AtomicInteger(QUEUED)) == null) {
+                    return true;
+                }
+                continue;
+            }
+            int current = state.get();
+            if (current == QUEUED || current == SUPERSEDED) {
+                return false;
+            }
+            if (current == RUNNING && state.compareAndSet(RUNNING, SUPERSEDED)) {
+                return false;
+            }
+            if (current == FINISHED) {
+                entries.remove(key, state);
+            }
+        }
+    }
+
+    public void started(K key) {
+        AtomicInteger state = entries.get(key);
+        if (state != null) {
+            state.compareAndSet(QUEUED, RUNNING);
+        }
+    }
+
+    // - true once key arrived again after its job started
+    public boolean isSuperseded(K key) {
+        AtomicInteger state = entries.get(key);
+        return state != null && state.get() == SUPERSEDED;
+    }
+
+    // - true when the caller has to queue the rerun, the key then counts as queued again
+    public boolean finished(K key) {
+        AtomicInteger state = entries.get(key);
+        if (state == null) {
+            return false;
+        }
+        for (; ;) {
+            int current = state.get();
+            if (current == SUPERSEDED) {
+                if (state.compareAndSet(SUPERSEDED, QUEUED)) {
+                    return true;
+                }
+            } else if (state.compareAndSet(current, FINISHED)) {
+                entries.remove(key, state);
+                return false;
+            }
+        }
+    }
+
+    // - keys queued or running
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,34 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+// - --------------------------------------------------
+// - a unit of work tagged with the lane (feed) it is scheduled under
+// - and the size of the file it processes, used to order work within the lane
+// - --------------------------------------------------
+public class LaneTask implements Runnable {
+    private final String lane;
+    private final long sizeBytes;
+    private final Runnable task;
+
+    public LaneTask(String lane, Runnable task) {
+        this(lane, 0L, task);
+    }
+
+    public LaneTask(String lane, long sizeBytes, Runnable task) {
+        this.lane = lane;
+        this.sizeBytes = sizeBytes;
+        this.task = task;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    @Override
+    public void run() {
+        task.run();
+    }
+}
@@ -0,0 +1,46 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+// - --------------------------------------------------
+// - queue wait snapshot for one lane and size class, exposed over jmx
+// - --------------------------------------------------
+public class LaneWaitStats {
+    private final String lane;
+    private final String sizeClass;
+    private final int queued;
+    private final long dispatched;
+    private final long meanWaitMillis;
+    private final long maxWaitMillis;
+
+    public LaneWaitStats(String lane, String sizeClass, int queued, long dispatched, long meanWaitMillis, long maxWaitMillis) {
+        this.lane = lane;
+        this.sizeClass = sizeClass;
+        this.queued = queued;
+        this.dispatched = dispatched;
+        this.meanWaitMillis = meanWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public String getLane() {
+        return lane;
+    }
+
+    public String getSizeClass() {
+        return sizeClass;
+    }
+
+    public int getQueued() {
+        return queued;
+    }
+
+    public long getDispatched() {
+        return dispatched;
+    }
+
+    public long getMeanWaitMillis() {
+        return meanWaitMillis;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+}
@@ -0,0 +1,124 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+// - --------------------------------------------------
+// - heap shared by concurrent jobs - a job reserves its estimate before it starts and
+//   waits, rather than fails, while the budget is taken
+// - a reservation that fits goes ahead of earlier ones that do not, so small files are not
+//   held up, worker parked, behind a large one waiting for room - once a waiting reservation
+//   is older than maxBypassMillis nothing passes it anymore, so a large one is not starved
+//   by a stream of small ones
+// - a reservation larger than the whole budget is cut down to it, that job runs alone
+// - --------------------------------------------------
+public class MemoryBudget {
+    public static final long DEFAULT_MAX_BYPASS_MILLIS = 2000;
+
+    private final long budgetBytes;
+    private final long maxBypassNanos;
+    private final Deque<Waiter> waiting = new ArrayDeque<>();
+    private long reservedBytes = 0;
+
+    public MemoryBudget(long budgetBytes) {
+        this(budgetBytes, DEFAULT_MAX_BYPASS_MILLIS);
+    }
+
+    // - maxBypassMillis 0 serves reservations strictly in arrival order
+    public MemoryBudget(long budgetBytes, long maxBypassMillis) {
+        if (budgetBytes < 1) {
+            throw new IllegalArgumentException("memory budget must be at least 1 byte");
+        }
+        this.budgetBytes = budgetBytes;
+        this.maxBypassNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxBypassMillis));
+    }
+
+    // - blocks until the bytes are available, close the reservation when the job is done
+    public Reservation reserve(long bytes) throws InterruptedException {
+        long granted = Math.max(0, Math.min(bytes, budgetBytes));
+        synchronized (this) {
+            Waiter me = new Waiter(granted, System.nanoTime());
+            waiting.addLast(me);
+            try {
+                while (!mayReserve(me)) {
+                    wait();
+                }
+            } finally {
+                waiting.remove(me);
+                // a reservation behind this one may go now, or this one gave up
+                notifyAll();
+            }
+            reservedBytes += granted;
+        }
+        return new Reservation(granted);
+    }
+
+    // - fits, and no earlier reservation has waited too long to be passed
+    private boolean mayReserve(Waiter me) {
+        if (reservedBytes + me.bytes > budgetBytes) {
+            return false;
+        }
+        long now = System.nanoTime();
+        for (Waiter earlier : waiting) {
+            if (earlier == me) {
+                return true;
+            }
+            if (now - earlier.since >= maxBypassNanos) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    public synchronized int getWaitingJobs() {
+        return waiting.size();
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    private synchronized void release(long bytes) {
+        reservedBytes -= bytes;
+        notifyAll();
+    }
+
+    // - ---------------------------------------
+    // - a reservation waiting for room, in arrival order
+    // - ---------------------------------------
+    private static class Waiter {
+        private final long bytes;
+        private final long since;
+
+        private Waiter(long bytes, long since) {
+            this.bytes = bytes;
+            this.since = since;
+        }
+    }
+
+    public class Reservation implements AutoCloseable {
+        private final long bytes;
+        private boolean released = false;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiConsumer;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+// - --------------------------------------------------
+// - coalesces items arriving close together into batches, one open batch per key
+// - a batch opens with its first item and is handed to flush once windowMillis have
+//   passed or it holds maxItems, whichever is first - a burst becomes a few batches,
+//   a lone item waits at most the window
+// - flush runs on the timer thread, or on the adding thread for a full batch, so it
+//   should only hand the batch on
+// - --------------------------------------------------
+public class MicroBatcher<K, T> implements AutoCloseable {
+    private final long windowMillis;
+    private final int maxItems;
+    private final BiConsumer<K, List<T>> flush;
+    private final ScheduledExecutorService timer;
+    private final Map<K, List<T>> openBatches = new HashMap<>();
+
+    public MicroBatcher(long windowMillis, int maxItems, BiConsumer<K, List<T>> flush) {
+        if (maxItems < 1) {
+            throw new IllegalArgumentException("a batch must hold at least one item");
+        }
+        this.windowMillis = windowMillis;
+        this.maxItems = maxItems;
+        this.flush = flush;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "micro-batch-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void add(K key, T item) {
+        List<T> full = null;
+        synchronized (openBatches) {
+            List<T> batch = openBatches.get(key);
+            if (batch == null) {
+                List<T> opened = new ArrayList<>();
+                openBatches.put(key, opened);
+                timer.schedule(() -> flushIfOpen(key, opened), windowMillis, MILLISECONDS);
+                batch = opened;
+            }
+            batch.add(item);
+            if (batch.size() >= maxItems) {
+                openBatches.remove(key);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            flush.accept(key, full);
+        }
+    }
+
+    // - hands over every open batch now, without waiting for their windows
+    public void flushAll() {
+        Map<K, List<T>> batches;
+        synchronized (openBatches) {
+            batches = new HashMap<>(openBatches);
+            openBatches.clear();
+        }
+        batches.forEach(flush);
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        flushAll();
+    }
+
+    // - the window of a batch that filled up ends after a new one opened, identity tells them apart
+    private void flushIfOpen(K key, List<T> batch) {
+        synchronized (openBatches) {
+            if (openBatches.get(key) != batch) {
+                return;
+            }
+            openBatches.remove(key);
+        }
+        flush.accept(key, batch);
+    }
+}
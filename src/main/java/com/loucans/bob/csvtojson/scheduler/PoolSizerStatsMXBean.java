@@ -0,0 +1,9 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+public interface PoolSizerStatsMXBean {
+    int getWorkers();
+
+    double getCpuRatio();
+
+    double getBusyWorkers();
+}
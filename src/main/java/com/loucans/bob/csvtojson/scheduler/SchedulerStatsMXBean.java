@@ -0,0 +1,9 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+import java.util.List;
+
+public interface SchedulerStatsMXBean {
+    List<LaneWaitStats> getLaneWaitStats();
+
+    int getRunningLargeTasks();
+}
@@ -0,0 +1,393 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.requireNonNull;
+
+// - --------------------------------------------------
+// - work queue for the shared worker pool, one lane per feed
+// - lanes are served by stride scheduling: each dispatch advances the lane's
+//   pass by 1/weight and the eligible lane with the lowest pass goes next, so
+//   a lane with weight 3 gets three dispatches for every one of a weight 1 lane
+//   while both have work, and a busy lane cannot starve a quiet one
+// - an idle lane rejoins at the current virtual time, it does not bank credit
+// - within a lane work is ordered shortest job first with aging: a task's deadline
+//   is its enqueue time plus its size divided by the aging rate, so a large file
+//   yields to small files arriving after it for a bounded time only
+// - files over the express threshold are large, at most largeTaskLimit of them run
+//   at once so the remaining workers stay free for small files
+// - tasks that are not LaneTasks, or name an unknown lane, use the default lane
+// - --------------------------------------------------
+public class WeightedLaneQueue extends AbstractQueue<Runnable>
+        implements BlockingQueue<Runnable>, SchedulerStatsMXBean {
+    public static final String DEFAULT_LANE = "default";
+
+    private static final long STRIDE_SCALE = 1L << 20;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+    private final long expressThresholdBytes;
+    private final double agingNanosPerByte;
+    private int largeTaskLimit = Integer.MAX_VALUE;
+    private int runningLargeTasks = 0;
+    private long virtualTime = 0;
+    private long sequence = 0;
+    private int count = 0;
+
+    // - no size awareness, every task is small and lanes are fifo
+    public WeightedLaneQueue() {
+        this(Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public WeightedLaneQueue(long expressThresholdBytes, long agingBytesPerSecond) {
+        if (agingBytesPerSecond < 1) {
+            throw new IllegalArgumentException("aging rate must be positive");
+        }
+        this.expressThresholdBytes = expressThresholdBytes;
+        this.agingNanosPerByte = 1_000_000_000d / agingBytesPerSecond;
+        addLane(DEFAULT_LANE, 1);
+    }
+
+    public void addLane(String name, int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("lane weight must be positive");
+        }
+        lock.lock();
+        try {
+            lanes.computeIfAbsent(name, Lane::new).stride = STRIDE_SCALE / weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void setLargeTaskLimit(int largeTaskLimit) {
+        lock.lock();
+        try {
+            this.largeTaskLimit = Math.max(1, largeTaskLimit);
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        requireNonNull(task);
+        long sizeBytes = task instanceof LaneTask ? ((LaneTask) task).getSizeBytes() : 0L;
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Lane lane = laneOf(task);
+            if (lane.isEmpty()) {
+                lane.pass = Math.max(lane.pass, virtualTime);
+            }
+            Entry entry = new Entry(
+                    task, now, now + (long) (sizeBytes * agingNanosPerByte), sequence++, sizeBytes > expressThresholdBytes);
+            (entry.large ? lane.large : lane.small).add(entry);
+            count++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Runnable task) {
+        offer(task);
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+        return offer(task);
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            Lane lane = nextLane();
+            return isNull(lane) ? null : dequeue(lane);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            Lane lane;
+            while (isNull(lane = nextLane())) {
+                notEmpty.await();
+            }
+            return dequeue(lane);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            Lane lane;
+            while (isNull(lane = nextLane())) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue(lane);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            Lane lane = nextLane();
+            return isNull(lane) ? null : lane.peek(largeAllowed()).task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object task) {
+        lock.lock();
+        try {
+            for (Lane lane : lanes.values()) {
+                if (lane.small.removeIf(e -> e.task == task) || lane.large.removeIf(e -> e.task == task)) {
+                    count--;
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    // - drains regardless of the large task limit, used on shutdownNow
+    @Override
+    public int drainTo(Collection<? super Runnable> collection, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            for (Lane lane : lanes.values()) {
+                while (drained < maxElements && !lane.isEmpty()) {
+                    collection.add((lane.small.isEmpty() ? lane.large : lane.small).poll().task);
+                    count--;
+                    drained++;
+                }
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // - snapshot, used by the executor for getQueue/purge
+    @Override
+    public Iterator<Runnable> iterator() {
+        lock.lock();
+        try {
+            List<Runnable> tasks = new ArrayList<>(count);
+            for (Lane lane : lanes.values()) {
+                lane.small.forEach(e -> tasks.add(e.task));
+                lane.large.forEach(e -> tasks.add(e.task));
+            }
+            return tasks.iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<LaneWaitStats> getLaneWaitStats() {
+        lock.lock();
+        try {
+            List<LaneWaitStats> stats = new ArrayList<>();
+            for (Lane lane : lanes.values()) {
+                stats.add(lane.smallWaits.snapshot(lane.name, "small", lane.small.size()));
+                stats.add(lane.largeWaits.snapshot(lane.name, "large", lane.large.size()));
+            }
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getRunningLargeTasks() {
+        lock.lock();
+        try {
+            return runningLargeTasks;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Runnable dequeue(Lane lane) {
+        Entry entry = lane.peek(largeAllowed());
+        (entry.large ? lane.large : lane.small).poll();
+        (entry.large ? lane.largeWaits : lane.smallWaits).record(System.nanoTime() - entry.enqueuedNanos);
+        virtualTime = lane.pass;
+        lane.pass += lane.stride;
+        count--;
+
+        if (!entry.large) {
+            return entry.task;
+        }
+        runningLargeTasks++;
+        return () -> {
+            try {
+                entry.task.run();
+            } finally {
+                largeTaskFinished();
+            }
+        };
+    }
+
+    private void largeTaskFinished() {
+        lock.lock();
+        try {
+            runningLargeTasks--;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean largeAllowed() {
+        return runningLargeTasks < largeTaskLimit;
+    }
+
+    private Lane nextLane() {
+        boolean largeAllowed = largeAllowed();
+        Lane next = null;
+        for (Lane lane : lanes.values()) {
+            if (lane.isEligible(largeAllowed) && (isNull(next) || lane.pass < next.pass)) {
+                next = lane;
+            }
+        }
+        return next;
+    }
+
+    private Lane laneOf(Runnable task) {
+        Lane lane = task instanceof LaneTask ? lanes.get(((LaneTask) task).getLane()) : null;
+        return isNull(lane) ? lanes.get(DEFAULT_LANE) : lane;
+    }
+
+    private static class Lane {
+        final String name;
+        final PriorityQueue<Entry> small = new PriorityQueue<>();
+        final PriorityQueue<Entry> large = new PriorityQueue<>();
+        final WaitStats smallWaits = new WaitStats();
+        final WaitStats largeWaits = new WaitStats();
+        long stride;
+        long pass;
+
+        Lane(String name) {
+            this.name = name;
+        }
+
+        boolean isEmpty() {
+            return small.isEmpty() && large.isEmpty();
+        }
+
+        boolean isEligible(boolean largeAllowed) {
+            return !small.isEmpty() || (largeAllowed && !large.isEmpty());
+        }
+
+        Entry peek(boolean largeAllowed) {
+            Entry smallest = small.peek();
+            Entry largest = largeAllowed ? large.peek() : null;
+            if (isNull(smallest)) {
+                return largest;
+            }
+            return isNull(largest) || smallest.compareTo(largest) <= 0 ? smallest : largest;
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        final Runnable task;
+        final long enqueuedNanos;
+        final long deadlineNanos;
+        final long sequence;
+        final boolean large;
+
+        Entry(Runnable task, long enqueuedNanos, long deadlineNanos, long sequence, boolean large) {
+            this.task = task;
+            this.enqueuedNanos = enqueuedNanos;
+            this.deadlineNanos = deadlineNanos;
+            this.sequence = sequence;
+            this.large = large;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byDeadline = Long.compare(deadlineNanos - other.deadlineNanos, 0);
+            return byDeadline != 0 ? byDeadline : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class WaitStats {
+        long dispatched;
+        long totalWaitNanos;
+        long maxWaitNanos;
+
+        void record(long waitNanos) {
+            dispatched++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        }
+
+        LaneWaitStats snapshot(String lane, String sizeClass, int queued) {
+            return new LaneWaitStats(
+                    lane,
+                    sizeClass,
+                    queued,
+                    dispatched,
+                    dispatched == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / dispatched),
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+        }
+    }
+}
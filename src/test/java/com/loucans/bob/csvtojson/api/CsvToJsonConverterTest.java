@@ -0,0 +1,140 @@
+package com.loucans.bob.csvtojson.api;
+
+import com.loucans.bob.csvtojson.model.CsvRow;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CsvToJsonConverterTest {
+    private static final String CSV =
+            "INTERNAL_ID,FIRST_NAME,MIDDLE_NAME,LAST_NAME,PHONE_NUM\n" +
+            "12345670,first_name_0,,last_name_0,555-555-5550\n" +
+            "1234567A,first_name_1,,last_name_1,555-555-5551\n" +
+            "12345672,first_name_2,,last_name_2,555-555-5552\n";
+
+    private CsvToJsonConverter converter;
+    private List<String> errors;
+
+    @Before
+    public void setup() {
+        converter = new CsvToJsonConverter();
+        errors = new ArrayList<>();
+    }
+
+    @Test
+    public void convert_shouldStreamJsonAndErrors_whenGivenStreams() {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+
+        converter.convert(
+                new ByteArrayInputStream(CSV.getBytes(UTF_8)),
+                json,
+                (rowNum, error) -> errors.add(rowNum + ":" + error));
+
+        assertEquals(
+                "[\n" +
+                "{\"phone\":\"555-555-5550\",\"name\":{\"last\":\"last_name_0\",\"first\":\"first_name_0\"},\"id\":12345670},\n" +
+                "{\"phone\":\"555-555-5552\",\"name\":{\"last\":\"last_name_2\",\"first\":\"first_name_2\"},\"id\":12345672}\n" +
+                "]",
+                json.toString(UTF_8));
+        assertEquals(List.of("3:invalid INTERNAL_ID [required, length <= 8, digits only]"), errors);
+    }
+
+    @Test
+    public void publisher_shouldOnlyPublishRequestedRows_whenSubscriberSignalsDemand() throws InterruptedException {
+        LinkedBlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        CountDownLatch subscribed = new CountDownLatch(1);
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+
+        converter.publisher(new StringReader(CSV), (rowNum, error) -> errors.add(rowNum + ":" + error))
+                .subscribe(new Flow.Subscriber<>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription s) {
+                        subscription[0] = s;
+                        subscribed.countDown();
+                    }
+
+                    @Override
+                    public void onNext(CsvRow item) {
+                        signals.add(item);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        signals.add(throwable);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        signals.add("complete");
+                    }
+                });
+        assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+
+        subscription[0].request(1);
+        CsvRow first = (CsvRow) signals.poll(5, TimeUnit.SECONDS);
+        assertArrayEquals(
+                new String[]{"12345670", "first_name_0", "", "last_name_0", "555-555-5550"},
+                first.getRowData());
+        assertNull(signals.poll(100, TimeUnit.MILLISECONDS));
+
+        subscription[0].request(5);
+        CsvRow second = (CsvRow) signals.poll(5, TimeUnit.SECONDS);
+        assertEquals("12345672", second.getRowData()[0]);
+        assertEquals("complete", signals.poll(5, TimeUnit.SECONDS));
+        assertEquals(List.of("3:invalid INTERNAL_ID [required, length <= 8, digits only]"), errors);
+    }
+
+    @Test
+    public void publisher_shouldSignalErrorAfterOnNextReturns_whenRequestIsNotPositive() throws InterruptedException {
+        LinkedBlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+
+        converter.publisher(new StringReader(CSV), (rowNum, error) -> errors.add(rowNum + ":" + error))
+                .subscribe(new Flow.Subscriber<>() {
+                    private Flow.Subscription subscription;
+
+                    @Override
+                    public void onSubscribe(Flow.Subscription s) {
+                        subscription = s;
+                        subscription.request(1);
+                    }
+
+                    @Override
+                    public void onNext(CsvRow item) {
+                        subscription.request(0);
+                        subscription.request(-1);
+                        signals.add(item.getRowData()[0]);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        signals.add(throwable);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        signals.add("complete");
+                    }
+                });
+
+        assertEquals("12345670", signals.poll(5, TimeUnit.SECONDS));
+        Object error = signals.poll(5, TimeUnit.SECONDS);
+        assertTrue(error instanceof IllegalArgumentException);
+        assertEquals("request must be positive, was 0", ((Throwable) error).getMessage());
+        assertNull(signals.poll(100, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,115 @@
+package com.loucans.bob.csvtojson.claim;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileClaimsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final FileClaims claims = new FileClaims("node0", Duration.ofMinutes(1));
+
+    @After
+    public void teardown() {
+        claims.stop();
+    }
+
+    @Test
+    public void start_shouldReleaseClaimedFilesBackToInput() throws Exception {
+        Path inputPath = folder.getRoot().toPath();
+        Path claimedDir = Files.createDirectories(inputPath.resolve(FileClaims.CLAIMED_DIR).resolve("node0"));
+        Files.writeString(claimedDir.resolve("a.csv"), "claimed", UTF_8);
+
+        claims.start(List.of(inputPath));
+
+        assertEquals("claimed", Files.readString(inputPath.resolve("a.csv"), UTF_8));
+        assertTrue(Files.notExists(claimedDir.resolve("a.csv")));
+    }
+
+    @Test
+    public void start_shouldKeepNewerFile_whenSameNameWasDroppedSinceTheClaim() throws Exception {
+        Path inputPath = folder.getRoot().toPath();
+        Path claimedDir = Files.createDirectories(inputPath.resolve(FileClaims.CLAIMED_DIR).resolve("node0"));
+        Files.writeString(claimedDir.resolve("a.csv"), "claimed", UTF_8);
+        Files.writeString(inputPath.resolve("a.csv"), "newer", UTF_8);
+        Files.writeString(inputPath.resolve("a.released-node0-1.csv"), "released before", UTF_8);
+
+        claims.start(List.of(inputPath));
+
+        assertEquals("newer", Files.readString(inputPath.resolve("a.csv"), UTF_8));
+        assertEquals("released before", Files.readString(inputPath.resolve("a.released-node0-1.csv"), UTF_8));
+        assertEquals("claimed", Files.readString(inputPath.resolve("a.released-node0-2.csv"), UTF_8));
+        assertTrue(Files.notExists(claimedDir.resolve("a.csv")));
+    }
+
+    @Test
+    public void start_shouldReleaseFileLeftAside_whenTheNodeStoppedWhileReleasing() throws Exception {
+        Path inputPath = folder.getRoot().toPath();
+        Path claimedDir = Files.createDirectories(inputPath.resolve(FileClaims.CLAIMED_DIR).resolve("node0"));
+        Files.writeString(claimedDir.resolve("a.csv" + FileClaims.RELEASING_SUFFIX), "recovered", UTF_8);
+        Files.writeString(inputPath.resolve("a.csv"), "newer", UTF_8);
+
+        claims.start(List.of(inputPath));
+
+        assertEquals("newer", Files.readString(inputPath.resolve("a.csv"), UTF_8));
+        assertEquals("recovered", Files.readString(inputPath.resolve("a.released-node0-1.csv"), UTF_8));
+        assertTrue(Files.notExists(claimedDir.resolve("a.csv" + FileClaims.RELEASING_SUFFIX)));
+    }
+
+    @Test
+    public void claim_shouldLeaveFile_whileAnotherNodeHoldsTheName() throws Exception {
+        Path inputPath = folder.getRoot().toPath();
+        FileClaims otherClaims = new FileClaims("node1", Duration.ofMinutes(1));
+        try {
+            claims.start(List.of(inputPath));
+            otherClaims.start(List.of(inputPath));
+            Files.writeString(inputPath.resolve("a.csv"), "first", UTF_8);
+            assertNotNull(claims.claim(inputPath, Paths.get("a.csv")));
+
+            // dropped again while node0 converts the first copy
+            Files.writeString(inputPath.resolve("a.csv"), "second", UTF_8);
+            assertNull(otherClaims.claim(inputPath, Paths.get("a.csv")));
+            assertEquals("second", Files.readString(inputPath.resolve("a.csv"), UTF_8));
+
+            // node0 is told to queue it, whichever node gets there first converts it
+            assertTrue(claims.done(inputPath, Paths.get("a.csv")));
+            Path claimedDir = otherClaims.claim(inputPath, Paths.get("a.csv"));
+            assertEquals("second", Files.readString(claimedDir.resolve("a.csv"), UTF_8));
+            assertFalse(otherClaims.done(inputPath, Paths.get("a.csv")));
+        } finally {
+            otherClaims.stop();
+        }
+    }
+
+    @Test
+    public void start_shouldReleaseNamesHeldWhenTheNodeStopped() throws Exception {
+        Path inputPath = folder.getRoot().toPath();
+        claims.start(List.of(inputPath));
+        Files.writeString(inputPath.resolve("a.csv"), "first", UTF_8);
+        claims.claim(inputPath, Paths.get("a.csv"));
+        claims.stop();
+
+        FileClaims restarted = new FileClaims("node0", Duration.ofMinutes(1));
+        try {
+            restarted.start(List.of(inputPath));
+            assertNotNull(restarted.claim(inputPath, Paths.get("a.csv")));
+        } finally {
+            restarted.stop();
+        }
+    }
+}
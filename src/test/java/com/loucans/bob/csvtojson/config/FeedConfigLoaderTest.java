@@ -0,0 +1,116 @@
+package com.loucans.bob.csvtojson.config;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FeedConfigLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void load_shouldReadFeeds_withWeightDefaultingToOne() throws Exception {
+        List<FeedConfig> feeds = new FeedConfigLoader().load(config(
+                "feeds=orders, customers",
+                feed("orders", "/data/orders"),
+                "feed.orders.weight=3",
+                feed("customers", "/data/customers")));
+
+        assertEquals(2, feeds.size());
+        assertEquals("orders", feeds.get(0).getName());
+        assertEquals("/data/orders/input", feeds.get(0).getInputPath());
+        assertEquals("/data/orders/output", feeds.get(0).getOutputPath());
+        assertEquals("/data/orders/error", feeds.get(0).getErrorPath());
+        assertEquals(3, feeds.get(0).getWeight());
+        assertEquals("customers", feeds.get(1).getName());
+        assertEquals(1, feeds.get(1).getWeight());
+    }
+
+    @Test
+    public void load_shouldFail_whenKeyIsMissing() throws Exception {
+        assertFails("feed [orders] is missing [errorPath]", config(
+                "feeds=orders",
+                "feed.orders.inputPath=/data/orders/input",
+                "feed.orders.outputPath=/data/orders/output"));
+    }
+
+    @Test
+    public void load_shouldFail_whenNoFeedsAreDefined() throws Exception {
+        String config = config(feed("orders", "/data/orders"));
+
+        assertFails("no feeds defined in config file: [" + config + "]", config);
+    }
+
+    @Test
+    public void load_shouldFail_whenWeightIsNotANumber() throws Exception {
+        assertFails("feed [orders] has an invalid weight: [high]", config(
+                "feeds=orders",
+                feed("orders", "/data/orders"),
+                "feed.orders.weight=high"));
+    }
+
+    @Test
+    public void load_shouldFail_whenWeightIsNotPositive() throws Exception {
+        assertFails("feed [orders] weight must be positive", config(
+                "feeds=orders",
+                feed("orders", "/data/orders"),
+                "feed.orders.weight=0"));
+    }
+
+    @Test
+    public void load_shouldFail_whenFeedIsDefinedTwice() throws Exception {
+        assertFails("feed [orders] is defined twice", config(
+                "feeds=orders,customers,orders",
+                feed("orders", "/data/orders"),
+                feed("customers", "/data/customers")));
+    }
+
+    @Test
+    public void load_shouldFail_whenFeedIsNamedDefault() throws Exception {
+        assertFails("feed name [default] is reserved", config(
+                "feeds=orders,default",
+                feed("orders", "/data/orders"),
+                feed("default", "/data/default")));
+    }
+
+    @Test
+    public void load_shouldFail_whenFeedsShareTheInputPath() throws Exception {
+        assertFails("feeds [orders] and [customers] have the same inputPath: [/data/orders/../orders/input/]", config(
+                "feeds=orders,customers",
+                feed("orders", "/data/orders"),
+                "feed.customers.inputPath=/data/orders/../orders/input/",
+                "feed.customers.outputPath=/data/customers/output",
+                "feed.customers.errorPath=/data/customers/error"));
+    }
+
+    private void assertFails(String message, String configFilePath) {
+        try {
+            new FeedConfigLoader().load(configFilePath);
+            fail("expected an invalid config");
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private String config(String... lines) throws IOException {
+        File file = folder.newFile();
+        Files.write(file.toPath(), List.of(lines), UTF_8);
+        return file.getAbsolutePath();
+    }
+
+    private static String feed(String name, String root) {
+        return String.format("feed.%1$s.inputPath=%2$s/input%n"
+                + "feed.%1$s.outputPath=%2$s/output%n"
+                + "feed.%1$s.errorPath=%2$s/error", name, root);
+    }
+}
@@ -0,0 +1,121 @@
+package com.loucans.bob.csvtojson.durability;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FileSyncerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sync_shouldDoNothing_whenDurabilityNone() throws Exception {
+        FileSyncer syncer = new FileSyncer(Durability.NONE);
+
+        syncer.sync(folder.newFile().toPath());
+
+        assertEquals(0, syncer.getRequests());
+        assertEquals(0, syncer.getFsyncs());
+    }
+
+    @Test
+    public void sync_shouldFsyncFilesAndTheirDirectoryOnce_whenDurabilityFile() throws Exception {
+        FileSyncer syncer = new FileSyncer(Durability.FILE);
+        Path json = folder.newFile("a.json").toPath();
+        Path errors = folder.newFile("a.csv").toPath();
+
+        syncer.sync(json, errors, folder.getRoot().toPath().resolve("missing.json"));
+
+        // two files, one shared directory, the missing file skipped
+        assertEquals(3, syncer.getFsyncs());
+    }
+
+    @Test
+    public void sync_shouldShareRounds_whenGroupCommit() throws Exception {
+        CountDownLatch leaderInRound = new CountDownLatch(1);
+        CountDownLatch releaseLeader = new CountDownLatch(1);
+        AtomicInteger directoryFsyncs = new AtomicInteger();
+        FileSyncer syncer = new FileSyncer(Durability.GROUP_COMMIT) {
+            @Override
+            void fsyncDirectory(Path dir) {
+                if (directoryFsyncs.incrementAndGet() == 1) {
+                    // hold the first round open so everyone else queues up behind it
+                    leaderInRound.countDown();
+                    awaitUninterruptibly(releaseLeader);
+                }
+                super.fsyncDirectory(dir);
+            }
+        };
+        Thread leader = syncInThread(syncer, Files.writeString(folder.getRoot().toPath().resolve("leader.json"), "[]"));
+        leaderInRound.await();
+
+        int callers = 16;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            threads.add(syncInThread(syncer, Files.writeString(folder.getRoot().toPath().resolve(i + ".json"), "[]")));
+        }
+        // own files fsynced, all waiting for the next round
+        while (syncer.getQueued() < callers) {
+            Thread.sleep(1);
+        }
+        releaseLeader.countDown();
+        leader.join();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(callers + 1, syncer.getRequests());
+        // the leader's round, then one round shared by every caller queued behind it
+        assertEquals(2, directoryFsyncs.get());
+        assertEquals(callers + 1 + 2, syncer.getFsyncs());
+    }
+
+    @Test
+    public void sync_shouldFailEveryMemberOfTheRound_whenDirectoryFsyncFails() throws Exception {
+        FileSyncer syncer = new FileSyncer(Durability.GROUP_COMMIT) {
+            @Override
+            void fsyncDirectory(Path dir) {
+                throw new RuntimeException("directory fsync failed");
+            }
+        };
+
+        try {
+            syncer.sync(folder.newFile("a.json").toPath());
+            fail("expected the round's failure");
+        } catch (RuntimeException e) {
+            assertEquals("directory fsync failed", e.getMessage());
+        }
+    }
+
+    private static Thread syncInThread(FileSyncer syncer, Path file) {
+        Thread thread = new Thread(() -> syncer.sync(file));
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void fromOption_shouldParseCommandLineNames() {
+        assertEquals(Durability.NONE, Durability.fromOption("none"));
+        assertEquals(Durability.FILE, Durability.fromOption("file"));
+        assertEquals(Durability.GROUP_COMMIT, Durability.fromOption("group-commit"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.loucans.bob.csvtojson.events;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class StageTimerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void stop_shouldCommitEveryChunk_whileRecording() throws Exception {
+        List<RecordedEvent> events = record(1000, 100);
+
+        assertEquals(10, events.size());
+        assertEquals(1000, events.stream().mapToInt(event -> event.getInt("rows")).sum());
+    }
+
+    @Test
+    public void finish_shouldCommitPartialChunk() throws Exception {
+        List<RecordedEvent> events = record(250, 100);
+
+        assertEquals(3, events.size());
+        assertEquals(250, events.stream().mapToInt(event -> event.getInt("rows")).sum());
+    }
+
+    private List<RecordedEvent> record(int rows, int chunkRows) throws Exception {
+        Path dump = folder.getRoot().toPath().resolve("stages.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(StageChunkEvent.class);
+            recording.start();
+            StageTimer timer = new StageTimer("test.csv", "parse", chunkRows);
+            for (int row = 0; row < rows; row++) {
+                timer.stop(timer.start());
+            }
+            timer.finish();
+            recording.stop();
+            recording.dump(dump);
+        }
+        return RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> event.getEventType().getName().equals("com.loucans.bob.csvtojson.StageChunk"))
+                .collect(Collectors.toList());
+    }
+}
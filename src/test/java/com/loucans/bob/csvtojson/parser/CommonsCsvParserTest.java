@@ -7,6 +7,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
@@ -16,6 +17,7 @@ import static java.lang.String.format;
 import static java.util.Objects.nonNull;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class CommonsCsvParserTest {
     private CommonsCsvParser parser;
@@ -90,6 +92,71 @@ public class CommonsCsvParserTest {
         assertEquals("(startline 2) EOF reached before encapsulated token finished", errors.get(2).getMessage());
     }
 
+    @Test
+    public void parse_shouldRefillOneRow_whenReusingRows() {
+        parser = new CommonsCsvParser(csvFile("happy_path")).reusingRows();
+        Map<Integer, CsvRow> snapshots = new HashMap<>();
+        rowHandler = (rowNum, csvRow) -> {
+            processedRows.put(rowNum, csvRow);
+            snapshots.put(rowNum, csvRow.snapshot());
+        };
+
+        parser.parse(rowHandler, errorHandler);
+
+        assertSame(processedRows.get(1), processedRows.get(2));
+        assertEquals(5, processedRows.get(2).size());
+        assertEquals("a1", processedRows.get(2).get(0));
+        assertHeader(snapshots.get(1).getRowData());
+        assertArrayEquals(
+                new String[]{"a1", "b1", "c1", "d1", "e1"},
+                snapshots.get(2).getRowData());
+        assertEquals(0, errors.size());
+    }
+
+    @Test
+    public void parse_shouldProduceError_whenFieldIsLongerThanMaxFieldLength() {
+        String longField = "x".repeat(100);
+        parser = new CommonsCsvParser(new StringReader(
+                "a,b,c,d,e\r\n" +
+                "a1,\"b1\",c1,d1,e1\r\n" +
+                "a2,b2," + longField + ",d2,e2\r\n" +
+                "a3,b3,c3,d3,e3\r\n"))
+                .maxFieldLength(10);
+
+        parser.parse(rowHandler, errorHandler);
+
+        assertEquals(3, processedRows.size());
+        assertArrayEquals(
+                new String[]{"a1", "b1", "c1", "d1", "e1"},
+                processedRows.get(2).getRowData());
+        assertArrayEquals(
+                new String[]{"a3", "b3", "c3", "d3", "e3"},
+                processedRows.get(4).getRowData());
+        assertEquals(1, errors.size());
+        assertEquals("field longer than 10 characters", errors.get(3).getMessage());
+    }
+
+    @Test
+    public void parse_shouldSkipRestOfRecord_whenLongFieldIsQuotedOverLines() {
+        parser = new CommonsCsvParser(new StringReader(
+                "a,b,c,d,e\r\n" +
+                "a1,\"b1 is, \"\"quoted\"\"\r\nover\r\nlines\",c1,d1,e1\r\n" +
+                "a2,b2,c2,d2,e2\r\n" +
+                "a3,\"b3\r\n" + "x".repeat(100)))
+                .maxFieldLength(10);
+
+        parser.parse(rowHandler, errorHandler);
+
+        assertEquals(2, processedRows.size());
+        assertHeader(processedRows.get(1).getRowData());
+        assertArrayEquals(
+                new String[]{"a2", "b2", "c2", "d2", "e2"},
+                processedRows.get(3).getRowData());
+        assertEquals(2, errors.size());
+        assertEquals("field longer than 10 characters", errors.get(2).getMessage());
+        assertEquals("field longer than 10 characters", errors.get(4).getMessage());
+    }
+
     @Test
     public void parse_shouldProduceNothing_whenFileIsEmpty() {
         parser = new CommonsCsvParser(csvFile("empty_file"));
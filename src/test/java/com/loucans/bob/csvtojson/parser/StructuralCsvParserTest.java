@@ -0,0 +1,153 @@
+package com.loucans.bob.csvtojson.parser;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+// - --------------------------------------------------
+// - the structural parser has to match CommonsCsvParser row for row and error for error,
+//   so most cases parse the same input with both and compare what the callbacks saw
+// - --------------------------------------------------
+public class StructuralCsvParserTest {
+
+    @Test
+    public void parse_shouldMatchCommons_forTestFiles() throws IOException {
+        for (String name : List.of("happy_path", "empty_file", "headers_only", "malformed_quoted_value", "row_missing_data")) {
+            String csv = Files.readString(csvFile(name).toPath());
+            assertSameAsCommons(csv, 0, 16);
+            assertSameAsCommons(csv, 0, StructuralCsvParser.DEFAULT_BLOCK_BYTES);
+        }
+    }
+
+    @Test
+    public void parse_shouldMatchCommons_forQuotingEdgeCases() {
+        List<String> cases = List.of(
+                "",
+                "\r\n",
+                "\n\n",
+                "a",
+                "a,",
+                "a,\r\n",
+                ",",
+                "a\rb\r\nc\nd",
+                "\"a\"",
+                "\"a\"\"b\",c",
+                "\"\"",
+                "\"\"\"\"",
+                "\"a,b\r\nc\",d\r\n",
+                "ab\"c,d",
+                "\"a\" ,b",
+                "\"a\"\t\r\nb",
+                "\"a\"\u3000,b",
+                "\"a\"\u00a0,b",
+                "\"a\"x,b",
+                "a,\"b\r\nc,d\r\n",
+                "a,b\r\nc,\"d",
+                "\"\u00e9\ud834\udd1e\",\ud834\udd1e\u00e9\r\n",
+                "a,b\r\n\r\nc,d\r\n");
+        for (String csv : cases) {
+            for (int blockBytes = 1; blockBytes <= 12; blockBytes++) {
+                assertSameAsCommons(csv, 0, blockBytes);
+                assertSameAsCommons(csv, 2, blockBytes);
+            }
+        }
+    }
+
+    @Test
+    public void parse_shouldProduceError_whenFieldIsLongerThanMaxFieldLength() {
+        String csv = "a,b,c,d,e\r\n" +
+                "a1,\"b1\",c1,d1,e1\r\n" +
+                "a2,b2," + "x".repeat(100) + ",d2,e2\r\n" +
+                "a3,b3,c3,d3,e3\r\n";
+
+        List<String> seen = parse(new StructuralCsvParser(stream(csv), "test", 16).maxFieldLength(10));
+
+        assertEquals(List.of(
+                "1 [a, b, c, d, e]",
+                "2 [a1, b1, c1, d1, e1]",
+                "3 error field longer than 10 characters",
+                "4 [a3, b3, c3, d3, e3]"), seen);
+        assertSameAsCommons(csv, 10, 16);
+    }
+
+    // - random mixes of structural characters, whitespace and multi byte characters
+    @Test
+    public void parse_shouldMatchCommons_forRandomInput() {
+        String[] pieces = {"a", "bc", ",", ",", "\"", "\"", "\"\"", "\r\n", "\n", "\r", " ", "\t", "\u00e9", "\u3000", "\ud834\udd1e", "xyz"};
+        Random random = new Random(43);
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder csv = new StringBuilder();
+            int length = random.nextInt(24);
+            for (int i = 0; i < length; i++) {
+                csv.append(pieces[random.nextInt(pieces.length)]);
+            }
+            int maxFieldLength = random.nextBoolean() ? 0 : 1 + random.nextInt(6);
+            int blockBytes = 1 + random.nextInt(20);
+            assertSameAsCommons(csv.toString(), maxFieldLength, blockBytes);
+        }
+    }
+
+    @Test
+    public void parse_shouldStopAfterMaxRows() {
+        List<String> seen = parse(new StructuralCsvParser(stream("a\r\nb\r\n\"c")).maxRows(2));
+
+        assertEquals(List.of("1 [a]", "2 [b]"), seen);
+    }
+
+    @Test
+    public void parse_shouldReuseRow_whenReusingRows() {
+        List<Object> rows = new ArrayList<>();
+        new StructuralCsvParser(stream("a,b\r\nc,d\r\n")).reusingRows()
+                .parse((rowNum, csvRow) -> rows.add(csvRow), (rowNum, error) -> { });
+
+        assertEquals(2, rows.size());
+        assertEquals(System.identityHashCode(rows.get(0)), System.identityHashCode(rows.get(1)));
+    }
+
+    private static void assertSameAsCommons(String csv, int maxFieldLength, int blockBytes) {
+        CommonsCsvParser commons = new CommonsCsvParser(new StringReader(csv));
+        StructuralCsvParser structural = new StructuralCsvParser(stream(csv), "test", blockBytes);
+        if (maxFieldLength > 0) {
+            commons.maxFieldLength(maxFieldLength);
+            structural.maxFieldLength(maxFieldLength);
+        }
+        assertEquals(format("csv [%s], maxFieldLength %d, block %d", escape(csv), maxFieldLength, blockBytes),
+                parse(commons), parse(structural));
+    }
+
+    private static List<String> parse(CsvParser parser) {
+        List<String> seen = new ArrayList<>();
+        parser.parse(
+                (rowNum, csvRow) -> seen.add(rowNum + " " + Arrays.toString(csvRow.getRowData())),
+                (rowNum, error) -> seen.add(rowNum + " error " + error.getMessage()));
+        return seen;
+    }
+
+    private static ByteArrayInputStream stream(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(UTF_8));
+    }
+
+    private static String escape(String csv) {
+        return csv.replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t");
+    }
+
+    private File csvFile(String testFileName) {
+        URL resource = getClass().getClassLoader().getResource(
+                format("com/loucans/bob/csvtojson/csvs/%s.csv", testFileName));
+        return new File(Objects.requireNonNull(resource).getFile());
+    }
+}
@@ -0,0 +1,81 @@
+package com.loucans.bob.csvtojson.pipeline;
+
+import com.loucans.bob.csvtojson.exception.InvalidDataRowException;
+import com.loucans.bob.csvtojson.exception.InvalidDataValueException;
+import com.loucans.bob.csvtojson.model.CsvRow;
+import com.loucans.bob.csvtojson.parser.CsvParser;
+import com.loucans.bob.csvtojson.parser.CsvRowCallbackErrorHandler;
+import com.loucans.bob.csvtojson.parser.CsvRowCallbackHandler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CsvPipelineTest {
+
+    @Test
+    public void run_shouldKeepFileOrder_whenRowsAreSpreadOverWorkers() {
+        List<String> results = new ArrayList<>();
+
+        new CsvPipeline(3, 7, 2).run(
+                generatedRows(10_000),
+                (rowNum, csvRow) -> {
+                    if (rowNum % 13 == 0) {
+                        throw new InvalidDataValueException("invalid", csvRow.getRowData()[0]);
+                    }
+                    return "json-" + csvRow.getRowData()[0];
+                },
+                (rowNum, serializedRow) -> results.add(rowNum + ":" + serializedRow),
+                (rowNum, error) -> results.add(rowNum + ":" + error.getMessage()));
+
+        assertEquals(10_000, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            int rowNum = i + 1;
+            assertEquals(
+                    rowNum % 13 == 0 ? rowNum + ":invalid" : rowNum + ":json-value_" + rowNum,
+                    results.get(i));
+        }
+    }
+
+    @Test
+    public void run_shouldRethrowAndStop_whenWriterStageFails() {
+        List<Integer> written = new ArrayList<>();
+
+        try {
+            new CsvPipeline(2, 4, 2).run(
+                    generatedRows(100_000),
+                    (rowNum, csvRow) -> csvRow.getRowData()[0],
+                    (rowNum, serializedRow) -> {
+                        if (rowNum == 10) {
+                            throw new InvalidDataRowException("writer failed", null);
+                        }
+                        written.add(rowNum);
+                    },
+                    (rowNum, error) -> fail());
+            fail();
+        } catch (InvalidDataRowException e) {
+            assertEquals("writer failed", e.getMessage());
+        }
+
+        assertEquals(9, written.size());
+    }
+
+    private CsvParser generatedRows(int rows) {
+        return new CsvParser() {
+            @Override
+            public void parse(CsvRowCallbackHandler rowCallbackHandler,
+                              CsvRowCallbackErrorHandler rowCallbackErrorHandler) {
+                for (int rowNum = 1; rowNum <= rows; rowNum++) {
+                    rowCallbackHandler.handleRow(rowNum, new CsvRow(new String[]{"value_" + rowNum}));
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+package com.loucans.bob.csvtojson.processor;
+
+import com.loucans.bob.csvtojson.model.CsvRow;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SortingOutputWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RecordingOutputWriter delegate;
+    private File tempDir;
+
+    @Before
+    public void setup() throws IOException {
+        delegate = new RecordingOutputWriter();
+        tempDir = folder.newFolder("sort");
+    }
+
+    @Test
+    public void close_shouldWriteRecordsInIdOrder_whenOneRunFits() throws IOException {
+        SortingOutputWriter writer = new SortingOutputWriter(delegate, tempDir.toPath(), 1024 * 1024);
+
+        writer.writeRecord(row(30, "c"));
+        writer.writeRecord(row(10, "a"));
+        writer.writeRecord(row(20, "b"));
+        writer.close();
+
+        assertEquals(List.of("10:a", "20:b", "30:c"), delegate.records);
+        assertTrue(delegate.closed);
+        assertEquals(0, tempDir.list().length);
+    }
+
+    @Test
+    public void close_shouldMergeSpilledRuns_whenRecordsExceedManyRuns() throws IOException {
+        // a few records per run and more runs than one merge takes
+        SortingOutputWriter writer = new SortingOutputWriter(delegate, tempDir.toPath(), 300);
+        Random random = new Random(42);
+        int records = 2_000;
+        long[] ids = new long[records];
+        for (int i = 0; i < records; i++) {
+            ids[i] = 10_000_000 + random.nextInt(500);
+            // pipeline path, serialized on a worker, written on the writer thread
+            writer.writeSerializedRecord(writer.serializeRecord(row(ids[i], Integer.toString(i))));
+        }
+        writer.close();
+
+        assertEquals(records, delegate.records.size());
+        long[] written = new long[records];
+        int previousPosition = -1;
+        long previousId = -1;
+        for (int i = 0; i < records; i++) {
+            String[] record = delegate.records.get(i).split(":");
+            written[i] = Long.parseLong(record[0]);
+            int position = Integer.parseInt(record[1]);
+            if (written[i] == previousId) {
+                // equal ids keep input order
+                assertTrue(position > previousPosition);
+            }
+            previousId = written[i];
+            previousPosition = position;
+        }
+        long[] expected = ids.clone();
+        Arrays.sort(expected);
+        assertArrayEquals(expected, written);
+        assertEquals(0, tempDir.list().length);
+    }
+
+    @Test
+    public void close_shouldPassEmptyMarker_whenNoRecords() throws IOException {
+        SortingOutputWriter writer = new SortingOutputWriter(delegate, tempDir.toPath(), 1024);
+
+        writer.writeRecord(null);
+        writer.close();
+
+        assertEquals(1, delegate.emptyMarkers);
+        assertEquals(0, delegate.records.size());
+    }
+
+    private static CsvRow row(long id, String name) {
+        return CsvRow.wrap(new String[]{Long.toString(id), name, "", "last", "555-555-5555"});
+    }
+
+    // - serializes as id:first name so order and stability are visible
+    private static class RecordingOutputWriter implements OutputWriter {
+        private final List<String> records = new ArrayList<>();
+        private int emptyMarkers = 0;
+        private boolean closed = false;
+
+        @Override
+        public void writeRecord(CsvRow csvRow) {
+            writeSerializedRecord(csvRow == null ? null : serializeRecord(csvRow));
+        }
+
+        @Override
+        public String serializeRecord(CsvRow csvRow) {
+            return csvRow.get(0) + ":" + csvRow.get(1);
+        }
+
+        @Override
+        public void writeSerializedRecord(String serializedRecord) {
+            if (serializedRecord == null) {
+                emptyMarkers++;
+            } else {
+                records.add(serializedRecord);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptivePoolSizerTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<Integer> resizes = new CopyOnWriteArrayList<>();
+    private ThreadPoolExecutor executor;
+    private AdaptivePoolSizer sizer;
+
+    @After
+    public void teardown() {
+        if (sizer != null) {
+            sizer.close();
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void adjust_shouldGrow_whenBusyWorkersWaitOnIoWithBacklog() {
+        sizer = sizer(2, 6, 4);
+
+        // two busy workers using a fifth of a core each
+        assertEquals(2, sizer.adjust(SECOND / 5 * 2, 2 * SECOND, SECOND, 10));
+        assertEquals(2, sizer.adjust(SECOND / 5 * 2, 2 * SECOND, SECOND, 10));
+        assertEquals(3, sizer.adjust(SECOND / 5 * 2, 2 * SECOND, SECOND, 10));
+
+        assertEquals(3, executor.getCorePoolSize());
+        assertEquals(3, executor.getMaximumPoolSize());
+        assertEquals(List.of(3), resizes);
+    }
+
+    @Test
+    public void adjust_shouldNotResize_whenSignalsDoNotHold() {
+        sizer = sizer(2, 6, 4);
+
+        for (int i = 0; i < 10; i++) {
+            sizer.adjust(0, 2 * SECOND, SECOND, 10);
+            sizer.adjust(0, 2 * SECOND, SECOND, 0);
+        }
+
+        assertEquals(2, sizer.getWorkers());
+        assertEquals(List.of(), resizes);
+    }
+
+    @Test
+    public void adjust_shouldShrink_whenCpuBoundWorkersOutnumberCores() {
+        sizer = sizer(6, 2, 8, 4);
+
+        for (int i = 0; i < 9; i++) {
+            sizer.adjust(sizer.getWorkers() * SECOND * 95 / 100, sizer.getWorkers() * SECOND, SECOND, 10);
+        }
+
+        // down to the core count, there it holds
+        assertEquals(4, sizer.getWorkers());
+        assertEquals(List.of(5, 4), resizes);
+    }
+
+    @Test
+    public void adjust_shouldHold_whenCpuBoundAtCoreCount() {
+        sizer = sizer(4, 2, 8, 4);
+
+        for (int i = 0; i < 10; i++) {
+            sizer.adjust(SECOND * 38 / 10, 4 * SECOND, SECOND, 10);
+        }
+
+        assertEquals(4, sizer.getWorkers());
+    }
+
+    @Test
+    public void adjust_shouldShrinkToMin_whenIdle_andGrowToMax_underBacklog() {
+        sizer = sizer(4, 2, 5, 16);
+
+        for (int i = 0; i < 12; i++) {
+            sizer.adjust(0, 0, SECOND, 0);
+        }
+        assertEquals(2, sizer.getWorkers());
+
+        for (int i = 0; i < 30; i++) {
+            sizer.adjust(0, sizer.getWorkers() * SECOND, SECOND, 10);
+        }
+        assertEquals(5, sizer.getWorkers());
+        assertEquals(List.of(3, 2, 3, 4, 5), resizes);
+    }
+
+    /**
+     * use case - tasks that sleep, as if waiting on slow storage, queued behind two workers
+     * - verify - the sampled cpu to wall ratio grows the running pool to its max
+     */
+    @Test
+    public void start_shouldGrowPool_whenTasksWait() throws Exception {
+        executor = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable task) {
+                sizer.taskStarted();
+            }
+
+            @Override
+            protected void afterExecute(Runnable task, Throwable error) {
+                sizer.taskFinished();
+            }
+        };
+        sizer = new AdaptivePoolSizer(executor, 2, 4, 50, 2, 64, resizes::add);
+        for (int i = 0; i < 400; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        sizer.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sizer.getWorkers() < 4 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, sizer.getWorkers());
+        assertTrue(sizer.getCpuRatio() < AdaptivePoolSizer.CPU_BOUND_RATIO);
+        assertEquals(4, executor.getPoolSize());
+    }
+
+    private AdaptivePoolSizer sizer(int minWorkers, int maxWorkers, int cores) {
+        return sizer(minWorkers, minWorkers, maxWorkers, cores);
+    }
+
+    private AdaptivePoolSizer sizer(int workers, int minWorkers, int maxWorkers, int cores) {
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        return new AdaptivePoolSizer(executor, minWorkers, maxWorkers, 1000, 3, cores, resizes::add);
+    }
+}
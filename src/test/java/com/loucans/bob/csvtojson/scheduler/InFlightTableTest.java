@@ -0,0 +1,83 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InFlightTableTest {
+
+    @Test
+    public void arrived_shouldQueueOnce_whileJobIsQueued() {
+        InFlightTable<String> table = new InFlightTable<>();
+
+        assertTrue(table.arrived("a.csv"));
+        assertFalse(table.arrived("a.csv"));
+        assertTrue(table.arrived("b.csv"));
+
+        table.started("a.csv");
+        assertFalse(table.isSuperseded("a.csv"));
+        assertFalse(table.finished("a.csv"));
+        assertEquals(1, table.size());
+        assertTrue(table.arrived("a.csv"));
+    }
+
+    @Test
+    public void finished_shouldAskForOneRerun_whenArrivedWhileRunning() {
+        InFlightTable<String> table = new InFlightTable<>();
+        table.arrived("a.csv");
+        table.started("a.csv");
+
+        assertFalse(table.arrived("a.csv"));
+        assertFalse(table.arrived("a.csv"));
+        assertTrue(table.isSuperseded("a.csv"));
+
+        assertTrue(table.finished("a.csv"));
+        // the rerun is queued, nothing more to queue for further arrivals
+        assertFalse(table.arrived("a.csv"));
+        table.started("a.csv");
+        assertFalse(table.isSuperseded("a.csv"));
+        assertFalse(table.finished("a.csv"));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void arrived_shouldQueueExactlyOneJob_whenArrivingConcurrently() throws Exception {
+        InFlightTable<String> table = new InFlightTable<>();
+        table.arrived("a.csv");
+        table.started("a.csv");
+        AtomicInteger queued = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int n = 0; n < 1_000; n++) {
+                    if (table.arrived("a.csv")) {
+                        queued.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        boolean rerun = table.finished("a.csv");
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // either the running job was superseded and reruns, or it finished first and one new job was queued
+        assertEquals(1, queued.get() + (rerun ? 1 : 0));
+    }
+}
@@ -0,0 +1,119 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryBudgetTest {
+
+    @Test
+    public void reserve_shouldWait_whenBudgetIsTaken() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100);
+        MemoryBudget.Reservation first = budget.reserve(80);
+        CountDownLatch reserved = new CountDownLatch(1);
+
+        Thread second = new Thread(() -> {
+            try {
+                MemoryBudget.Reservation reservation = budget.reserve(30);
+                try {
+                    reserved.countDown();
+                } finally {
+                    reservation.close();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        second.start();
+
+        assertFalse(reserved.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, budget.getWaitingJobs());
+
+        first.close();
+        assertTrue(reserved.await(5, TimeUnit.SECONDS));
+        second.join();
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    public void reserve_shouldCapAtBudget_whenJobIsLargerThanBudget() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100);
+
+        try (MemoryBudget.Reservation reservation = budget.reserve(1_000)) {
+            assertEquals(100, reservation.getBytes());
+            assertEquals(100, budget.getReservedBytes());
+        }
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    public void reserve_shouldLetSmallJobPass_whenLargeJobIsWaitingForRoom() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100, 60_000);
+        MemoryBudget.Reservation running = budget.reserve(60);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        Thread large = reserveInThread(budget, 90, "large", order);
+        awaitWaiting(budget, 1);
+        // fits next to the running job, its worker is not parked behind the large one
+        Thread small = reserveInThread(budget, 10, "small", order);
+        small.join(5_000);
+        assertEquals(List.of("small"), order);
+        assertEquals(1, budget.getWaitingJobs());
+
+        running.close();
+        large.join(5_000);
+
+        assertEquals(List.of("small", "large"), order);
+    }
+
+    @Test
+    public void reserve_shouldServeInArrivalOrder_onceLargeJobWaitedTooLong() throws Exception {
+        MemoryBudget budget = new MemoryBudget(100, 50);
+        MemoryBudget.Reservation running = budget.reserve(60);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        Thread large = reserveInThread(budget, 90, "large", order);
+        awaitWaiting(budget, 1);
+        Thread.sleep(100);
+        // would fit next to the running job, but the large one has waited long enough
+        Thread small = reserveInThread(budget, 10, "small", order);
+        awaitWaiting(budget, 2);
+
+        running.close();
+        large.join(5_000);
+        small.join(5_000);
+
+        assertEquals(List.of("large", "small"), order);
+    }
+
+    private Thread reserveInThread(MemoryBudget budget, long bytes, String name, List<String> order) {
+        Thread thread = new Thread(() -> {
+            try {
+                MemoryBudget.Reservation reservation = budget.reserve(bytes);
+                try {
+                    order.add(name);
+                } finally {
+                    reservation.close();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void awaitWaiting(MemoryBudget budget, int jobs) throws InterruptedException {
+        for (int i = 0; i < 500 && budget.getWaitingJobs() < jobs; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(jobs, budget.getWaitingJobs());
+    }
+}
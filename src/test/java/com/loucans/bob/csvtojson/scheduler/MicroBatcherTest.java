@@ -0,0 +1,58 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MicroBatcherTest {
+
+    @Test
+    public void add_shouldFlushOneBatch_whenItemsArriveWithinWindow() throws Exception {
+        LinkedBlockingQueue<List<String>> flushed = new LinkedBlockingQueue<>();
+        try (MicroBatcher<String, String> batcher = new MicroBatcher<>(200, 100, (key, batch) -> flushed.add(batch))) {
+            batcher.add("feed", "a.csv");
+            batcher.add("feed", "b.csv");
+            batcher.add("feed", "c.csv");
+
+            assertEquals(List.of("a.csv", "b.csv", "c.csv"), flushed.poll(5, TimeUnit.SECONDS));
+            assertNull(flushed.poll(300, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void add_shouldFlushAtOnce_whenBatchIsFull() throws Exception {
+        LinkedBlockingQueue<List<String>> flushed = new LinkedBlockingQueue<>();
+        try (MicroBatcher<String, String> batcher = new MicroBatcher<>(60_000, 2, (key, batch) -> flushed.add(batch))) {
+            batcher.add("feed", "a.csv");
+            batcher.add("feed", "b.csv");
+            batcher.add("feed", "c.csv");
+
+            // the full batch without waiting, the third item opens the next one
+            assertEquals(List.of("a.csv", "b.csv"), flushed.poll(0, TimeUnit.MILLISECONDS));
+            assertNull(flushed.poll(100, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(List.of("c.csv"), flushed.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void add_shouldKeepBatchesPerKey() throws Exception {
+        LinkedBlockingQueue<String> flushed = new LinkedBlockingQueue<>();
+        try (MicroBatcher<String, String> batcher =
+                     new MicroBatcher<>(50, 100, (key, batch) -> flushed.add(key + "=" + batch))) {
+            batcher.add("orders", "a.csv");
+            batcher.add("refunds", "b.csv");
+            batcher.add("orders", "c.csv");
+
+            List<String> batches = List.of(flushed.poll(5, TimeUnit.SECONDS), flushed.poll(5, TimeUnit.SECONDS));
+            assertEquals(2, batches.size());
+            assertTrue(batches.contains("orders=[a.csv, c.csv]"));
+            assertTrue(batches.contains("refunds=[b.csv]"));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.loucans.bob.csvtojson.scheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WeightedLaneQueueTest {
+    private WeightedLaneQueue queue;
+
+    @Before
+    public void setup() {
+        queue = new WeightedLaneQueue();
+        queue.addLane("noisy", 1);
+        queue.addLane("quiet", 1);
+        queue.addLane("heavy", 3);
+    }
+
+    @Test
+    public void poll_shouldInterleaveLanes_whenOneLaneIsBacklogged() {
+        for (int i = 0; i < 100; i++) {
+            queue.offer(task("noisy"));
+        }
+        queue.offer(task("quiet"));
+        queue.offer(task("quiet"));
+
+        assertEquals(List.of("noisy", "quiet", "noisy", "quiet", "noisy", "noisy"), drain(6));
+    }
+
+    @Test
+    public void poll_shouldServeLanesByWeight_whenAllLanesHaveWork() {
+        for (int i = 0; i < 40; i++) {
+            queue.offer(task("noisy"));
+            queue.offer(task("heavy"));
+        }
+
+        List<String> lanes = drain(40);
+
+        assertEquals(30, lanes.stream().filter("heavy"::equals).count());
+        assertEquals(10, lanes.stream().filter("noisy"::equals).count());
+    }
+
+    @Test
+    public void poll_shouldOrderSmallestFirst_whenFilesWaitInOneLane() {
+        queue = new WeightedLaneQueue(1_000, 1_000_000);
+        queue.offer(sizedTask("noisy", 500_000));
+        queue.offer(sizedTask("noisy", 100));
+        queue.offer(sizedTask("noisy", 10_000));
+
+        assertEquals(100, ((LaneTask) queue.poll()).getSizeBytes());
+    }
+
+    @Test
+    public void poll_shouldServeLargeFile_onceItsWaitMadeUpForItsSize() throws InterruptedException {
+        // 1 kB/s, a 100 byte file yields to newer 1 byte files for about 100ms
+        queue = new WeightedLaneQueue(1_000_000, 1_000);
+        queue.offer(sizedTask("noisy", 100));
+        long offeredNanos = System.nanoTime();
+
+        int smallFirst = 0;
+        LaneTask polled;
+        // a steady stream of small files, one waiting at every poll
+        for (;;) {
+            queue.offer(sizedTask("noisy", 1));
+            polled = (LaneTask) queue.poll();
+            if (polled.getSizeBytes() == 100 || smallFirst == 1_000) {
+                break;
+            }
+            smallFirst++;
+            Thread.sleep(5);
+        }
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - offeredNanos);
+
+        assertEquals(100, polled.getSizeBytes());
+        assertTrue("small files passed: " + smallFirst, smallFirst > 0);
+        assertTrue("waited: " + waitedMillis, waitedMillis >= 99);
+    }
+
+    @Test
+    public void poll_shouldKeepExpressCapacity_whenLargeTaskLimitIsReached() throws InterruptedException {
+        queue = new WeightedLaneQueue(1_000, 1_000_000);
+        queue.setLargeTaskLimit(1);
+        queue.offer(sizedTask("noisy", 5_000));
+        queue.offer(sizedTask("noisy", 6_000));
+
+        Runnable running = queue.poll();
+        assertNull(queue.poll());
+
+        queue.offer(sizedTask("noisy", 10));
+        assertEquals(10, ((LaneTask) queue.poll()).getSizeBytes());
+
+        running.run();
+        assertNotNull(queue.poll(1, TimeUnit.SECONDS));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void poll_shouldUseDefaultLane_whenTaskHasNoLane() {
+        Runnable task = () -> { };
+        queue.offer(task);
+
+        assertEquals(task, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    private List<String> drain(int tasks) {
+        List<String> lanes = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            lanes.add(((LaneTask) queue.poll()).getLane());
+        }
+        return lanes;
+    }
+
+    private LaneTask sizedTask(String lane, long sizeBytes) {
+        return new LaneTask(lane, sizeBytes, () -> { });
+    }
+
+    private LaneTask task(String lane) {
+        return new LaneTask(lane, () -> { });
+    }
+}